@@ -1,30 +1,77 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 // Main Application Class
 public class AllyApp extends JFrame {
-    private static final String DATA_FILE = "safety_reports.dat";
     private static final String RESOURCES_FILE = "safety_resources.dat";
+    private static final DateTimeFormatter DETAIL_TIME_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
+    private static final DateTimeFormatter ALERT_TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final String ANY = "Any"; // Filter choice that matches every value
+    private static final int MAX_SEARCH_RESULTS = 500;
+    private static final int MAX_TRIAGE_ROWS = 1000;
+    private static final String[] PERIODS = {"Any time", "Today", "Last 7 days", "Last 30 days",
+        "Last year, with archive", "Any time, with archive"};
+    private static final int[] PERIOD_DAYS = {0, 1, 7, 30, 365, 0};
+    private static final boolean[] PERIOD_SEARCHES_ARCHIVE = {false, false, false, false, true, true};
+    private static final long EDT_PROBE_MS = 100;
+    private static final long EDT_BLOCKED_MS = 50;      // A probe this late means the EDT was busy
+    private static final int DIAGNOSTICS_REFRESH_MS = 1000;
+    private static final int MAX_STATUS_PROBLEM_CHARS = 90;
+    private static final long DEFAULT_STARTUP_BUDGET_MS = 1500; // To a usable window; -Dally.startupBudgetMs
+    private static final Set<String> REPORT_TABS = Set.of("Trending Issues", "Review Reports", "Analytics");
     
     private JTabbedPane tabbedPane;
-    private List<SafetyReport> reports;
-    private Map<String, Integer> trendData;
+    private DistrictStore district;
+    private ReportStore store; // The school being shown
+    private String school = DistrictStore.DEFAULT_SCHOOL;
+    private JMenu schoolMenu;
+    private ReportTableModel reportTableModel;
+    private JTable reportTable;
+    private TrendWindow.Window trendWindowShown = TrendWindow.Window.WEEK;
+    private boolean trendDecay;
+    private JLabel pendingLabel;
+    private JLabel problemLabel;
+    private JLabel alertLabel;
+    private JPanel trendsPanel; // The Trending Issues list, refilled as reports come in
+    private javax.swing.Timer diagnosticsTimer;
+    private JButton submitButton;
     private String userRole = "student"; // Can be "student", "admin", or "counselor"
     
+    // Tabs are built the first time they are selected and kept until invalidated
+    private final Map<String, Supplier<JPanel>> tabBuilders = new HashMap<>();
+    private final Set<String> builtTabs = new HashSet<>();
+    private boolean addingTabs; // Selection changes while the tabs are being replaced build nothing
+    
+    // The window comes up straight away; reports load behind it (see openStoreInBackground)
     public AllyApp() {
-        reports = new ArrayList<>();
-        trendData = new HashMap<>();
-        loadData();
         initializeGUI();
         loadSampleResources();
+        watchEventDispatchThread();
+        watchForProblems();
+        openStoreInBackground();
     }
     
     private void initializeGUI() {
@@ -49,15 +96,85 @@ public class AllyApp extends JFrame {
         roleMenu.add(adminItem);
         roleMenu.add(counselorItem);
         menuBar.add(roleMenu);
+        
+        // Each school's reports are kept apart; this picks the one shown
+        schoolMenu = new JMenu("School");
+        fillSchoolMenu();
+        menuBar.add(schoolMenu);
         setJMenuBar(menuBar);
         
         // Create tabbed pane
         tabbedPane = new JTabbedPane();
+        tabbedPane.addChangeListener(e -> buildSelectedTab());
         
         // Add tabs based on user role
         updateTabsForRole();
         
         add(tabbedPane);
+        
+        // Status bar showing whether every change has reached the disk yet, and the latest problem
+        pendingLabel = new JLabel("All changes saved");
+        pendingLabel.setBorder(new EmptyBorder(2, 8, 2, 8));
+        problemLabel = new JLabel();
+        problemLabel.setBorder(new EmptyBorder(2, 8, 2, 8));
+        problemLabel.setForeground(Color.RED);
+        JPanel statusBar = new JPanel(new BorderLayout());
+        alertLabel = new JLabel();
+        alertLabel.setBorder(new EmptyBorder(2, 8, 2, 8));
+        alertLabel.setForeground(Color.MAGENTA.darker());
+        statusBar.add(pendingLabel, BorderLayout.WEST);
+        statusBar.add(alertLabel, BorderLayout.CENTER);
+        statusBar.add(problemLabel, BorderLayout.EAST);
+        add(statusBar, BorderLayout.SOUTH);
+    }
+    
+    private void fillSchoolMenu() {
+        schoolMenu.removeAll();
+        if (district == null) {
+            JMenuItem loading = new JMenuItem("Loading...");
+            loading.setEnabled(false);
+            schoolMenu.add(loading);
+            return;
+        }
+        ButtonGroup group = new ButtonGroup();
+        for (String id : district.schoolIds()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(id, id.equals(school));
+            item.addActionListener(e -> switchSchool(id));
+            group.add(item);
+            schoolMenu.add(item);
+        }
+        schoolMenu.addSeparator();
+        JMenuItem addItem = new JMenuItem("Add School...");
+        addItem.addActionListener(e -> addSchool());
+        schoolMenu.add(addItem);
+    }
+    
+    private void addSchool() {
+        String id = JOptionPane.showInputDialog(this, "School ID (letters, digits, '-' or '_'):",
+            "Add School", JOptionPane.PLAIN_MESSAGE);
+        if (id == null || id.trim().isEmpty()) {
+            return;
+        }
+        try {
+            district.addSchool(id.trim());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Add School", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        switchSchool(id.trim());
+    }
+    
+    private void switchSchool(String id) {
+        school = id;
+        store = district.school(id);
+        if (reportTable != null) {
+            reportTableModel.removeTableModelListener(reportTable);
+            reportTable = null;
+        }
+        reportTableModel = new ReportTableModel(store.getReports(), store.getDuplicates());
+        setTitle("Ally - School Safety Reporting Tool - " + id);
+        fillSchoolMenu();
+        updateTabsForRole();
     }
     
     private void switchRole(String role) {
@@ -68,27 +185,87 @@ public class AllyApp extends JFrame {
     }
     
     private void updateTabsForRole() {
+        addingTabs = true;
         tabbedPane.removeAll();
+        builtTabs.clear();
+        trendsPanel = null;
+        submitButton = null;
+        if (diagnosticsTimer != null) {
+            diagnosticsTimer.stop();
+        }
         
         // All roles can view trending issues and resources
-        tabbedPane.addTab("Trending Issues", createTrendingPanel());
-        tabbedPane.addTab("Safety Resources", createResourcesPanel());
+        addTab("Trending Issues", this::createTrendingPanel);
+        addTab("Safety Resources", this::createResourcesPanel);
         
-        // Students can report issues
+        // Students can report issues, and that is what they open the app for
         if ("student".equals(userRole)) {
-            tabbedPane.addTab("Report Issue", createReportPanel());
+            addTab("Report Issue", this::createReportPanel);
+            tabbedPane.setSelectedIndex(tabbedPane.indexOfTab("Report Issue"));
         }
         
         // Admins and counselors can view detailed reports
         if ("admin".equals(userRole) || "counselor".equals(userRole)) {
-            tabbedPane.addTab("Review Reports", createAdminPanel());
-            tabbedPane.addTab("Analytics", createAnalyticsPanel());
+            addTab("Review Reports", this::createAdminPanel);
+            addTab("Analytics", this::createAnalyticsPanel);
+        }
+        
+        // Only admins see how the app itself is doing
+        if ("admin".equals(userRole)) {
+            addTab("Diagnostics", this::createDiagnosticsPanel);
         }
         
+        addingTabs = false;
+        buildSelectedTab();
         tabbedPane.revalidate();
         tabbedPane.repaint();
     }
     
+    // An empty tab until it is first selected
+    private void addTab(String title, Supplier<JPanel> builder) {
+        tabBuilders.put(title, builder);
+        tabbedPane.addTab(title, new JPanel());
+    }
+    
+    private void buildSelectedTab() {
+        int index = tabbedPane.getSelectedIndex();
+        if (addingTabs || index < 0) {
+            return;
+        }
+        String title = tabbedPane.getTitleAt(index);
+        if (builtTabs.add(title)) {
+            tabbedPane.setComponentAt(index, tabBuilders.get(title).get());
+        }
+    }
+    
+    // Rebuilds the tab now if it is showing, or else the next time it is selected
+    private void invalidateTab(String title) {
+        int index = tabbedPane.indexOfTab(title);
+        if (index < 0 || !builtTabs.remove(title)) {
+            return;
+        }
+        if (index == tabbedPane.getSelectedIndex()) {
+            buildSelectedTab();
+        } else {
+            tabbedPane.setComponentAt(index, new JPanel()); // Lets the old contents go
+        }
+    }
+    
+    private boolean isShowing(String title) {
+        int index = tabbedPane.indexOfTab(title);
+        return index >= 0 && index == tabbedPane.getSelectedIndex();
+    }
+    
+    // Stands in for a tab that shows reports until they have loaded
+    private static JPanel createLoadingPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        JLabel label = new JLabel("Loading reports...");
+        label.setHorizontalAlignment(SwingConstants.CENTER);
+        label.setFont(new Font("Arial", Font.ITALIC, 16));
+        panel.add(label, BorderLayout.CENTER);
+        return panel;
+    }
+    
     private JPanel createReportPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(20, 20, 20, 20));
@@ -109,9 +286,7 @@ public class AllyApp extends JFrame {
         gbc.gridx = 0; gbc.gridy = 0;
         formPanel.add(new JLabel("Issue Category:"), gbc);
         
-        String[] categories = {"Bullying", "Unsafe Area", "Harassment", "Facility Issue", 
-                              "Social Exclusion", "Cyber Bullying", "Other"};
-        JComboBox<String> categoryCombo = new JComboBox<>(categories);
+        JComboBox<String> categoryCombo = new JComboBox<>(SafetyReport.CATEGORIES);
         gbc.gridx = 1;
         formPanel.add(categoryCombo, gbc);
         
@@ -119,8 +294,7 @@ public class AllyApp extends JFrame {
         gbc.gridx = 0; gbc.gridy = 1;
         formPanel.add(new JLabel("Location:"), gbc);
         
-        String[] locations = {"Classroom", "Hallway", "Cafeteria", "Bathroom", "Library", "Gym", "Playground", "Bus", "Online", "Other"};
-        JComboBox<String> locationCombo = new JComboBox<>(locations);
+        JComboBox<String> locationCombo = new JComboBox<>(SafetyReport.LOCATIONS);
         gbc.gridx = 1;
         formPanel.add(locationCombo, gbc);
         
@@ -128,8 +302,7 @@ public class AllyApp extends JFrame {
         gbc.gridx = 0; gbc.gridy = 2;
         formPanel.add(new JLabel("Severity:"), gbc);
         
-        String[] severities = {"Low", "Medium", "High", "Urgent"};
-        JComboBox<String> severityCombo = new JComboBox<>(severities);
+        JComboBox<String> severityCombo = new JComboBox<>(SafetyReport.SEVERITIES);
         gbc.gridx = 1;
         formPanel.add(severityCombo, gbc);
         
@@ -160,6 +333,10 @@ public class AllyApp extends JFrame {
         // Submit button
         JPanel buttonPanel = new JPanel();
         JButton submitButton = new JButton("Submit Report");
+        this.submitButton = submitButton;
+        // The form can be filled in while reports load; sending waits for them
+        submitButton.setEnabled(store != null);
+        submitButton.setToolTipText(store != null ? null : "Available once reports have loaded");
         submitButton.setFont(new Font("Arial", Font.BOLD, 16));
         submitButton.setBackground(new Color(70, 130, 180));
         submitButton.setForeground(Color.WHITE);
@@ -177,10 +354,8 @@ public class AllyApp extends JFrame {
                     return;
                 }
                 
-                SafetyReport report = new SafetyReport(category, location, severity, description);
-                reports.add(report);
-                updateTrendData(category);
-                saveData();
+                // The table and counts hear of it through watchReportEvents
+                store.submit(store.createReport(category, location, severity, description));
                 
                 // Clear form
                 categoryCombo.setSelectedIndex(0);
@@ -201,6 +376,9 @@ public class AllyApp extends JFrame {
     }
     
     private JPanel createTrendingPanel() {
+        if (store == null) {
+            return createLoadingPanel();
+        }
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(20, 20, 20, 20));
         
@@ -208,33 +386,39 @@ public class AllyApp extends JFrame {
         JLabel titleLabel = new JLabel("Trending Safety Issues");
         titleLabel.setFont(new Font("Arial", Font.BOLD, 24));
         titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        panel.add(titleLabel, BorderLayout.NORTH);
         
         // Create trending issues display
         JPanel trendsPanel = new JPanel(new GridLayout(0, 1, 10, 10));
+        this.trendsPanel = trendsPanel;
+        fillTrends(trendsPanel);
+        
+        // Window and decay controls
+        JComboBox<TrendWindow.Window> windowCombo = new JComboBox<>(TrendWindow.Window.values());
+        windowCombo.setSelectedItem(trendWindowShown);
+        JCheckBox decayCheck = new JCheckBox("Weight recent reports more", trendDecay);
+        windowCombo.addActionListener(e -> {
+            trendWindowShown = (TrendWindow.Window) windowCombo.getSelectedItem();
+            fillTrends(trendsPanel);
+        });
+        decayCheck.addActionListener(e -> {
+            trendDecay = decayCheck.isSelected();
+            fillTrends(trendsPanel);
+        });
+        JPanel controlsPanel = new JPanel();
+        controlsPanel.add(windowCombo);
+        controlsPanel.add(decayCheck);
         
-        if (trendData.isEmpty()) {
-            JLabel noDataLabel = new JLabel("No trending issues at this time - great news!");
-            noDataLabel.setHorizontalAlignment(SwingConstants.CENTER);
-            noDataLabel.setFont(new Font("Arial", Font.ITALIC, 16));
-            trendsPanel.add(noDataLabel);
-        } else {
-            // Sort trends by frequency
-            List<Map.Entry<String, Integer>> sortedTrends = new ArrayList<>(trendData.entrySet());
-            sortedTrends.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
-            
-            for (Map.Entry<String, Integer> trend : sortedTrends) {
-                JPanel trendItem = createTrendItem(trend.getKey(), trend.getValue());
-                trendsPanel.add(trendItem);
-            }
-        }
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(controlsPanel, BorderLayout.SOUTH);
+        panel.add(headerPanel, BorderLayout.NORTH);
         
         JScrollPane scrollPane = new JScrollPane(trendsPanel);
         panel.add(scrollPane, BorderLayout.CENTER);
         
         // Refresh button
         JButton refreshButton = new JButton("Refresh Data");
-        refreshButton.addActionListener(e -> updateTabsForRole());
+        refreshButton.addActionListener(e -> fillTrends(trendsPanel));
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(refreshButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
@@ -242,17 +426,81 @@ public class AllyApp extends JFrame {
         return panel;
     }
     
-    private JPanel createTrendItem(String category, int count) {
+    private void fillTrends(JPanel trendsPanel) {
+        trendsPanel.removeAll();
+        LocalDateTime now = LocalDateTime.now();
+        
+        // Sudden jumps at one place come first, then where the last hour has been busiest
+        List<SpikeDetector.Hotspot> spikes = store.getSpikes().getSpikes(now);
+        List<SpikeDetector.Hotspot> busiest = store.getSpikes().getBusiest(now);
+        for (SpikeDetector.Hotspot spike : spikes) {
+            trendsPanel.add(createHotspotItem(spike));
+        }
+        if (!busiest.isEmpty()) {
+            StringBuilder busy = new StringBuilder("<html><b>Busiest in the last hour:</b> ");
+            for (int i = 0; i < busiest.size(); i++) {
+                SpikeDetector.Hotspot hotspot = busiest.get(i);
+                busy.append(i > 0 ? ", " : "").append(hotspot.category).append(" at ").append(hotspot.location)
+                    .append(" (").append(hotspot.count).append(")");
+            }
+            trendsPanel.add(new JLabel(busy.append("</html>").toString()));
+        }
+        
+        // Ranked by growth against the previous window of the same length
+        List<TrendWindow.Trend> trends = store.getTrendWindow().getTrends(trendWindowShown, trendDecay, now);
+        if (trends.isEmpty()) {
+            JLabel noDataLabel = new JLabel("No trending issues at this time - great news!");
+            noDataLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            noDataLabel.setFont(new Font("Arial", Font.ITALIC, 16));
+            trendsPanel.add(noDataLabel);
+        } else {
+            for (TrendWindow.Trend trend : trends) {
+                trendsPanel.add(createTrendItem(trend));
+            }
+        }
+        
+        trendsPanel.revalidate();
+        trendsPanel.repaint();
+    }
+    
+    private JPanel createHotspotItem(SpikeDetector.Hotspot spike) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(Color.RED, 2),
+            new EmptyBorder(10, 10, 10, 10)
+        ));
+        panel.setBackground(new Color(255, 170, 170));
+        
+        JLabel whatLabel = new JLabel("Spike: " + spike.category + " at " + spike.location);
+        whatLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        JLabel countLabel = new JLabel(String.format("%d reports in the last hour, about %.1f usual (since %s)",
+            spike.count, spike.expected, spike.since.format(ALERT_TIME_FORMAT)));
+        countLabel.setForeground(Color.RED.darker());
+        
+        panel.add(whatLabel, BorderLayout.WEST);
+        panel.add(countLabel, BorderLayout.EAST);
+        return panel;
+    }
+    
+    private JPanel createTrendItem(TrendWindow.Trend trend) {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createLineBorder(Color.GRAY),
             new EmptyBorder(10, 10, 10, 10)
         ));
         
-        JLabel categoryLabel = new JLabel(category);
+        JLabel categoryLabel = new JLabel(trend.category);
         categoryLabel.setFont(new Font("Arial", Font.BOLD, 16));
         
-        JLabel countLabel = new JLabel(count + " reports");
+        long count = Math.round(trend.count);
+        String change;
+        if (trend.baseline < 0.5) {
+            change = "new";
+        } else {
+            long percent = Math.round((trend.count - trend.baseline) * 100 / trend.baseline);
+            change = (percent >= 0 ? "+" : "") + percent + "% vs previous period";
+        }
+        JLabel countLabel = new JLabel(count + " reports (" + change + ")");
         countLabel.setForeground(Color.BLUE);
         
         // Color code by severity
@@ -348,6 +596,10 @@ public class AllyApp extends JFrame {
     }
     
     private JPanel createAdminPanel() {
+        if (store == null) {
+            return createLoadingPanel();
+        }
+        long start = Metrics.TABLE_BUILD.start();
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(20, 20, 20, 20));
         
@@ -356,22 +608,99 @@ public class AllyApp extends JFrame {
         JLabel titleLabel = new JLabel(roleTitle + " - Safety Reports Review");
         titleLabel.setFont(new Font("Arial", Font.BOLD, 24));
         titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        panel.add(titleLabel, BorderLayout.NORTH);
         
-        // Reports table
-        String[] columnNames = {"Date/Time", "Category", "Location", "Severity", "Status"};
-        Object[][] data = new Object[reports.size()][5];
-        
-        for (int i = 0; i < reports.size(); i++) {
-            SafetyReport report = reports.get(i);
-            data[i][0] = report.getTimestamp().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm"));
-            data[i][1] = report.getCategory();
-            data[i][2] = report.getLocation();
-            data[i][3] = report.getSeverity();
-            data[i][4] = report.getStatus();
+        // Search box over report descriptions
+        JTextField searchField = new JTextField(30);
+        JButton searchButton = new JButton("Search");
+        JButton showAllButton = new JButton("Show All");
+        JLabel searchStatus = new JLabel(" ");
+        JCheckBox groupSimilar = new JCheckBox("Group similar", reportTableModel.isGrouped());
+        groupSimilar.setToolTipText("List each cluster of near-identical reports once");
+        groupSimilar.addActionListener(e -> reportTableModel.setGrouped(groupSimilar.isSelected()));
+        ActionListener search = e -> searchReports(searchField.getText(), searchStatus);
+        searchField.addActionListener(search);
+        searchButton.addActionListener(search);
+        showAllButton.addActionListener(e -> {
+            searchField.setText("");
+            reportTableModel.showAll();
+            searchStatus.setText(" ");
+        });
+        JPanel searchPanel = new JPanel(new FlowLayout());
+        searchPanel.add(new JLabel("Find in descriptions:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchButton);
+        searchPanel.add(showAllButton);
+        searchPanel.add(groupSimilar);
+        searchPanel.add(searchStatus);
+        
+        // Field filters, answered from the bitmap indexes
+        JComboBox<String> categoryFilter = new JComboBox<>(withAny(SafetyReport.CATEGORIES));
+        JComboBox<String> locationFilter = new JComboBox<>(withAny(SafetyReport.LOCATIONS));
+        JComboBox<String> severityFilter = new JComboBox<>(withAny(SafetyReport.SEVERITIES));
+        JComboBox<String> statusFilter = new JComboBox<>(withAny(SafetyReport.STATUSES));
+        JCheckBox openOnly = new JCheckBox("Not resolved");
+        JComboBox<String> periodFilter = new JComboBox<>(PERIODS);
+        JButton filterButton = new JButton("Filter");
+        filterButton.addActionListener(e -> {
+            String category = anyToNull(categoryFilter);
+            String location = anyToNull(locationFilter);
+            String severity = anyToNull(severityFilter);
+            String status = anyToNull(statusFilter);
+            int period = periodFilter.getSelectedIndex();
+            LocalDate today = LocalDate.now();
+            ReportQuery query = ReportQuery.matching(category, location, severity, status, openOnly.isSelected(),
+                PERIOD_DAYS[period], today);
+            // Archived reports are all resolved, so an open-only filter never needs them
+            boolean searchArchive = PERIOD_SEARCHES_ARCHIVE[period] && !openOnly.isSelected()
+                && store.getArchivedCount() > 0;
+            if (query == null && !searchArchive) {
+                reportTableModel.showAll();
+                searchStatus.setText(" ");
+                return;
+            }
+            int[] rows = store.query(query != null ? query : ReportQuery.all());
+            reportTableModel.showOnly(rows);
+            if (!searchArchive) {
+                searchStatus.setText(rows.length + " match(es)");
+                return;
+            }
+            // The archive is read only now, and off the EDT
+            searchStatus.setText(rows.length + " match(es), searching the archive...");
+            LocalDate first = PERIOD_DAYS[period] > 0 ? today.minusDays(PERIOD_DAYS[period] - 1) : null;
+            store.getBackground().compute(
+                () -> store.findArchived(first, null, ReportArchive.matching(category, location, severity, status)),
+                archived -> {
+                    reportTableModel.showOnly(rows, archived);
+                    searchStatus.setText(rows.length + " match(es), " + archived.size() + " archived");
+                },
+                ex -> JOptionPane.showMessageDialog(this, "Archive search failed: " + ex.getMessage(),
+                    "Search Error", JOptionPane.ERROR_MESSAGE));
+        });
+        JPanel filterPanel = new JPanel(new FlowLayout());
+        filterPanel.add(categoryFilter);
+        filterPanel.add(locationFilter);
+        filterPanel.add(severityFilter);
+        filterPanel.add(statusFilter);
+        filterPanel.add(openOnly);
+        filterPanel.add(periodFilter);
+        filterPanel.add(filterButton);
+        
+        JPanel controlsPanel = new JPanel(new GridLayout(2, 1));
+        controlsPanel.add(searchPanel);
+        controlsPanel.add(filterPanel);
+        
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(controlsPanel, BorderLayout.SOUTH);
+        panel.add(headerPanel, BorderLayout.NORTH);
+        
+        // Reports table, reading rows from the shared model as they scroll into view.
+        // The table a previous rebuild created must stop listening to that model.
+        if (reportTable != null) {
+            reportTableModel.removeTableModelListener(reportTable);
         }
-        
-        JTable table = new JTable(data, columnNames);
+        JTable table = new JTable(reportTableModel);
+        reportTable = table;
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         table.getTableHeader().setReorderingAllowed(false);
         
@@ -380,8 +709,8 @@ public class AllyApp extends JFrame {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = table.getSelectedRow();
                 if (selectedRow >= 0) {
-                    SafetyReport report = reports.get(selectedRow);
-                    showReportDetails(report);
+                    int modelRow = table.convertRowIndexToModel(selectedRow);
+                    showReportDetails(reportTableModel.getReport(modelRow));
                 }
             }
         });
@@ -392,8 +721,20 @@ public class AllyApp extends JFrame {
         // Buttons panel
         JPanel buttonPanel = new JPanel(new FlowLayout());
         
+        // Most pressing waiting report first; claiming it keeps other staff off it
+        JButton nextCaseButton = new JButton("Next Case");
+        nextCaseButton.addActionListener(e -> takeNextCase());
+        buttonPanel.add(nextCaseButton);
+        
+        JButton triageButton = new JButton("Triage Order");
+        triageButton.addActionListener(e -> showTriageOrder(searchStatus));
+        buttonPanel.add(triageButton);
+        
         JButton refreshButton = new JButton("Refresh");
-        refreshButton.addActionListener(e -> updateTabsForRole());
+        refreshButton.addActionListener(e -> {
+            reportTableModel.reload();
+            refreshAnalyticsTab();
+        });
         buttonPanel.add(refreshButton);
         
         JButton exportButton = new JButton("Export Data");
@@ -402,10 +743,76 @@ public class AllyApp extends JFrame {
         
         panel.add(buttonPanel, BorderLayout.SOUTH);
         
+        Metrics.TABLE_BUILD.stop(start);
         return panel;
     }
     
+    // Reports waiting for staff, by severity and then deadline, in place of the full list
+    private void showTriageOrder(JLabel searchStatus) {
+        TriageQueue triage = store.getTriage();
+        LocalDateTime now = LocalDateTime.now();
+        reportTableModel.showOnly(triage.peek(MAX_TRIAGE_ROWS, now));
+        searchStatus.setText(triage.size() + " waiting, " + triage.overdueCount(now) + " past their deadline");
+    }
+    
+    // Claims the most pressing waiting report and opens it; unless its status moves
+    // on there, it goes back in line when the dialog closes
+    private void takeNextCase() {
+        TriageQueue triage = store.getTriage();
+        String counselor = counselorName();
+        int row = triage.claim(counselor, LocalDateTime.now());
+        if (row < 0) {
+            JOptionPane.showMessageDialog(this, "No reports are waiting for review.", "Next Case",
+                JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        showReportDetails(store.getReports().get(row));
+        triage.release(row, counselor);
+    }
+    
+    // Who claims cases from this window, as other staff see it
+    private String counselorName() {
+        return System.getProperty("user.name", "staff") + " (" + userRole + ")";
+    }
+    
+    // Shows the best matches for the query in the table, best first
+    private void searchReports(String query, JLabel searchStatus) {
+        if (query.trim().isEmpty()) {
+            reportTableModel.showAll();
+            searchStatus.setText(" ");
+            return;
+        }
+        DescriptionIndex index = store.getSearchIndex();
+        store.getBackground().compute(() -> index.search(query, MAX_SEARCH_RESULTS), hits -> {
+            int[] rows = new int[hits.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = hits.get(i).row;
+            }
+            reportTableModel.showOnly(rows);
+            searchStatus.setText(rows.length + " match(es)" + (index.isReady() ? "" : " so far, still indexing older reports"));
+        }, e -> JOptionPane.showMessageDialog(this, "Search failed: " + e.getMessage(),
+            "Search Error", JOptionPane.ERROR_MESSAGE));
+    }
+    
+    // Rebuilds just the Analytics tab, leaving the others (and the table's scroll position) alone
+    private void refreshAnalyticsTab() {
+        invalidateTab("Analytics");
+    }
+    
+    // Refills the trends in place if they are showing; otherwise they are rebuilt when next selected
+    private void refreshTrendingTab() {
+        if (isShowing("Trending Issues") && trendsPanel != null) {
+            fillTrends(trendsPanel);
+        } else {
+            invalidateTab("Trending Issues");
+        }
+    }
+    
     private JPanel createAnalyticsPanel() {
+        if (store == null) {
+            return createLoadingPanel();
+        }
+        long start = Metrics.ANALYTICS_RENDER.start();
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(20, 20, 20, 20));
         
@@ -416,31 +823,137 @@ public class AllyApp extends JFrame {
         panel.add(titleLabel, BorderLayout.NORTH);
         
         // Analytics content
-        JPanel analyticsPanel = new JPanel(new GridLayout(2, 2, 20, 20));
+        ReportAnalytics analytics = store.getAnalytics();
+        JPanel analyticsPanel = new JPanel(new GridLayout(3, 2, 20, 20));
         
         // Total reports
-        analyticsPanel.add(createAnalyticsCard("Total Reports", String.valueOf(reports.size()), Color.BLUE));
+        analyticsPanel.add(createAnalyticsCard("Total Reports", String.valueOf(analytics.getTotal()), Color.BLUE));
         
         // Most common category
-        String mostCommon = "None";
-        if (!trendData.isEmpty()) {
-            mostCommon = Collections.max(trendData.entrySet(), Map.Entry.comparingByValue()).getKey();
-        }
-        analyticsPanel.add(createAnalyticsCard("Most Common Issue", mostCommon, Color.ORANGE));
+        String mostCommon = analytics.getMostCommonCategory();
+        analyticsPanel.add(createAnalyticsCard("Most Common Issue", mostCommon != null ? mostCommon : "None", Color.ORANGE));
         
         // High severity reports
-        long highSeverity = reports.stream().filter(r -> "High".equals(r.getSeverity()) || "Urgent".equals(r.getSeverity())).count();
+        int highSeverity = analytics.countAtLeast(Severity.HIGH);
         analyticsPanel.add(createAnalyticsCard("High/Urgent Reports", String.valueOf(highSeverity), Color.RED));
         
         // Resolved reports
-        long resolved = reports.stream().filter(r -> "Resolved".equals(r.getStatus())).count();
+        int resolved = analytics.countByStatus(Status.RESOLVED);
         analyticsPanel.add(createAnalyticsCard("Resolved Reports", String.valueOf(resolved), Color.GREEN));
         
+        // Compound filters come from the bitmap indexes
+        ReportBitmapIndex bitmaps = store.getBitmapIndex();
+        int openSerious = ReportQuery.severityAtLeast(Severity.HIGH).and(ReportQuery.open()).count(bitmaps);
+        analyticsPanel.add(createAnalyticsCard("Open High/Urgent", String.valueOf(openSerious), Color.MAGENTA));
+        int lastWeek = ReportQuery.lastDays(7, LocalDate.now()).count(bitmaps);
+        analyticsPanel.add(createAnalyticsCard("Reports, Last 7 Days", String.valueOf(lastWeek), Color.DARK_GRAY));
+        
         panel.add(analyticsPanel, BorderLayout.CENTER);
         
+        // District-wide figures, rolled up across every school's counts
+        List<String> schools = district.schoolIds();
+        if (schools.size() > 1) {
+            DistrictRollup rollup = district.rollup(ReportQuery.severityAtLeast(Severity.HIGH).and(ReportQuery.open()));
+            String districtCommon = rollup.analytics.getMostCommonCategory();
+            JPanel districtPanel = new JPanel(new GridLayout(1, 4, 20, 20));
+            districtPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createTitledBorder("District - " + schools.size() + " schools"),
+                new EmptyBorder(10, 10, 10, 10)));
+            districtPanel.add(createAnalyticsCard("Total Reports", String.valueOf(rollup.analytics.getTotal()), Color.BLUE));
+            districtPanel.add(createAnalyticsCard("High/Urgent", String.valueOf(rollup.analytics.countAtLeast(Severity.HIGH)), Color.RED));
+            districtPanel.add(createAnalyticsCard("Open High/Urgent", String.valueOf(rollup.queryCounts[0]), Color.MAGENTA));
+            districtPanel.add(createAnalyticsCard("Most Common Issue", districtCommon != null ? districtCommon : "None", Color.ORANGE));
+            panel.add(districtPanel, BorderLayout.SOUTH);
+        }
+        
+        Metrics.ANALYTICS_RENDER.stop(start);
         return panel;
     }
     
+    // Timings, counters and recent problems, refreshed while the tab is showing
+    private JPanel createDiagnosticsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(new EmptyBorder(20, 20, 20, 20));
+        
+        JLabel titleLabel = new JLabel("Diagnostics");
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 24));
+        titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        panel.add(titleLabel, BorderLayout.NORTH);
+        
+        DefaultTableModel timings = readOnlyModel("Operation", "Count", "p50 ms", "p90 ms", "p99 ms", "Max ms", "Mean ms");
+        DefaultTableModel values = readOnlyModel("Counter", "Value");
+        JTextArea problemsArea = new JTextArea(8, 60);
+        problemsArea.setEditable(false);
+        problemsArea.setLineWrap(true);
+        problemsArea.setWrapStyleWord(true);
+        
+        JScrollPane valuesPane = new JScrollPane(new JTable(values));
+        valuesPane.setPreferredSize(new Dimension(260, 0));
+        JPanel tablesPanel = new JPanel(new BorderLayout(10, 10));
+        tablesPanel.add(new JScrollPane(new JTable(timings)), BorderLayout.CENTER);
+        tablesPanel.add(valuesPane, BorderLayout.EAST);
+        panel.add(tablesPanel, BorderLayout.CENTER);
+        
+        JPanel problemsPanel = new JPanel(new BorderLayout());
+        problemsPanel.setBorder(BorderFactory.createTitledBorder("Problems (most recent first)"));
+        problemsPanel.add(new JScrollPane(problemsArea), BorderLayout.CENTER);
+        panel.add(problemsPanel, BorderLayout.SOUTH);
+        
+        fillDiagnostics(timings, values, problemsArea);
+        if (diagnosticsTimer != null) {
+            diagnosticsTimer.stop();
+        }
+        diagnosticsTimer = new javax.swing.Timer(DIAGNOSTICS_REFRESH_MS, e -> {
+            if (panel.isShowing()) {
+                fillDiagnostics(timings, values, problemsArea);
+            }
+        });
+        diagnosticsTimer.start();
+        
+        return panel;
+    }
+    
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+    
+    private static void fillDiagnostics(DefaultTableModel timings, DefaultTableModel values, JTextArea problemsArea) {
+        timings.setRowCount(0);
+        for (Map.Entry<String, Metrics.Timer> entry : Metrics.timers().entrySet()) {
+            LatencyHistogram histogram = entry.getValue().histogram();
+            timings.addRow(new Object[] {entry.getKey(), histogram.getCount(),
+                milliseconds(histogram.percentile(50)), milliseconds(histogram.percentile(90)),
+                milliseconds(histogram.percentile(99)), milliseconds(histogram.getMax()),
+                milliseconds(Math.round(histogram.getMean()))});
+        }
+        values.setRowCount(0);
+        for (Map.Entry<String, Metrics.Counter> entry : Metrics.counters().entrySet()) {
+            values.addRow(new Object[] {entry.getKey(), String.format("%,d", entry.getValue().get())});
+        }
+        for (Map.Entry<String, LongSupplier> entry : Metrics.gauges().entrySet()) {
+            values.addRow(new Object[] {entry.getKey(), String.format("%,d", entry.getValue().getAsLong())});
+        }
+        List<Metrics.Problem> problems = Metrics.problems();
+        StringBuilder text = new StringBuilder();
+        for (int i = problems.size() - 1; i >= 0; i--) {
+            text.append(problems.get(i)).append('\n');
+        }
+        String shown = problems.isEmpty() ? "None since the app started." : text.toString();
+        if (!shown.equals(problemsArea.getText())) {
+            problemsArea.setText(shown);
+            problemsArea.setCaretPosition(0);
+        }
+    }
+    
+    private static String milliseconds(long micros) {
+        return String.format("%.2f", Metrics.millis(micros));
+    }
+    
     private JPanel createAnalyticsCard(String title, String value, Color color) {
         JPanel card = new JPanel(new BorderLayout());
         card.setBorder(BorderFactory.createCompoundBorder(
@@ -476,12 +989,38 @@ public class AllyApp extends JFrame {
         
         StringBuilder details = new StringBuilder();
         details.append("Report ID: ").append(report.getId()).append("\n\n");
-        details.append("Timestamp: ").append(report.getTimestamp().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss"))).append("\n");
+        details.append("Timestamp: ").append(report.getTimestamp().format(DETAIL_TIME_FORMAT)).append("\n");
         details.append("Category: ").append(report.getCategory()).append("\n");
         details.append("Location: ").append(report.getLocation()).append("\n");
         details.append("Severity: ").append(report.getSeverity()).append("\n");
-        details.append("Status: ").append(report.getStatus()).append("\n\n");
+        boolean archived = store.isArchived(report.getId());
+        details.append("Status: ").append(report.getStatus()).append(archived ? " (archived, read-only)" : "").append("\n");
+        boolean waiting = report.getStatusCode() == Status.NEW.ordinal()
+            || report.getStatusCode() == Status.NEEDS_FOLLOW_UP.ordinal();
+        if (waiting && report.getSeverityCode() < Severity.values().length) {
+            LocalDateTime deadline = TriageQueue.deadline(Severity.values()[report.getSeverityCode()],
+                report.getStatusCode(), report.getTimestamp(), report.getStatusTime());
+            details.append("Review by: ").append(deadline.format(DETAIL_TIME_FORMAT))
+                .append(deadline.isBefore(LocalDateTime.now()) ? " (overdue)" : "").append("\n");
+        }
+        int row = archived ? -1 : store.getReports().indexOfId(report.getId());
+        String claimedBy = row >= 0 ? store.getTriage().claimedBy(row, LocalDateTime.now()) : null;
+        if (claimedBy != null && !claimedBy.equals(counselorName())) {
+            details.append("Being handled by: ").append(claimedBy).append("\n");
+        }
+        details.append("\n");
         details.append("Description:\n").append(report.getDescription());
+        List<SafetyReport> similar = archived ? List.of(report) : store.similarReports(report);
+        if (similar.size() > 1) {
+            details.append("\n\nSimilar reports (").append(similar.size()).append(" in all):\n");
+            for (SafetyReport other : similar) {
+                if (other != report) {
+                    details.append("  ").append(other.getId()).append("  ")
+                        .append(other.getTimestamp().format(DETAIL_TIME_FORMAT)).append("  ")
+                        .append(other.getStatus()).append("\n");
+                }
+            }
+        }
         
         detailsArea.setText(details.toString());
         
@@ -491,15 +1030,33 @@ public class AllyApp extends JFrame {
         // Status update buttons
         JPanel buttonPanel = new JPanel(new FlowLayout());
         
-        String[] statuses = {"Under Review", "In Progress", "Resolved", "Needs Follow-up"};
-        for (String status : statuses) {
-            if (!status.equals(report.getStatus())) {
+        // One incident reported many times is usually handled once, for every report of it
+        JCheckBox wholeCluster = new JCheckBox("All " + similar.size() + " similar", true);
+        if (similar.size() > 1) {
+            buttonPanel.add(wholeCluster);
+        }
+        
+        // Only the moves the status workflow allows from where the report is now;
+        // none for an archived report
+        Status current = Status.fromLabel(report.getStatus());
+        for (Status status : Status.values()) {
+            if (!archived && (current != null ? current.canMoveTo(status) : status != Status.NEW)) {
                 JButton statusButton = new JButton("Mark as " + status);
                 statusButton.addActionListener(e -> {
-                    report.setStatus(status);
-                    saveData();
+                    if (similar.size() > 1 && wholeCluster.isSelected()) {
+                        int changed = store.changeStatus(similar, status.label);
+                        dialog.dispose();
+                        JOptionPane.showMessageDialog(this, changed + " of " + similar.size()
+                            + " similar reports updated to: " + status);
+                        return;
+                    }
+                    try {
+                        store.changeStatus(report, status.label);
+                    } catch (IllegalStateException ex) {
+                        JOptionPane.showMessageDialog(dialog, ex.getMessage(), "Status Not Changed", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
                     dialog.dispose();
-                    updateTabsForRole();
                     JOptionPane.showMessageDialog(this, "Report status updated to: " + status);
                 });
                 buttonPanel.add(statusButton);
@@ -515,61 +1072,255 @@ public class AllyApp extends JFrame {
         dialog.setVisible(true);
     }
     
-    private void updateTrendData(String category) {
-        trendData.put(category, trendData.getOrDefault(category, 0) + 1);
-    }
-    
     private void exportReportsToFile() {
+        JComboBox<ReportExporter.Format> formatCombo = new JComboBox<>(ReportExporter.Format.values());
+        JCheckBox gzipCheck = new JCheckBox("Compress (gzip)");
+        JTextField fromField = new JTextField(10);
+        JTextField toField = new JTextField(10);
+        JComboBox<String> categoryCombo = new JComboBox<>(withAny(SafetyReport.CATEGORIES));
+        JComboBox<String> statusCombo = new JComboBox<>(withAny(SafetyReport.STATUSES));
+        
+        JPanel options = new JPanel(new GridLayout(0, 2, 5, 5));
+        options.add(new JLabel("Format:"));
+        options.add(formatCombo);
+        options.add(new JLabel(""));
+        options.add(gzipCheck);
+        options.add(new JLabel("From (yyyy-mm-dd):"));
+        options.add(fromField);
+        options.add(new JLabel("To (yyyy-mm-dd):"));
+        options.add(toField);
+        options.add(new JLabel("Category:"));
+        options.add(categoryCombo);
+        options.add(new JLabel("Status:"));
+        options.add(statusCombo);
+        // Resolved reports past the archive cutoff are read back from their segments
+        JCheckBox archiveCheck = new JCheckBox("Include archived reports", true);
+        if (store.getArchivedCount() > 0) {
+            options.add(new JLabel(""));
+            options.add(archiveCheck);
+        }
+        
+        if (JOptionPane.showConfirmDialog(this, options, "Export Data", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        ReportExporter.Filter filter;
+        try {
+            // Both dates are whole days, so the range runs to the end of the "to" day
+            LocalDateTime from = fromField.getText().trim().isEmpty() ? null
+                : LocalDate.parse(fromField.getText().trim()).atStartOfDay();
+            LocalDateTime to = toField.getText().trim().isEmpty() ? null
+                : LocalDate.parse(toField.getText().trim()).plusDays(1).atStartOfDay();
+            filter = new ReportExporter.Filter(from, to, anyToNull(categoryCombo), anyToNull(statusCombo));
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this, "Dates must look like 2024-09-01", "Export Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        ReportExporter.Format format = (ReportExporter.Format) formatCombo.getSelectedItem();
+        boolean gzip = gzipCheck.isSelected();
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setSelectedFile(new File("safety_reports_export.txt"));
+        fileChooser.setSelectedFile(new File("safety_reports_export." + format.extension + (gzip ? ".gz" : "")));
         
         int result = fileChooser.showSaveDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("Ally Safety Reports Export");
-                writer.println("Generated: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss")));
-                writer.println("=" .repeat(50));
-                writer.println();
-                
-                for (SafetyReport report : reports) {
-                    writer.println("Report ID: " + report.getId());
-                    writer.println("Timestamp: " + report.getTimestamp().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss")));
-                    writer.println("Category: " + report.getCategory());
-                    writer.println("Location: " + report.getLocation());
-                    writer.println("Severity: " + report.getSeverity());
-                    writer.println("Status: " + report.getStatus());
-                    writer.println("Description: " + report.getDescription());
-                    writer.println("-".repeat(30));
-                    writer.println();
+            boolean withArchive = store.getArchivedCount() > 0 && archiveCheck.isSelected();
+            List<SafetyReport> frozen = store.freeze();
+            ReportExporter exporter = new ReportExporter(format, gzip, filter, store.getBackground().getComputeExecutor());
+            
+            JProgressBar progressBar = new JProgressBar(0, Math.max(1, frozen.size()));
+            progressBar.setStringPainted(true);
+            JDialog progressDialog = new JDialog(this, "Exporting...", false);
+            progressDialog.add(progressBar);
+            progressDialog.setSize(350, 80);
+            progressDialog.setLocationRelativeTo(this);
+            progressDialog.setVisible(true);
+            
+            store.getBackground().compute(() -> {
+                // Only the archive segments spanning the range are read; all of them are older
+                // than the live reports, so they go first
+                List<SafetyReport> reports = !withArchive ? frozen : ReportExporter.concat(
+                    store.findArchived(filter.firstDay(), filter.lastDay(), filter::matches), frozen);
+                return exporter.export(reports, file.toPath(), (done, total) -> SwingUtilities.invokeLater(() -> {
+                    progressBar.setMaximum(Math.max(1, total));
+                    progressBar.setValue(done);
+                }));
+            },
+                written -> {
+                    progressDialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Exported " + written + " reports to: " + file.getAbsolutePath());
+                },
+                e -> {
+                    progressDialog.dispose();
+                    JOptionPane.showMessageDialog(this, "Error exporting reports: " + e.getMessage(), 
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                });
+        }
+    }
+    
+    private static String[] withAny(String[] values) {
+        String[] choices = new String[values.length + 1];
+        choices[0] = ANY;
+        System.arraycopy(values, 0, choices, 1, values.length);
+        return choices;
+    }
+    
+    private static String anyToNull(JComboBox<String> combo) {
+        String value = (String) combo.getSelectedItem();
+        return ANY.equals(value) ? null : value;
+    }
+    
+    // Opens every school's reports on a thread of its own, so the time to a usable
+    // window doesn't grow with them. Tabs showing reports wait behind a placeholder.
+    private void openStoreInBackground() {
+        DistrictStore opening = new DistrictStore(Paths.get("."), SwingUtilities::invokeLater, this::showPendingWrites);
+        CompletableFuture<DistrictStore> opened = CompletableFuture.supplyAsync(() -> {
+            opening.open();
+            return opening;
+        }, task -> new Thread(task, "ally-load").start());
+        
+        // Runs on window close (EXIT_ON_CLOSE) and on any other normal JVM exit, once loading is done
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                opened.join().close();
+            } catch (CompletionException e) {
+                // Never opened, so nothing to write
+            }
+        }, "ally-flush-on-exit"));
+        opened.whenComplete((loaded, error) -> SwingUtilities.invokeLater(() -> storeOpened(loaded, error)));
+    }
+    
+    private void storeOpened(DistrictStore loaded, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            JOptionPane.showMessageDialog(this, "Cannot load the reports: " + cause.getMessage(),
+                "Data Problem", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+        Metrics.STARTUP_LOADED.record(millisSinceJvmStart() * 1000);
+        district = loaded;
+        store = district.school(school);
+        reportTableModel = new ReportTableModel(store.getReports(), store.getDuplicates());
+        fillSchoolMenu();
+        watchReportEvents();
+        for (String title : REPORT_TABS) {
+            invalidateTab(title);
+        }
+        if (submitButton != null) {
+            submitButton.setEnabled(true);
+            submitButton.setToolTipText(null);
+        }
+        showLoadProblems();
+    }
+    
+    // Time to interactive: from JVM start until the window has painted and taken input
+    private void measureStartup() {
+        SwingUtilities.invokeLater(() -> {
+            long millis = millisSinceJvmStart();
+            Metrics.STARTUP_WINDOW.record(millis * 1000);
+            long budget = Long.getLong("ally.startupBudgetMs", DEFAULT_STARTUP_BUDGET_MS);
+            if (millis > budget) {
+                Metrics.problem(String.format("Slow start: the window took %,d ms to open, over the %,d ms budget",
+                    millis, budget));
+            }
+        });
+    }
+    
+    private static long millisSinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+    
+    // Problems from now on show on the status bar as they happen
+    private void watchForProblems() {
+        Metrics.onProblem(problem -> SwingUtilities.invokeLater(() -> showProblem(problem)));
+    }
+    
+    // Problems recorded while loading are listed once, when loading is done
+    private void showLoadProblems() {
+        List<Metrics.Problem> atStartup = Metrics.problems();
+        if (atStartup.isEmpty()) {
+            return;
+        }
+        showProblem(atStartup.get(atStartup.size() - 1));
+        StringBuilder message = new StringBuilder("Ally ran into problems while opening its data:\n\n");
+        for (Metrics.Problem problem : atStartup) {
+            message.append(problem.message).append("\n");
+        }
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, message.toString(),
+            "Data Problem", JOptionPane.WARNING_MESSAGE));
+    }
+    
+    private void showProblem(Metrics.Problem problem) {
+        String text = problem.message.length() > MAX_STATUS_PROBLEM_CHARS
+            ? problem.message.substring(0, MAX_STATUS_PROBLEM_CHARS) + "..." : problem.message;
+        problemLabel.setText(text);
+        problemLabel.setToolTipText(problem.toString());
+    }
+    
+    // Posts a probe to the EDT every EDT_PROBE_MS and records how late it runs. Only
+    // one probe is out at a time, so a long stall is counted once rather than per probe.
+    private static void watchEventDispatchThread() {
+        AtomicBoolean waiting = new AtomicBoolean();
+        Metrics.every(EDT_PROBE_MS, () -> {
+            if (waiting.compareAndSet(false, true)) {
+                long posted = Metrics.EDT_LAG.start();
+                SwingUtilities.invokeLater(() -> {
+                    long micros = Metrics.EDT_LAG.stop(posted);
+                    if (micros > EDT_BLOCKED_MS * 1000) {
+                        Metrics.EDT_BLOCKED_MS.add(micros / 1000);
+                    }
+                    waiting.set(false);
+                });
+            }
+        });
+    }
+    
+    // New reports and status changes, from this window or any other writer, show up
+    // as they happen: rows are added or repainted in place and the counts refilled,
+    // once per batch however many events it holds
+    private void watchReportEvents() {
+        district.getEvents().subscribe(SwingUtilities::invokeLater, this::reportEventsArrived);
+    }
+    
+    private void reportEventsArrived(ReportEvents.Batch batch) {
+        boolean changed = batch.missed;
+        if (batch.missed) {
+            reportTableModel.reload(); // Too far behind to apply one by one
+        }
+        for (ReportEvents.Event event : batch.events) {
+            if (!event.school.equals(school)) {
+                continue;
+            }
+            changed = true;
+            if (event.kind == ReportEvents.Kind.SUBMITTED) {
+                reportTableModel.reportAdded(event.row);
+                if (Severity.URGENT.label.equals(event.report.getSeverity())) {
+                    showUrgentReport(event.report);
                 }
-                
-                JOptionPane.showMessageDialog(this, "Reports exported successfully to: " + file.getAbsolutePath());
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Error exporting reports: " + e.getMessage(), 
-                    "Export Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                reportTableModel.reportChanged(event.row);
             }
         }
+        if (changed) {
+            refreshAnalyticsTab();
+            refreshTrendingTab();
+        }
     }
     
-    private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(reports);
-            oos.writeObject(trendData);
-        } catch (IOException e) {
-            System.err.println("Error saving data: " + e.getMessage());
+    // Only staff are alerted; a student's own view stays as it was
+    private void showUrgentReport(SafetyReport report) {
+        if ("admin".equals(userRole) || "counselor".equals(userRole)) {
+            alertLabel.setText("Urgent: " + report.getCategory() + " at " + report.getLocation()
+                + " (report " + report.getId() + ", " + report.getTimestamp().format(ALERT_TIME_FORMAT) + ")");
+            Toolkit.getDefaultToolkit().beep();
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private void loadData() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            reports = (List<SafetyReport>) ois.readObject();
-            trendData = (Map<String, Integer>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            // File doesn't exist or is corrupted, start with empty data
-            reports = new ArrayList<>();
-            trendData = new HashMap<>();
+    private void showPendingWrites(int pending) {
+        if (pendingLabel != null) {
+            pendingLabel.setText(pending > 0 ? "Saving " + pending + " change(s)..." : "All changes saved");
         }
     }
     
@@ -579,62 +1330,102 @@ public class AllyApp extends JFrame {
     }
     
     public static void main(String[] args) {
+        Metrics.start();
+        if (args.length > 0 && "--server".equals(args[0])) {
+            runServer(args.length > 1 ? Integer.parseInt(args[1]) : ReportServer.DEFAULT_PORT);
+            return;
+        }
+        if (args.length > 0 && "--cds-training".equals(args[0])) {
+            trainClassDataSharing(); // Run by the build; see pom.xml
+            return;
+        }
+        
         SwingUtilities.invokeLater(() -> {
             try {
-                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeel());
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
             } catch (Exception e) {
                 // Use default look and feel
             }
             
-            new AllyApp().setVisible(true);
+            AllyApp app = new AllyApp();
+            app.setVisible(true);
+            app.measureStartup();
         });
     }
+    
+    // Loads the classes a normal start does, without a display, so the build can dump
+    // them into a class data sharing archive (target/ally.jsa) that later starts map
+    // in instead of loading and verifying each class again
+    private static void trainClassDataSharing() {
+        Path data;
+        try {
+            data = Files.createTempDirectory("ally-cds");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                try {
+                    UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+                } catch (Exception e) {
+                    // Use default look and feel
+                }
+                JTabbedPane tabs = new JTabbedPane();
+                JPanel form = new JPanel(new GridBagLayout());
+                form.add(new JComboBox<>(SafetyReport.CATEGORIES));
+                form.add(new JTextArea(5, 30));
+                form.add(new JButton("Submit Report"));
+                tabs.addTab("Report Issue", new JScrollPane(form));
+                tabs.addTab("Loading", createLoadingPanel());
+                new JMenuBar().add(new JMenu("School"));
+                tabs.doLayout();
+            });
+            try (DistrictStore district = new DistrictStore(data, Runnable::run, pending -> { })) {
+                district.open();
+                ReportStore store = district.school(DistrictStore.DEFAULT_SCHOOL);
+                store.submit(store.createReport(SafetyReport.CATEGORIES[0], SafetyReport.LOCATIONS[0],
+                    SafetyReport.SEVERITIES[0], "Class data sharing training report"));
+                new ReportTableModel(store.getReports(), store.getDuplicates()).getRowCount();
+            }
+        } catch (InterruptedException | InvocationTargetException e) {
+            throw new IllegalStateException("Class data sharing training failed", e);
+        } finally {
+            deleteRecursively(data);
+        }
+        System.exit(0); // Past the AWT threads; the archive is written on exit
+    }
+    
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // Only a temp directory
+        }
+    }
+    
+    // Headless mode: no window, just the HTTP server in front of the same report files.
+    // Staff calls need -Dally.staffToken, or a token made up here and printed once.
+    private static void runServer(int port) {
+        String configured = System.getProperty("ally.staffToken", "");
+        boolean generated = configured.isEmpty();
+        String token = generated ? ReportServer.newStaffToken() : configured;
+        DistrictStore district = new DistrictStore(Paths.get("."), Runnable::run, pending -> { });
+        district.open();
+        ReportServer server;
+        try {
+            server = new ReportServer(district, new InetSocketAddress(port), token);
+        } catch (IOException e) {
+            district.close();
+            throw new UncheckedIOException("Cannot start server on port " + port, e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            district.close();
+        }, "ally-server-shutdown"));
+        server.start();
+        System.out.println("Ally server listening on http://localhost:" + server.getPort() + "/");
+        if (generated) {
+            System.out.println("Staff token for this run: " + token + " (set -Dally.staffToken to choose one)");
+        }
+    }
 }
-
-// Safety Report Data Class
-class SafetyReport implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private static int nextId = 1;
-    
-    private int id;
-    private String category;
-    private String location;
-    private String severity;
-    private String description;
-    private LocalDateTime timestamp;
-    private String status;
-    
-    public SafetyReport(String category, String location, String severity, String description) {
-        this.id = nextId++;
-        this.category = category;
-        this.location = location;
-        this.severity = severity;
-        this.description = description;
-        this.timestamp = LocalDateTime.now();
-        this.status = "New";
-    }
-    
-    // Getters
-    public int getId() { return id; }
-    public String getCategory() { return category; }
-    public String getLocation() { return location; }
-    public String getSeverity() { return severity; }
-    public String getDescription() { return description; }
-    public LocalDateTime getTimestamp() { return timestamp; }
-    public String getStatus() { return status; }
-    
-    // Setters
-    public void setStatus(String status) { this.status = status; }
-    
-    @Override
-    public String toString() {
-        return "SafetyReport{" +
-                "id=" + id +
-                ", category='" + category + '\'' +
-                ", location='" + location + '\'' +
-                ", severity='" + severity + '\'' +
-                ", timestamp=" + timestamp +
-                ", status='" + status + '\'' +
-                '}';
-    }
-}
\ No newline at end of file
@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+// Keeps disk writes and long-running work off the Event Dispatch Thread.
+//
+// Persistence runs on one thread so log records and snapshots hit the disk in the
+// order they were made. Log writes queued within COALESCE_MS of each other are
+// written as one batch with a single fsync. Other heavy work runs on a compute
+// executor (virtual threads when the JVM has them) and hands its result back
+// through the callback executor (the EDT in the desktop app), the way SwingWorker does.
+class BackgroundExecutor implements AutoCloseable {
+    private static final long COALESCE_MS = 25;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // A single log write that may fail with an IOException
+    interface LogWrite {
+        void writeTo(ReportLog log) throws IOException;
+    }
+
+    private final ReportLog reportLog;
+    private final Executor callbacks;
+    private final ScheduledExecutorService writer;
+    private final ExecutorService compute;
+    private final IntConsumer pendingListener;
+
+    private final List<LogWrite> pendingWrites = new ArrayList<>(); // Guarded by this
+    private boolean flushScheduled;                                   // Guarded by this
+    private int pendingCount;                                         // Guarded by this
+    private int recordsSinceCompaction;                               // Guarded by this
+    private int compactionsQueued;                                    // Guarded by this
+    private boolean closed;                                           // Guarded by this
+
+    // pendingListener is called through callbacks whenever the number of unsaved changes moves
+    BackgroundExecutor(ReportLog reportLog, Executor callbacks, IntConsumer pendingListener) {
+        this.reportLog = reportLog;
+        this.callbacks = callbacks;
+        this.pendingListener = pendingListener;
+        this.writer = Executors.newSingleThreadScheduledExecutor(namedThreads("ally-persistence", false));
+        this.compute = newComputeExecutor();
+    }
+
+    public void submitLogWrite(LogWrite write) {
+        submitLogWrite(write, 1);
+    }
+
+    // A write appending the given number of log records, such as a synced batch of reports
+    public synchronized void submitLogWrite(LogWrite write, int records) {
+        if (closed) {
+            throw new IllegalStateException("Background executor is closed");
+        }
+        pendingWrites.add(write);
+        recordsSinceCompaction += records;
+        changePending(1);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            writer.schedule(this::flushPending, COALESCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // For work that fans out from inside compute(), such as formatting export chunks
+    public Executor getComputeExecutor() {
+        return compute;
+    }
+
+    public synchronized int getRecordsSinceCompaction() {
+        return recordsSinceCompaction;
+    }
+
+    // Writes the frozen reports as the new snapshot and then empties the log. Log
+    // writes queued before this call go to the log first, in case the snapshot
+    // fails; later ones are written after the reset so none of them are lost.
+    // The reports are frozen only after the queue is drained, and the freeze waits out
+    // appends in progress, so every report whose record is about to be reset away is
+    // already in the snapshot.
+    // onWritten gets the opened snapshot through callbacks.
+    public synchronized void submitCompaction(SnapshotGenerations snapshots, Supplier<List<SafetyReport>> freeze,
+                                              Consumer<ColumnarReportStore> onWritten) {
+        List<LogWrite> before = drainPending();
+        List<SafetyReport> frozen = freeze.get();
+        recordsSinceCompaction = 0;
+        compactionsQueued++;
+        changePending(1);
+        writer.execute(() -> {
+            try {
+                writeAll(before);
+                long start = Metrics.SNAPSHOT_SAVE.start();
+                snapshots.save(frozen);
+                ColumnarReportStore snapshot = ColumnarReportStore.open(snapshots.generation(0));
+                reportLog.reset();
+                Metrics.checkSlowWrite("saving a snapshot of " + frozen.size() + " reports",
+                    Metrics.SNAPSHOT_SAVE.stop(start));
+                callbacks.execute(() -> onWritten.accept(snapshot));
+            } catch (IOException | RuntimeException e) {
+                // The log still holds every record, so nothing is lost until the next try
+                Metrics.SAVE_ERRORS.increment();
+                Metrics.problem("Error saving snapshot " + snapshots.generation(0) + ": " + e.getMessage());
+            } finally {
+                changePending(-1 - before.size());
+                synchronized (this) {
+                    compactionsQueued--;
+                }
+                flushPending(); // Writes held back while the compaction was queued go to the fresh log now
+            }
+        });
+    }
+
+    // Runs work off the EDT and passes its result to onDone through callbacks. Failures go to onError.
+    public <T> void compute(Callable<T> work, Consumer<T> onDone, Consumer<Exception> onError) {
+        compute.execute(() -> {
+            try {
+                T result = work.call();
+                callbacks.execute(() -> onDone.accept(result));
+            } catch (Exception e) {
+                callbacks.execute(() -> onError.accept(e));
+            }
+        });
+    }
+
+    private void flushPending() {
+        List<LogWrite> batch;
+        synchronized (this) {
+            if (compactionsQueued > 0) {
+                // A flush that fell due before a queued compaction must not write records
+                // made after its drain, or the compaction's log reset would erase them.
+                // The compaction flushes once it is done.
+                flushScheduled = false;
+                return;
+            }
+            batch = drainPending();
+        }
+        try {
+            writeAll(batch);
+        } finally {
+            changePending(-batch.size());
+        }
+    }
+
+    private synchronized List<LogWrite> drainPending() {
+        List<LogWrite> batch = new ArrayList<>(pendingWrites);
+        pendingWrites.clear();
+        flushScheduled = false;
+        return batch;
+    }
+
+    private void writeAll(List<LogWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = Metrics.LOG_FLUSH.start();
+        try {
+            for (LogWrite write : batch) {
+                write.writeTo(reportLog);
+            }
+            reportLog.sync();
+            Metrics.checkSlowWrite("writing " + batch.size() + " log record(s)", Metrics.LOG_FLUSH.stop(start));
+        } catch (IOException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error writing report log, " + batch.size() + " change(s) not saved: " + e.getMessage());
+        }
+    }
+
+    private synchronized void changePending(int delta) {
+        pendingCount += delta;
+        int pending = pendingCount;
+        callbacks.execute(() -> pendingListener.accept(pending));
+    }
+
+    // Writes everything still queued, waits for the writer to finish and closes the log.
+    // Safe to call more than once; the shutdown hook calls it on every exit path.
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writer.execute(this::flushPending);
+        writer.shutdown();
+        compute.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                Metrics.SAVE_ERRORS.increment();
+                Metrics.problem("Timed out after " + SHUTDOWN_TIMEOUT_SECONDS + "s waiting for pending writes to "
+                    + reportLog.getPath());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            reportLog.close();
+        } catch (IOException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error closing report log " + reportLog.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    // Virtual threads when running on a JDK that has them, daemon platform threads otherwise
+    static ExecutorService newComputeExecutor() {
+        return newVirtualThreadExecutor().orElseGet(() -> Executors.newCachedThreadPool(namedThreads("ally-compute", true)));
+    }
+
+    // Looked up reflectively so the app still builds and runs on Java 17
+    static Optional<ExecutorService> newVirtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String name, boolean daemon) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,20 @@
+// Kinds of report offered in the UI. Declaration order is the dictionary code
+// order on disk, so only ever add constants at the end.
+enum Category {
+    BULLYING("Bullying"),
+    UNSAFE_AREA("Unsafe Area"),
+    HARASSMENT("Harassment"),
+    FACILITY_ISSUE("Facility Issue"),
+    SOCIAL_EXCLUSION("Social Exclusion"),
+    CYBER_BULLYING("Cyber Bullying"),
+    OTHER("Other");
+
+    final String label;
+
+    Category(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() { return label; }
+}
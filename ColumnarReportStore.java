@@ -0,0 +1,433 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32C;
+
+// Read-only, memory-mapped columnar snapshot of reports.
+//
+// [int MAGIC][byte VERSION][int count][int maxId][byte idOrder][long heapSize]
+// [dictionary x4: category, location, severity, status]  each [byte n][n x (short len, utf-8)]
+// [description heap: utf-8 bytes]
+// [int id x count][long epochMillis x count][byte x count per coded field x4][long descOffset x (count+1)]
+// [long statusEpochMillis x count]                        (version 5 on)
+// [int row x count, in ID order]                          (only when idOrder is ID_INDEX)
+// [int crc32c of everything before it][int FOOTER_MAGIC]   (version 3 on; version 2 files have no footer)
+//
+// The fixed-width columns are mapped so opening costs the same no matter how many
+// reports there are; descriptions stay on disk and are read by offset when asked for.
+// Finding a row by ID is a binary search: over the rows themselves when they are in
+// ID order, else over the ID index written after them. Concurrent submits can take
+// list slots out of ID order, so the index is what keeps replaying the log at
+// startup from scanning the snapshot once per record. Files from before version 4
+// may have neither, and are scanned. Files from before version 5 don't say when each
+// status was set, and give the report's own time instead.
+// Dictionaries are per file, so values outside SafetyReport's arrays still round-trip.
+// open() checks only the structure; verify() reads the whole file against its checksum.
+class ColumnarReportStore implements Closeable {
+    static final byte VERSION = 5;
+    private static final byte UNTIMED_VERSION = 4;   // Still read; status times are the report times
+    private static final byte UNINDEXED_VERSION = 3; // Still read; rows out of ID order have no index
+    private static final byte UNCHECKED_VERSION = 2; // Still read, but can't be verified
+    private static final int FOOTER_MAGIC = 0x414C5945; // "ALYE"
+    private static final int FOOTER_SIZE = 8;
+    private static final int CHECKSUM_BUFFER_BYTES = 1 << 20;
+
+    static final int CATEGORY = 0;
+    static final int LOCATION = 1;
+    static final int SEVERITY = 2;
+    static final int STATUS = 3;
+
+    private static final int HEADER_SIZE = 22;
+    private static final byte IDS_UNORDERED = 0;      // Older files only
+    private static final byte IDS_SORTED = 1;         // Rows are in ID order
+    private static final byte ID_INDEX = 2;           // Rows in ID order are listed after the columns
+    private static final int HEAP_SIZE_POSITION = 14;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer columns;
+    private final byte version;
+    private final int count;
+    private final int maxId;
+    private final byte idOrder;
+    private final String[][] dictionaries = new String[4][];
+    private final int[][] fieldCodes = new int[4][]; // File dictionary code -> FieldDictionary code
+    private final int idColumn;
+    private final int timestampColumn;
+    private final int[] codeColumns = new int[4];
+    private final int descOffsetColumn;
+    private final int statusTimeColumn;
+    private final int idIndexColumn;
+    private final long heapStart;
+
+    private ColumnarReportStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (channel.size() < HEADER_SIZE || in.readInt() != ReportCodec.MAGIC) {
+            throw new IOException("Not a columnar report snapshot");
+        }
+        version = in.readByte();
+        if (!isKnownVersion(version)) {
+            throw new IOException("Not a columnar report snapshot");
+        }
+        count = in.readInt();
+        maxId = in.readInt();
+        idOrder = in.readByte();
+        if (idOrder != IDS_UNORDERED && idOrder != IDS_SORTED && idOrder != ID_INDEX) {
+            throw new IOException("Unknown ID order " + idOrder + " in columnar report snapshot");
+        }
+        long heapSize = in.readLong();
+
+        long position = HEADER_SIZE;
+        for (int field = 0; field < 4; field++) {
+            int n = in.readUnsignedByte();
+            position++;
+            dictionaries[field] = new String[n];
+            for (int i = 0; i < n; i++) {
+                byte[] utf8 = new byte[in.readUnsignedShort()];
+                in.readFully(utf8);
+                dictionaries[field][i] = new String(utf8, StandardCharsets.UTF_8);
+                position += 2 + utf8.length;
+            }
+            fieldCodes[field] = new int[n];
+            for (int i = 0; i < n; i++) {
+                fieldCodes[field][i] = FieldDictionary.forField(field).code(dictionaries[field][i]);
+            }
+        }
+        heapStart = position;
+        long columnsStart = heapStart + heapSize;
+        long columnsSize = (long) count * (4 + 8 + 4) + (long) (count + 1) * 8 + (version >= VERSION ? count * 8L : 0)
+            + (idOrder == ID_INDEX ? count * 4L : 0);
+        if (columnsStart + columnsSize > channel.size()) {
+            throw new IOException("Truncated columnar report snapshot");
+        }
+        columns = channel.map(FileChannel.MapMode.READ_ONLY, columnsStart, columnsSize);
+        idColumn = 0;
+        timestampColumn = idColumn + count * 4;
+        codeColumns[CATEGORY] = timestampColumn + count * 8;
+        for (int field = 1; field < 4; field++) {
+            codeColumns[field] = codeColumns[field - 1] + count;
+        }
+        descOffsetColumn = codeColumns[STATUS] + count;
+        statusTimeColumn = descOffsetColumn + (count + 1) * 8;
+        idIndexColumn = statusTimeColumn + (version >= VERSION ? count * 8 : 0);
+    }
+
+    public static ColumnarReportStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ColumnarReportStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static boolean isColumnarSnapshot(byte[] header) {
+        return header.length >= 5 && ByteBuffer.wrap(header).getInt() == ReportCodec.MAGIC && isKnownVersion(header[4]);
+    }
+
+    private static boolean isKnownVersion(byte version) {
+        return version == VERSION || version == UNTIMED_VERSION || version == UNINDEXED_VERSION
+            || version == UNCHECKED_VERSION;
+    }
+
+    // Whether the file is a whole snapshot: its footer is in place and the checksum
+    // matches. Reads the entire file. Files from before checksums only need to open.
+    // Returns false early, without deciding, once stop says so.
+    public static boolean verify(Path path, BooleanSupplier stop) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            ByteBuffer header = ByteBuffer.allocate(5);
+            file.read(header, 0);
+            if (!isColumnarSnapshot(header.array())) {
+                return false;
+            }
+            if (header.get(4) == UNCHECKED_VERSION) {
+                new ColumnarReportStore(file);
+                return true;
+            }
+            if (size < HEADER_SIZE + FOOTER_SIZE) {
+                return false;
+            }
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            file.read(footer, size - FOOTER_SIZE);
+            if (footer.getInt(4) != FOOTER_MAGIC) {
+                return false;
+            }
+            long checksum = checksum(file, size - FOOTER_SIZE, stop);
+            return checksum >= 0 && (int) checksum == footer.getInt(0);
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            return false; // Unreadable counts as damaged
+        }
+    }
+
+    // CRC32C of the first length bytes, or -1 if stop said to give up first
+    private static long checksum(FileChannel file, long length, BooleanSupplier stop) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_BYTES);
+        long position = 0;
+        while (position < length) {
+            if (stop.getAsBoolean()) {
+                return -1;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - position));
+            int read = file.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Snapshot shorter than expected");
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+        return crc.getValue();
+    }
+
+    public int size() { return count; }
+    public int getMaxId() { return maxId; }
+
+    public int id(int row) { return columns.getInt(idColumn + row * 4); }
+
+    public LocalDateTime timestamp(int row) {
+        long millis = columns.getLong(timestampColumn + row * 8);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    // When the row's status was last set; its timestamp in files from before version 5
+    public LocalDateTime statusTime(int row) {
+        if (version < VERSION) {
+            return timestamp(row);
+        }
+        long millis = columns.getLong(statusTimeColumn + row * 8);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    public String category(int row) { return coded(CATEGORY, row); }
+    public String location(int row) { return coded(LOCATION, row); }
+    public String severity(int row) { return coded(SEVERITY, row); }
+    public String status(int row) { return coded(STATUS, row); }
+
+    private String coded(int field, int row) {
+        return dictionaries[field][columns.get(codeColumns[field] + row) & 0xFF];
+    }
+
+    // FieldDictionary code of one of the coded fields
+    public int code(int field, int row) {
+        return fieldCodes[field][columns.get(codeColumns[field] + row) & 0xFF];
+    }
+
+    // Reads one description straight from the file; nothing is cached on the heap.
+    // A failed read throws rather than passing off an empty description, which a
+    // compaction would otherwise write into the next snapshot for good.
+    public String description(int row) {
+        long start = columns.getLong(descOffsetColumn + row * 8);
+        long end = columns.getLong(descOffsetColumn + (row + 1) * 8);
+        ByteBuffer utf8 = ByteBuffer.allocate((int) (end - start));
+        try {
+            while (utf8.hasRemaining()) {
+                if (channel.read(utf8, heapStart + start + utf8.position()) < 0) {
+                    throw new IOException("Unexpected end of description heap");
+                }
+            }
+        } catch (IOException e) {
+            Metrics.LOAD_ERRORS.increment();
+            throw new UncheckedIOException("Cannot read the description of report " + id(row) + " from the snapshot", e);
+        }
+        return new String(utf8.array(), StandardCharsets.UTF_8);
+    }
+
+    // Whether rowOf() is a binary search rather than a scan
+    public boolean hasIdOrder() {
+        return idOrder != IDS_UNORDERED;
+    }
+
+    // Row holding the given report ID, or -1
+    public int rowOf(int id) {
+        if (idOrder != IDS_UNORDERED) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int row = idOrder == ID_INDEX ? columns.getInt(idIndexColumn + mid * 4) : mid;
+                int midId = id(row);
+                if (midId < id) low = mid + 1;
+                else if (midId > id) high = mid - 1;
+                else return row;
+            }
+            return -1;
+        }
+        for (int row = 0; row < count; row++) {
+            if (id(row) == id) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    // Materializes a row; the description is left on disk until getDescription() is called
+    public SafetyReport report(int row) {
+        return new SafetyReport(id(row), code(CATEGORY, row), code(LOCATION, row), code(SEVERITY, row),
+            code(STATUS, row), timestamp(row), statusTime(row), this, row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        channel.close();
+    }
+
+    // Writes a snapshot to a temporary file and moves it over the target, so a
+    // reader never sees a half-written file and an open mapping of the old one stays valid.
+    public static void write(Path path, List<SafetyReport> reports) throws IOException {
+        Path temp = writeTemporary(path, reports);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path);
+    }
+
+    // Writes the complete, checksummed and fsynced snapshot beside path as path.tmp,
+    // for the caller to move into place
+    static Path writeTemporary(Path path, List<SafetyReport> reports) throws IOException {
+        int count = reports.size();
+        List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        String[][] defaults = {SafetyReport.CATEGORIES, SafetyReport.LOCATIONS, SafetyReport.SEVERITIES, SafetyReport.STATUSES};
+        for (String[] values : defaults) {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            for (String value : values) {
+                dictionary.put(value, dictionary.size());
+            }
+            dictionaries.add(dictionary);
+        }
+
+        byte[][] codes = new byte[4][count];
+        int maxId = 0;
+        boolean idsSorted = true;
+        int previousId = Integer.MIN_VALUE;
+        for (int row = 0; row < count; row++) {
+            SafetyReport report = reports.get(row);
+            String[] values = {report.getCategory(), report.getLocation(), report.getSeverity(), report.getStatus()};
+            for (int field = 0; field < 4; field++) {
+                Map<String, Integer> dictionary = dictionaries.get(field);
+                Integer code = dictionary.get(values[field]);
+                if (code == null) {
+                    if (dictionary.size() == 255) {
+                        throw new IOException("Too many distinct values for field " + field);
+                    }
+                    code = dictionary.size();
+                    dictionary.put(values[field], code);
+                }
+                codes[field][row] = (byte) (int) code;
+            }
+            maxId = Math.max(maxId, report.getId());
+            idsSorted &= report.getId() > previousId;
+            previousId = report.getId();
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16));
+            out.writeInt(ReportCodec.MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(count);
+            out.writeInt(maxId);
+            out.writeByte(idsSorted ? IDS_SORTED : ID_INDEX);
+            out.writeLong(0); // Heap size, patched below once it is known
+            for (Map<String, Integer> dictionary : dictionaries) {
+                out.writeByte(dictionary.size());
+                for (String value : dictionary.keySet()) {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(utf8.length);
+                    out.write(utf8);
+                }
+            }
+            long[] descOffsets = new long[count + 1];
+            for (int row = 0; row < count; row++) {
+                byte[] utf8 = reports.get(row).getDescription().getBytes(StandardCharsets.UTF_8);
+                out.write(utf8);
+                descOffsets[row + 1] = descOffsets[row] + utf8.length;
+            }
+            for (SafetyReport report : reports) {
+                out.writeInt(report.getId());
+            }
+            for (SafetyReport report : reports) {
+                out.writeLong(report.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+            for (byte[] column : codes) {
+                out.write(column);
+            }
+            for (long descOffset : descOffsets) {
+                out.writeLong(descOffset);
+            }
+            for (SafetyReport report : reports) {
+                out.writeLong(report.getStatusTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+            if (!idsSorted) {
+                for (int row : rowsInIdOrder(reports)) {
+                    out.writeInt(row);
+                }
+            }
+            out.flush();
+            ByteBuffer heapSize = ByteBuffer.allocate(8).putLong(0, descOffsets[count]);
+            file.write(heapSize, HEAP_SIZE_POSITION);
+            // Checksummed from the file itself, read back while it is still in the page cache
+            long length = file.size();
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putInt((int) checksum(file, length, () -> false)).putInt(FOOTER_MAGIC).flip();
+            while (footer.hasRemaining()) {
+                file.write(footer, length + footer.position());
+            }
+            file.force(true);
+        }
+        return temp;
+    }
+
+    // Row numbers sorted by their report's ID
+    private static int[] rowsInIdOrder(List<SafetyReport> reports) {
+        long[] idAndRow = new long[reports.size()];
+        for (int row = 0; row < idAndRow.length; row++) {
+            idAndRow[row] = (long) reports.get(row).getId() << 32 | row;
+        }
+        Arrays.sort(idAndRow);
+        int[] rows = new int[idAndRow.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (int) idAndRow[i];
+        }
+        return rows;
+    }
+
+    // Makes a rename in path's directory durable. Not every platform can open a
+    // directory; there the rename is as durable as the file system makes it anyway.
+    static void syncDirectory(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Unsupported here
+        }
+    }
+}
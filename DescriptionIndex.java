@@ -0,0 +1,377 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Full-text index over report descriptions, searched with BM25 ranking.
+//
+// Documents are rows of the report list. Each term's postings are kept in blocks
+// of BLOCK_DOCS rows, delta- and varint-encoded with the term's frequency in the
+// row, so a typical posting costs two or three bytes. Rows normally arrive in
+// order and go on the end of the last block; one that arrives a little late (two
+// submits racing) only means re-encoding that last block.
+//
+// Rows already on disk at startup go into a base segment built in the background;
+// rows submitted after that go into a live segment straight away. Searches read
+// both, so new reports are findable at once and old ones as soon as the base is built.
+class DescriptionIndex {
+    private static final double K1 = 1.2;   // BM25 term-frequency saturation
+    private static final double B = 0.75;   // BM25 length normalization
+    private static final int BLOCK_DOCS = 128;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "had", "has", "have",
+        "he", "her", "him", "his", "i", "in", "into", "is", "it", "its", "me", "my", "of", "on", "or",
+        "our", "she", "so", "that", "the", "their", "them", "then", "there", "they", "this", "to",
+        "was", "we", "were", "what", "when", "which", "who", "with", "you", "your");
+
+    // One matching row and how well it matched
+    static final class Hit {
+        final int row;
+        final double score;
+
+        Hit(int row, double score) {
+            this.row = row;
+            this.score = score;
+        }
+    }
+
+    private final Segment base = new Segment();
+    private final Segment live = new Segment();
+    private final int baseRows;         // Rows below this belong to the base segment
+    private volatile boolean baseReady;
+
+    // Rows [0, baseRows) will be indexed by buildBase(); later rows by add()
+    DescriptionIndex(int baseRows) {
+        this.baseRows = baseRows;
+        this.baseReady = baseRows == 0;
+    }
+
+    public boolean isReady() {
+        return baseReady;
+    }
+
+    // Indexes the rows that were on disk at startup. Runs once, off the EDT.
+    public void buildBase(ReportList reports) {
+        for (int row = 0; row < baseRows; row++) {
+            base.add(row, tokenize(reports.descriptionAt(row)));
+        }
+        baseReady = true;
+    }
+
+    public void add(int row, String description) {
+        if (row >= baseRows) {
+            live.add(row, tokenize(description));
+        }
+    }
+
+    // Best-scoring rows for the query, best first. While the base is still being
+    // built, older rows may be missing from the results.
+    public List<Hit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        List<Hit> ranked = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return ranked;
+        }
+        Segment[] segments = {base, live};
+        int docs = base.docCount() + live.docCount();
+        double avgLength = docs == 0 ? 1 : Math.max(1.0, (double) (base.totalLength() + live.totalLength()) / docs);
+
+        // Term-at-a-time scoring into one accumulator slot per row
+        float[] scores = new float[Math.max(baseRows, live.rowLimit())];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (String term : terms) {
+            int df = base.documentFrequency(term) + live.documentFrequency(term);
+            if (df == 0) {
+                continue;
+            }
+            double idf = Math.log(1 + (docs - df + 0.5) / (df + 0.5));
+            for (Segment segment : segments) {
+                int[] postings = segment.postings(term);
+                for (int i = 0; i < postings.length; i += 3) {
+                    int row = postings[i];
+                    int tf = postings[i + 1];
+                    if (row >= scores.length) {
+                        continue; // Added after this search started
+                    }
+                    double norm = K1 * (1 - B + B * postings[i + 2] / avgLength);
+                    if (scores[row] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = row;
+                    }
+                    scores[row] += (float) (idf * tf * (K1 + 1) / (tf + norm));
+                }
+            }
+        }
+
+        // Keep the best `limit` with a min-heap instead of sorting every match
+        PriorityQueue<Hit> best = new PriorityQueue<>((a, b) -> a.score != b.score
+            ? Double.compare(a.score, b.score)
+            : Integer.compare(a.row, b.row));
+        for (int i = 0; i < touchedCount; i++) {
+            int row = touched[i];
+            if (best.size() < limit) {
+                best.add(new Hit(row, scores[row]));
+            } else if (scores[row] > best.peek().score) {
+                best.poll();
+                best.add(new Hit(row, scores[row]));
+            }
+        }
+        ranked.addAll(best);
+        ranked.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : Integer.compare(b.row, a.row));
+        return ranked;
+    }
+
+    // Lower-cased words and numbers, stop words dropped, each reduced to its stem
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || isInnerApostrophe(text, i))) {
+                i++;
+            }
+            if (i > start) {
+                String word = text.substring(start, i).toLowerCase().replace("'", "");
+                if (!STOP_WORDS.contains(word)) {
+                    tokens.add(stem(word));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isInnerApostrophe(String text, int i) {
+        return text.charAt(i) == '\'' && i + 1 < text.length() && Character.isLetter(text.charAt(i + 1));
+    }
+
+    // Light suffix stripping in the spirit of Porter's step 1: enough that "pushed",
+    // "pushing" and "pushes" meet, without the full algorithm's surprises on short words
+    static String stem(String word) {
+        if (word.length() <= 3) {
+            return word;
+        }
+        if (word.endsWith("ies") && word.length() > 4) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("sses")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("ing") && word.length() > 5) {
+            return undouble(word.substring(0, word.length() - 3));
+        }
+        if (word.endsWith("ed") && word.length() > 4) {
+            return undouble(word.substring(0, word.length() - 2));
+        }
+        if (word.endsWith("ly") && word.length() > 4) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("es") && word.length() > 4 && isSibilant(word.charAt(word.length() - 3))) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static boolean isSibilant(char c) {
+        return c == 's' || c == 'x' || c == 'z' || c == 'h';
+    }
+
+    // "hitt" -> "hit", "stopp" -> "stop", but "fall" and "pass" stay
+    private static String undouble(String stem) {
+        int n = stem.length();
+        if (n >= 3 && stem.charAt(n - 1) == stem.charAt(n - 2) && "lsz".indexOf(stem.charAt(n - 1)) < 0
+                && Character.isLetter(stem.charAt(n - 1))) {
+            return stem.substring(0, n - 1);
+        }
+        return stem;
+    }
+
+    private interface PostingVisitor {
+        void visit(int row, int termFrequency);
+    }
+
+    // Postings and row lengths for a set of rows. Writers are serialized by the
+    // segment's lock; a search takes it too, so it always sees whole blocks.
+    private static final class Segment {
+        private final Map<String, Postings> terms = new HashMap<>();
+        private int[] lengths = new int[1024]; // Tokens per row, by row
+        private int docCount;
+        private long totalLength;
+
+        synchronized void add(int row, List<String> tokens) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), t -> new Postings()).add(row, entry.getValue());
+            }
+            if (row >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(lengths.length * 2, row + 1));
+            }
+            lengths[row] = tokens.size();
+            docCount++;
+            totalLength += tokens.size();
+        }
+
+        synchronized int docCount() {
+            return docCount;
+        }
+
+        synchronized long totalLength() {
+            return totalLength;
+        }
+
+        // One past the highest row this segment could hold so far
+        synchronized int rowLimit() {
+            return lengths.length;
+        }
+
+        synchronized int documentFrequency(String term) {
+            Postings postings = terms.get(term);
+            return postings == null ? 0 : postings.size();
+        }
+
+        // The term's postings decoded as (row, term frequency, row length) triples
+        synchronized int[] postings(String term) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                return new int[0];
+            }
+            int[] triples = new int[postings.size() * 3];
+            int[] n = {0};
+            postings.forEach((row, tf) -> {
+                triples[n[0]++] = row;
+                triples[n[0]++] = tf;
+                triples[n[0]++] = lengths[row];
+            });
+            return triples;
+        }
+    }
+
+    // A term's rows in ascending order, as encoded blocks plus the open last block
+    private static final class Postings {
+        private final List<byte[]> sealed = new ArrayList<>();
+        private final List<Integer> sealedFirstRows = new ArrayList<>();
+        private int[] openRows = new int[BLOCK_DOCS];
+        private int[] openFrequencies = new int[BLOCK_DOCS];
+        private int openCount;
+        private int size;
+
+        void add(int row, int frequency) {
+            if (openCount == BLOCK_DOCS) {
+                seal();
+            }
+            // Normally appends; a row that arrived late slides into place in the open block
+            int at = openCount;
+            while (at > 0 && openRows[at - 1] > row) {
+                at--;
+            }
+            if (at == 0 && !sealed.isEmpty() && sealedFirstRows.get(sealed.size() - 1) > row) {
+                insertSealed(row, frequency); // Very late; rare enough to just rebuild
+                return;
+            }
+            System.arraycopy(openRows, at, openRows, at + 1, openCount - at);
+            System.arraycopy(openFrequencies, at, openFrequencies, at + 1, openCount - at);
+            openRows[at] = row;
+            openFrequencies[at] = frequency;
+            openCount++;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void forEach(PostingVisitor visitor) {
+            for (byte[] block : sealed) {
+                decode(block, visitor);
+            }
+            for (int i = 0; i < openCount; i++) {
+                visitor.visit(openRows[i], openFrequencies[i]);
+            }
+        }
+
+        private void seal() {
+            sealed.add(encode(openRows, openFrequencies, openCount));
+            sealedFirstRows.add(openRows[0]);
+            openCount = 0;
+        }
+
+        private void insertSealed(int row, int frequency) {
+            int[] rows = new int[size + 1];
+            int[] frequencies = new int[size + 1];
+            int[] n = {0};
+            forEach((r, tf) -> {
+                rows[n[0]] = r;
+                frequencies[n[0]++] = tf;
+            });
+            int at = n[0];
+            while (at > 0 && rows[at - 1] > row) {
+                at--;
+            }
+            System.arraycopy(rows, at, rows, at + 1, n[0] - at);
+            System.arraycopy(frequencies, at, frequencies, at + 1, n[0] - at);
+            rows[at] = row;
+            frequencies[at] = frequency;
+            sealed.clear();
+            sealedFirstRows.clear();
+            openCount = 0;
+            size = 0;
+            for (int i = 0; i < rows.length; i++) {
+                add(rows[i], frequencies[i]);
+            }
+        }
+
+        private static byte[] encode(int[] rows, int[] frequencies, int count) {
+            ReportCodec.Writer out = new ReportCodec.Writer(count * 3 + 5);
+            out.writeVarLong(count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                out.writeVarLong(rows[i] - previous);
+                out.writeVarLong(frequencies[i]);
+                previous = rows[i];
+            }
+            return Arrays.copyOf(out.array(), out.size());
+        }
+
+        private static void decode(byte[] block, PostingVisitor visitor) {
+            int[] pos = {0};
+            int count = readVarInt(block, pos);
+            int row = 0;
+            for (int i = 0; i < count; i++) {
+                row += readVarInt(block, pos);
+                visitor.visit(row, readVarInt(block, pos));
+            }
+        }
+
+        // Same LEB128 layout ReportCodec.Writer.writeVarLong produces
+        private static int readVarInt(byte[] block, int[] pos) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = block[pos[0]++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
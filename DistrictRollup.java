@@ -0,0 +1,65 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// District-wide figures for a set of school shards, computed fork-join: the shard
+// list is split in halves down to one school per task, each leaf copies that
+// school's running counts, and the halves are added together on the way back up.
+// The work grows with the number of schools, not reports, and spreads over cores.
+final class DistrictRollup {
+    int schools;
+    final ReportAnalytics analytics = new ReportAnalytics();
+    final TrendWindow trends = new TrendWindow();
+    final int[] queryCounts; // One per query passed to compute(), summed over the schools
+
+    private DistrictRollup(int schools, int queries) {
+        this.schools = schools;
+        this.queryCounts = new int[queries];
+    }
+
+    static DistrictRollup compute(List<ReportStore> shards, List<ReportQuery> queries, ForkJoinPool pool) {
+        return pool.invoke(new Task(shards, queries));
+    }
+
+    private void add(DistrictRollup other) {
+        schools += other.schools;
+        analytics.addAll(other.analytics);
+        trends.addAll(other.trends);
+        for (int i = 0; i < queryCounts.length; i++) {
+            queryCounts[i] += other.queryCounts[i];
+        }
+    }
+
+    private static final class Task extends RecursiveTask<DistrictRollup> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<ReportStore> shards;
+        private final transient List<ReportQuery> queries;
+
+        Task(List<ReportStore> shards, List<ReportQuery> queries) {
+            this.shards = shards;
+            this.queries = queries;
+        }
+
+        @Override
+        protected DistrictRollup compute() {
+            if (shards.size() <= 1) {
+                DistrictRollup rollup = new DistrictRollup(shards.size(), queries.size());
+                for (ReportStore shard : shards) {
+                    rollup.analytics.addAll(shard.getAnalytics());
+                    rollup.trends.addAll(shard.getTrendWindow());
+                    for (int i = 0; i < queries.size(); i++) {
+                        rollup.queryCounts[i] = shard.count(queries.get(i));
+                    }
+                }
+                return rollup;
+            }
+            int middle = shards.size() / 2;
+            Task right = new Task(shards.subList(middle, shards.size()), queries);
+            right.fork();
+            DistrictRollup left = new Task(shards.subList(0, middle), queries).compute();
+            left.add(right.join());
+            return left;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+// Every school's reports, each in a ReportStore of its own: its own files, log
+// writer thread, ID space and locks, so a busy school never holds up another.
+//
+// The default school keeps the original files in the root directory, so a
+// single-school install is simply a district of one; every other school lives in
+// schools/<id>/. District-wide figures come from DistrictRollup.
+class DistrictStore implements AutoCloseable {
+    static final String DEFAULT_SCHOOL = "default";
+    static final String SCHOOLS_DIRECTORY = "schools";
+    private static final Pattern SCHOOL_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,39}");
+
+    private final Path root;
+    private final Executor callbacks;
+    private final IntConsumer pendingListener;
+    private final ForkJoinPool rollups;
+    private final Map<String, ReportStore> schools = new ConcurrentSkipListMap<>();
+    private final Map<String, Object> openLocks = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pendingBySchool = new ConcurrentHashMap<>();
+    private final ReportEvents events = new ReportEvents();
+
+    // pendingListener hears the district's total of unsaved changes, through callbacks
+    DistrictStore(Path root, Executor callbacks, IntConsumer pendingListener) {
+        this.root = root;
+        this.callbacks = callbacks;
+        this.pendingListener = pendingListener;
+        this.rollups = ForkJoinPool.commonPool();
+    }
+
+    // Opens the default school and every school directory found under schools/,
+    // several at once since each loads only its own files
+    public void open() {
+        List<String> found = new ArrayList<>();
+        found.add(DEFAULT_SCHOOL);
+        Path directory = root.resolve(SCHOOLS_DIRECTORY);
+        if (Files.isDirectory(directory)) {
+            try (var entries = Files.list(directory)) {
+                entries.filter(Files::isDirectory)
+                    .map(path -> path.getFileName().toString())
+                    .filter(id -> SCHOOL_ID.matcher(id).matches() && !id.equals(DEFAULT_SCHOOL))
+                    .forEach(found::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot list schools in " + directory, e);
+            }
+        }
+        found.parallelStream().forEach(this::openSchool);
+    }
+
+    // Adds a school with no reports yet, or returns the one already open under that ID
+    public ReportStore addSchool(String id) {
+        if (!SCHOOL_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("School IDs are 1-40 letters, digits, '-' or '_': " + id);
+        }
+        ReportStore existing = schools.get(id);
+        return existing != null ? existing : openSchool(id);
+    }
+
+    // Locked per school, so schools open side by side but each only once
+    private ReportStore openSchool(String id) {
+        synchronized (openLocks.computeIfAbsent(id, key -> new Object())) {
+            ReportStore existing = schools.get(id);
+            return existing != null ? existing : createSchool(id);
+        }
+    }
+
+    private ReportStore createSchool(String id) {
+        Path directory = id.equals(DEFAULT_SCHOOL) ? root : root.resolve(SCHOOLS_DIRECTORY).resolve(id);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + directory, e);
+        }
+        ReportStore store = id.equals(DEFAULT_SCHOOL)
+            ? new ReportStore(directory.resolve(ReportStore.DATA_FILE), directory.resolve(ReportStore.LOG_FILE),
+                directory.resolve(ReportStore.ID_FILE))
+            : new ReportStore(directory.resolve(ReportStore.DATA_FILE), directory.resolve(ReportStore.LOG_FILE),
+                directory.resolve(ReportStore.ID_FILE), new ReportIdAllocator(), "school." + id + ".");
+        store.publishTo(events, id);
+        store.open(callbacks, pending -> pendingChanged(id, pending));
+        schools.put(id, store);
+        return store;
+    }
+
+    // Runs through callbacks, like the per-school listener calls it adds up
+    private synchronized void pendingChanged(String school, int pending) {
+        pendingBySchool.put(school, pending);
+        int total = 0;
+        for (int count : pendingBySchool.values()) {
+            total += count;
+        }
+        pendingListener.accept(total);
+    }
+
+    // The school's store, or null if there is no such school
+    public ReportStore school(String id) {
+        return schools.get(id);
+    }
+
+    // New reports and status changes at every school
+    public ReportEvents getEvents() {
+        return events;
+    }
+
+    // School IDs in order
+    public List<String> schoolIds() {
+        return new ArrayList<>(schools.keySet());
+    }
+
+    // Counts for the whole district, plus each query's matches summed over the schools
+    public DistrictRollup rollup(ReportQuery... queries) {
+        return DistrictRollup.compute(new ArrayList<>(schools.values()), List.of(queries), rollups);
+    }
+
+    @Override
+    public void close() {
+        schools.values().parallelStream().forEach(ReportStore::close);
+    }
+}
@@ -0,0 +1,318 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Groups reports of the same incident: when something happens, many students
+// describe it in nearly the same words, and counselors should see it once.
+//
+// Each description becomes a MinHash signature over its words and word pairs
+// (DescriptionIndex's tokens). Signatures are cut into bands, and a report is
+// only compared with the recent reports sharing a band with it in the same
+// category, so matching a new report costs a few bucket lookups however many
+// reports there are. A candidate matches if it is at the same location, within
+// WINDOW_MINUTES, and enough of the two signatures agree; the new report then
+// joins the candidate's cluster.
+//
+// Signatures are kept only while a report can still be matched, that is for
+// WINDOW_MINUTES after the newest report seen, so memory follows the recent
+// volume rather than the archive. Each cluster is known by its first row.
+//
+// Like DescriptionIndex, rows on disk at startup are clustered in the background;
+// rows submitted before that finishes wait their turn so clusters form in order.
+class DuplicateDetector {
+    private static final int HASHES = 32;
+    private static final int BANDS = 8;                 // Of HASHES / BANDS values each
+    private static final int ROWS_PER_BAND = HASHES / BANDS;
+    private static final int MATCH_PERCENT = 50;        // Of signature values that must agree
+    private static final long WINDOW_MINUTES = 48 * 60;
+    private static final int BUCKET_ROWS = 16;          // Most recent rows kept per bucket
+    private static final int[] SEEDS = new int[HASHES];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = (int) seed;
+        }
+    }
+
+    // A report still inside the window, with what matching needs of it
+    private static final class Recent {
+        final int row;
+        final int category;
+        final int location;
+        final long minute;
+        final int[] signature;
+
+        Recent(int row, int category, int location, long minute, int[] signature) {
+            this.row = row;
+            this.category = category;
+            this.location = location;
+            this.minute = minute;
+            this.signature = signature;
+        }
+    }
+
+    private final int baseRows;
+    private final Map<Long, int[]> buckets = new HashMap<>();       // Band key -> [count, rows...], oldest first
+    private final Map<Integer, Recent> recent = new HashMap<>();    // By row
+    private final ArrayDeque<Recent> byArrival = new ArrayDeque<>();
+    private final Map<Integer, int[]> members = new HashMap<>();    // First row -> [count, rows...]
+    private final List<SafetyReport> waiting = new ArrayList<>();   // Submitted before the base was built
+    private final List<Integer> waitingRows = new ArrayList<>();
+    private int[] firstRowOf = new int[0]; // Row -> its cluster's first row + 1, or 0 if on its own
+    private long newestMinute = Long.MIN_VALUE;
+    private boolean baseReady;
+
+    // Rows [0, baseRows) will be clustered by buildBase(); later rows by add()
+    DuplicateDetector(int baseRows) {
+        this.baseRows = baseRows;
+        this.baseReady = baseRows == 0;
+    }
+
+    public synchronized boolean isReady() {
+        return baseReady;
+    }
+
+    // Clusters the rows that were on disk at startup, then any submitted meanwhile.
+    // Runs once, off the EDT; the lock is taken per row so lookups are not held up.
+    public void buildBase(ReportList reports) {
+        for (int row = 0; row < baseRows; row++) {
+            String description = reports.descriptionAt(row);
+            int category = reports.codeAt(ColumnarReportStore.CATEGORY, row);
+            int location = reports.codeAt(ColumnarReportStore.LOCATION, row);
+            LocalDateTime timestamp = reports.timestampAt(row);
+            synchronized (this) {
+                match(row, description, category, location, timestamp);
+            }
+        }
+        synchronized (this) {
+            for (int i = 0; i < waiting.size(); i++) {
+                SafetyReport report = waiting.get(i);
+                match(waitingRows.get(i), report.getDescription(), report.getCategoryCode(),
+                    report.getLocationCode(), report.getTimestamp());
+            }
+            waiting.clear();
+            waitingRows.clear();
+            baseReady = true;
+        }
+    }
+
+    public synchronized void add(int row, SafetyReport report) {
+        if (row < baseRows) {
+            return;
+        }
+        if (!baseReady) {
+            waiting.add(report);
+            waitingRows.add(row);
+            return;
+        }
+        long start = Metrics.DUPLICATE_MATCH.start();
+        match(row, report.getDescription(), report.getCategoryCode(), report.getLocationCode(),
+            report.getTimestamp());
+        Metrics.DUPLICATE_MATCH.stop(start);
+    }
+
+    // The first row of the row's cluster; the row itself if it has none
+    public synchronized int clusterOf(int row) {
+        return row < firstRowOf.length && firstRowOf[row] != 0 ? firstRowOf[row] - 1 : row;
+    }
+
+    // How many reports are in the row's cluster, counting it; 1 if it has none
+    public synchronized int clusterSize(int row) {
+        int[] list = members.get(clusterOf(row));
+        return list != null ? list[0] : 1;
+    }
+
+    // Every row of the row's cluster, in the order they joined
+    public synchronized int[] members(int row) {
+        int[] list = members.get(clusterOf(row));
+        return list != null ? Arrays.copyOfRange(list, 1, list[0] + 1) : new int[] {row};
+    }
+
+    // Clusters of more than one report
+    public synchronized int clusterCount() {
+        return members.size();
+    }
+
+    // The given rows, in order, keeping only the first of each cluster among them
+    public synchronized int[] firstOfEachCluster(int[] rows) {
+        BitSet seen = new BitSet();
+        int[] kept = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            int first = clusterOf(row);
+            if (!seen.get(first)) {
+                seen.set(first);
+                kept[count++] = row;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    private void match(int row, String description, int category, int location, LocalDateTime timestamp) {
+        long minute = timestamp.toEpochSecond(ZoneOffset.UTC) / 60;
+        if (minute > newestMinute) {
+            newestMinute = minute;
+            expire();
+        }
+        int[] signature = signature(description);
+        if (signature == null) {
+            return; // Nothing to compare
+        }
+        long[] keys = bandKeys(signature, category);
+
+        // Candidates share at least one band; the best that really is close wins
+        Recent best = null;
+        int bestAgreeing = HASHES * MATCH_PERCENT / 100 - 1;
+        for (long key : keys) {
+            int[] bucket = buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            for (int i = 1; i <= bucket[0]; i++) {
+                Recent candidate = recent.get(bucket[i]);
+                if (candidate == null || candidate == best || candidate.location != location
+                        || Math.abs(candidate.minute - minute) > WINDOW_MINUTES) {
+                    continue;
+                }
+                int agreeing = agreeing(signature, candidate.signature);
+                if (agreeing > bestAgreeing) {
+                    best = candidate;
+                    bestAgreeing = agreeing;
+                }
+            }
+        }
+        if (best != null) {
+            join(row, clusterOf(best.row));
+        }
+
+        Recent added = new Recent(row, category, location, minute, signature);
+        recent.put(row, added);
+        byArrival.addLast(added);
+        for (long key : keys) {
+            buckets.put(key, appendBounded(buckets.get(key), row));
+        }
+    }
+
+    private void join(int row, int first) {
+        if (row >= firstRowOf.length) {
+            firstRowOf = Arrays.copyOf(firstRowOf, Math.max(row + 1, firstRowOf.length * 2));
+        }
+        firstRowOf[row] = first + 1;
+        int[] list = members.get(first);
+        if (list == null) {
+            list = new int[] {1, first, 0, 0};
+        }
+        if (list[0] + 1 == list.length) {
+            list = Arrays.copyOf(list, list.length * 2);
+        }
+        list[++list[0]] = row;
+        members.put(first, list);
+    }
+
+    // Forgets reports too old to match anything newer, and takes them out of their buckets
+    private void expire() {
+        while (!byArrival.isEmpty() && newestMinute - byArrival.peekFirst().minute > WINDOW_MINUTES) {
+            Recent old = byArrival.removeFirst();
+            recent.remove(old.row);
+            for (long key : bandKeys(old.signature, old.category)) {
+                int[] bucket = buckets.get(key);
+                if (bucket != null && remove(bucket, old.row) && bucket[0] == 0) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    // Minimum of each seeded hash over the description's words and word pairs, or
+    // null if it has no words worth comparing
+    static int[] signature(String description) {
+        List<String> tokens = DescriptionIndex.tokenize(description);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        Set<Integer> shingles = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            shingles.add(tokens.get(i).hashCode());
+            if (i + 1 < tokens.size()) {
+                shingles.add(tokens.get(i).hashCode() * 31 + tokens.get(i + 1).hashCode() + 0x2F);
+            }
+        }
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int shingle : shingles) {
+            long base = mix(shingle);
+            for (int i = 0; i < HASHES; i++) {
+                int value = (int) mix(base ^ SEEDS[i]) & Integer.MAX_VALUE;
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    static int agreeing(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return same;
+    }
+
+    // One bucket key per band, in the report's category only
+    private static long[] bandKeys(int[] signature, int category) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = (long) category << 8 | band;
+            for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+                key = mix(key * 0x9E3779B97F4A7C15L + signature[i]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    // Appends, dropping the oldest row once the bucket holds BUCKET_ROWS
+    private static int[] appendBounded(int[] bucket, int row) {
+        if (bucket == null) {
+            bucket = new int[5];
+        } else if (bucket[0] == BUCKET_ROWS) {
+            System.arraycopy(bucket, 2, bucket, 1, BUCKET_ROWS - 1);
+            bucket[0]--;
+        } else if (bucket[0] + 1 == bucket.length) {
+            bucket = Arrays.copyOf(bucket, Math.min(bucket.length * 2, BUCKET_ROWS + 1));
+        }
+        bucket[++bucket[0]] = row;
+        return bucket;
+    }
+
+    private static boolean remove(int[] bucket, int row) {
+        for (int i = 1; i <= bucket[0]; i++) {
+            if (bucket[i] == row) {
+                System.arraycopy(bucket, i + 1, bucket, i, bucket[0] - i);
+                bucket[0]--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // SplitMix64's finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Byte codes for the values of one coded report field, shared by every report so
+// each report stores a byte instead of its own String.
+//
+// Codes below listedCount() are the field's enum constants in declaration order,
+// the same codes ReportCodec writes. A value outside the enum (old or hand-edited
+// data) is given the next free code the first time it is seen, so it still
+// round-trips; like a snapshot dictionary, a field has at most 255 codes.
+final class FieldDictionary {
+    static final FieldDictionary CATEGORY = new FieldDictionary("category", labels(Category.values()));
+    static final FieldDictionary LOCATION = new FieldDictionary("location", labels(Location.values()));
+    static final FieldDictionary SEVERITY = new FieldDictionary("severity", labels(Severity.values()));
+    static final FieldDictionary STATUS = new FieldDictionary("status", labels(Status.values()));
+
+    private static final int MAX_CODES = 255;
+
+    private final String field;
+    private final int listedCount;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values;
+
+    private FieldDictionary(String field, String[] listed) {
+        this.field = field;
+        this.listedCount = listed.length;
+        this.values = listed;
+        for (int code = 0; code < listed.length; code++) {
+            codes.put(listed[code], code);
+        }
+    }
+
+    // Dictionary for one of ColumnarReportStore's field numbers
+    static FieldDictionary forField(int field) {
+        switch (field) {
+            case ColumnarReportStore.CATEGORY: return CATEGORY;
+            case ColumnarReportStore.LOCATION: return LOCATION;
+            case ColumnarReportStore.SEVERITY: return SEVERITY;
+            case ColumnarReportStore.STATUS: return STATUS;
+            default: throw new IllegalArgumentException("Not a coded field: " + field);
+        }
+    }
+
+    // Code for the value, adding it if it is new
+    public int code(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    // Code for the value, or -1 if it has never been seen
+    public int find(String value) {
+        Integer code = value != null ? codes.get(value) : null;
+        return code != null ? code : -1;
+    }
+
+    public String value(int code) {
+        return values[code];
+    }
+
+    // Number of enum constants; codes at or above it are unlisted values
+    public int listedCount() {
+        return listedCount;
+    }
+
+    // The enum constants' labels, for choosers
+    public String[] listed() {
+        return Arrays.copyOf(values, listedCount);
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (values.length == MAX_CODES) {
+            throw new IllegalArgumentException("Too many distinct values for " + field);
+        }
+        String[] grown = Arrays.copyOf(values, values.length + 1);
+        grown[values.length] = value;
+        values = grown; // Published before the code, so anyone holding the code can read it
+        codes.put(value, values.length - 1);
+        return values.length - 1;
+    }
+
+    private static String[] labels(Enum<?>[] constants) {
+        String[] labels = new String[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            labels[i] = constants[i].toString();
+        }
+        return labels;
+    }
+}
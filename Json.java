@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for the server: quoting strings on the way out and reading flat
+// objects of string, number, boolean and null values on the way in, alone or as an
+// array of them.
+final class Json {
+    private Json() {}
+
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c == '<' || c == '>' || c == '&') {
+                        // Escaping markup characters keeps a description from ever reading as HTML
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    // Parses {"key": value, ...}; every value comes back as a string, or null for JSON null
+    public static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        parser.skipWhitespace();
+        Map<String, String> result = parser.readObject();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("Unexpected trailing content");
+        }
+        return result;
+    }
+
+    // Parses [{...}, ...], each element as parseObject() reads it
+    public static List<Map<String, String>> parseArray(String text) {
+        Parser parser = new Parser(text);
+        List<Map<String, String>> result = parser.readArray();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("Unexpected trailing content");
+        }
+        return result;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> readObject() {
+            Map<String, String> result = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                result.put(key, readValue());
+                skipWhitespace();
+                char next = next();
+                if (next == '}') {
+                    return result;
+                }
+                if (next != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        List<Map<String, String>> readArray() {
+            List<Map<String, String>> result = new ArrayList<>();
+            skipWhitespace();
+            expect('[');
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                result.add(readObject());
+                skipWhitespace();
+                char next = next();
+                if (next == ']') {
+                    return result;
+                }
+                if (next != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        private String readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            int start = pos;
+            while (!atEnd() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                return literal;
+            }
+            throw error("Unsupported value");
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"': case '\\': case '/': out.append(escaped); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    case 't': out.append('\t'); break;
+                    case 'u':
+                        int unit = 0;
+                        for (int end = pos + 4; pos < end; pos++) {
+                            int digit = atEnd() ? -1 : Character.digit(text.charAt(pos), 16);
+                            if (digit < 0) {
+                                throw error("Bad unicode escape");
+                            }
+                            unit = unit << 4 | digit;
+                        }
+                        out.append((char) unit);
+                        break;
+                    default: throw error("Bad escape");
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean atEnd() {
+            return pos >= text.length();
+        }
+
+        private char peek() {
+            if (atEnd()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives a ReportStore headlessly with a synthetic or recorded stream of reports
+// and status changes, and reports throughput, latency percentiles and heap growth.
+//
+// Events are started on schedule whether or not earlier ones have finished, and
+// latency is measured from when each was due, so time spent queued behind a slow
+// write counts the way it would for a student waiting on Submit. Each report's
+// events go to the same thread, so they are applied in the order they were made.
+//
+// Usage: java LoadGenerator [options]
+//   --reports N            reports to create (default 10000)
+//   --rate R               reports per second outside bursts (default 100)
+//   --burst F,EVERY,LEN    F times the rate for LEN seconds out of every EVERY
+//   --category W           weights, e.g. Bullying=5,Other=1 (also --location, --severity)
+//   --words N              mean description length in words (default 40)
+//   --review P             chance a report is reviewed at all (default 0.7)
+//   --status-delay S       mean seconds between a report's status changes (default 30)
+//   --threads T            threads applying events (default 4)
+//   --speed X              play the timeline X times faster; 0 for as fast as possible
+//   --record FILE          write the events played to a trace file
+//   --replay FILE          play a recorded trace instead of generating one
+//   --data DIR             store directory (default: a new temporary directory)
+//   --seed N               random seed (default 42)
+public class LoadGenerator {
+    private static final int MAX_QUEUED_EVENTS = 10_000; // Beyond this the scheduler waits for room
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p99.9"};
+    private static final double MB = 1024 * 1024;
+
+    private final ReportStore store;
+    private final Map<Integer, SafetyReport> reportsByNumber = new ConcurrentHashMap<>();
+    private final LatencyHistogram createLatency = new LatencyHistogram();
+    private final LatencyHistogram statusLatency = new LatencyHistogram();
+    private final AtomicInteger skipped = new AtomicInteger();  // Status change before its report existed
+    private final AtomicInteger rejected = new AtomicInteger(); // Status change the workflow doesn't allow
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private LoadGenerator(ReportStore store) {
+        this.store = store;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SyntheticWorkload.Profile profile = new SyntheticWorkload.Profile();
+        int threads = 4;
+        double speed = 1;
+        Path record = null;
+        Path replay = null;
+        Path data = null;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--reports": profile.reports = Integer.parseInt(value); break;
+                case "--rate": profile.rate = Double.parseDouble(value); break;
+                case "--burst":
+                    String[] burst = value.split(",");
+                    if (burst.length != 3) {
+                        usage("--burst takes FACTOR,EVERY,LENGTH");
+                    }
+                    profile.burstFactor = Double.parseDouble(burst[0]);
+                    profile.burstEverySeconds = Double.parseDouble(burst[1]);
+                    profile.burstSeconds = Double.parseDouble(burst[2]);
+                    break;
+                case "--category":
+                    SyntheticWorkload.Profile.setWeights(profile.categoryWeights, SafetyReport.CATEGORIES, value);
+                    break;
+                case "--location":
+                    SyntheticWorkload.Profile.setWeights(profile.locationWeights, SafetyReport.LOCATIONS, value);
+                    break;
+                case "--severity":
+                    SyntheticWorkload.Profile.setWeights(profile.severityWeights, SafetyReport.SEVERITIES, value);
+                    break;
+                case "--words": profile.meanWords = Integer.parseInt(value); break;
+                case "--review": profile.reviewChance = Double.parseDouble(value); break;
+                case "--status-delay": profile.statusDelaySeconds = Double.parseDouble(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--speed": speed = Double.parseDouble(value); break;
+                case "--record": record = Paths.get(value); break;
+                case "--replay": replay = Paths.get(value); break;
+                case "--data": data = Paths.get(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                default: usage("Unknown option " + option);
+            }
+        }
+
+        Path directory = data != null ? Files.createDirectories(data) : Files.createTempDirectory("ally-load");
+        System.out.println("Store: " + directory);
+        ReportStore store = new ReportStore(directory.resolve(ReportStore.DATA_FILE),
+            directory.resolve(ReportStore.LOG_FILE), directory.resolve(ReportStore.ID_FILE));
+        store.open(Runnable::run, pending -> { });
+        try (LoadTrace.Source source = replay != null
+                 ? new LoadTrace.Reader(replay)
+                 : new SyntheticWorkload(profile, seed);
+             LoadTrace.Writer recorder = record != null ? new LoadTrace.Writer(record) : null) {
+            new LoadGenerator(store).run(source, recorder, threads, speed);
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("See the comment at the top of LoadGenerator.java for options.");
+        System.exit(2);
+    }
+
+    private void run(LoadTrace.Source source, LoadTrace.Writer recorder, int threads, double speed)
+            throws IOException, InterruptedException {
+        long heapBefore = usedHeapAfterGc();
+        peakHeap.set(heapBefore);
+        ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, MAX_QUEUED_EVENTS / threads)), LoadGenerator::waitForRoom);
+        }
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "load-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        progress.scheduleAtFixedRate(() -> printProgress(start, lanes), 1, 1, TimeUnit.SECONDS);
+
+        LoadTrace.Event event;
+        while ((event = source.next()) != null) {
+            long due = speed > 0 ? start + (long) (event.at * 1_000_000 / speed) : System.nanoTime();
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (recorder != null) {
+                recorder.write(event);
+            }
+            LoadTrace.Event scheduled = event;
+            lanes[Math.floorMod(event.report, threads)].execute(() -> apply(scheduled, due));
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        long applied = System.nanoTime();
+        progress.shutdownNow();
+        sampleHeap();
+        store.close(); // Waits for queued log writes
+        long closed = System.nanoTime();
+        long heapAfter = usedHeapAfterGc();
+
+        printSummary(start, applied, closed, heapBefore, heapAfter);
+    }
+
+    // A full lane holds the scheduler back rather than running the event out of order
+    private static void waitForRoom(Runnable task, ThreadPoolExecutor lane) {
+        try {
+            lane.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    private void apply(LoadTrace.Event event, long due) {
+        try {
+            if (event.isCreate()) {
+                SafetyReport report = store.createReport(event.category, event.location, event.severity, event.description);
+                store.submit(report);
+                reportsByNumber.put(event.report, report);
+                createLatency.record((System.nanoTime() - due) / 1000);
+            } else {
+                SafetyReport report = reportsByNumber.get(event.report);
+                if (report == null) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                store.changeStatus(report, event.status);
+                statusLatency.record((System.nanoTime() - due) / 1000);
+            }
+        } catch (IllegalStateException e) {
+            rejected.incrementAndGet();
+        } catch (RuntimeException e) {
+            if (failed.getAndIncrement() == 0) {
+                System.err.println("Event failed: " + e);
+            }
+        }
+    }
+
+    private void printProgress(long start, ThreadPoolExecutor[] lanes) {
+        long heap = sampleHeap();
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        System.out.printf("%6.0fs  created %9d  status %9d  queued %6d  p99 %8.2f ms  heap %7.1f MB%n",
+            (System.nanoTime() - start) / 1e9, createLatency.getCount(), statusLatency.getCount(),
+            queued, createLatency.percentile(99) / 1000.0, heap / MB);
+    }
+
+    private void printSummary(long start, long applied, long closed, long heapBefore, long heapAfter) {
+        double seconds = (applied - start) / 1e9;
+        long creates = createLatency.getCount();
+        long changes = statusLatency.getCount();
+        System.out.println();
+        System.out.printf("Created %d reports and made %d status changes in %.1f s: %.1f reports/s, %.1f events/s%n",
+            creates, changes, seconds, creates / seconds, (creates + changes) / seconds);
+        System.out.printf("Pending writes flushed in %.1f s after the last event%n", (closed - applied) / 1e9);
+        if (skipped.get() + rejected.get() + failed.get() > 0) {
+            System.out.printf("Skipped %d status changes for reports not yet created, rejected %d, %d failed%n",
+                skipped.get(), rejected.get(), failed.get());
+        }
+        System.out.println();
+        System.out.printf("Latency from scheduled time (ms)%n%-8s %10s", "", "count");
+        for (String label : PERCENTILE_LABELS) {
+            System.out.printf(" %9s", label);
+        }
+        System.out.printf(" %9s %9s%n", "max", "mean");
+        printLatency("create", createLatency);
+        printLatency("status", statusLatency);
+        System.out.println();
+        System.out.printf("Heap: %.1f MB before, %.1f MB peak, %.1f MB after (after GC), %+.1f MB",
+            heapBefore / MB, peakHeap.get() / MB, heapAfter / MB, (heapAfter - heapBefore) / MB);
+        if (creates > 0) {
+            System.out.printf(", %.0f bytes per report", (double) (heapAfter - heapBefore) / creates);
+        }
+        System.out.println();
+    }
+
+    private static void printLatency(String name, LatencyHistogram latency) {
+        System.out.printf("%-8s %10d", name, latency.getCount());
+        for (double percentile : PERCENTILES) {
+            System.out.printf(" %9.2f", latency.percentile(percentile) / 1000.0);
+        }
+        System.out.printf(" %9.2f %9.2f%n", latency.getMax() / 1000.0, latency.getMean() / 1000.0);
+    }
+
+    private long sampleHeap() {
+        long used = memory.getHeapMemoryUsage().getUsed();
+        peakHeap.accumulateAndGet(used, Math::max);
+        return used;
+    }
+
+    private long usedHeapAfterGc() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// A timeline of report submissions and status changes for LoadGenerator, and the
+// file format it is recorded in: JSON Lines, one event per line, in time order.
+//
+//   {"at":1250,"report":7,"category":"Bullying","location":"Gym","severity":"High","description":"..."}
+//   {"at":31870,"report":7,"status":"Under Review"}
+//
+// `at` is milliseconds from the start of the run. `report` numbers reports in the
+// order the trace creates them, since IDs are only handed out when it is played.
+final class LoadTrace {
+    private LoadTrace() {}
+
+    static final class Event {
+        final long at;
+        final int report;
+        final String category;    // Set for a submission
+        final String location;
+        final String severity;
+        final String description;
+        final String status;      // Set for a status change
+
+        private Event(long at, int report, String category, String location, String severity,
+                      String description, String status) {
+            this.at = at;
+            this.report = report;
+            this.category = category;
+            this.location = location;
+            this.severity = severity;
+            this.description = description;
+            this.status = status;
+        }
+
+        static Event created(long at, int report, String category, String location, String severity,
+                             String description) {
+            return new Event(at, report, category, location, severity, description, null);
+        }
+
+        static Event statusChanged(long at, int report, String status) {
+            return new Event(at, report, null, null, null, null, status);
+        }
+
+        boolean isCreate() {
+            return status == null;
+        }
+    }
+
+    // Events in time order; next() returns null after the last one
+    interface Source extends Closeable {
+        Event next() throws IOException;
+
+        @Override
+        default void close() throws IOException { }
+    }
+
+    static final class Reader implements Source {
+        private final BufferedReader in;
+        private int line;
+
+        Reader(Path file) throws IOException {
+            this.in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Event next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            try {
+                Map<String, String> fields = Json.parseObject(text);
+                long at = Long.parseLong(required(fields, "at"));
+                int report = Integer.parseInt(required(fields, "report"));
+                String status = fields.get("status");
+                return status != null
+                    ? Event.statusChanged(at, report, status)
+                    : Event.created(at, report, required(fields, "category"), required(fields, "location"),
+                        required(fields, "severity"), required(fields, "description"));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad trace event on line " + line + ": " + e.getMessage(), e);
+            }
+        }
+
+        private static String required(Map<String, String> fields, String name) {
+            String value = fields.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("missing \"" + name + "\"");
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    static final class Writer implements Closeable {
+        private final BufferedWriter out;
+
+        Writer(Path file) throws IOException {
+            this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        // Called from one thread at a time, in time order
+        public void write(Event event) throws IOException {
+            out.write("{\"at\":" + event.at + ",\"report\":" + event.report);
+            if (event.isCreate()) {
+                out.write(",\"category\":" + Json.quote(event.category)
+                    + ",\"location\":" + Json.quote(event.location)
+                    + ",\"severity\":" + Json.quote(event.severity)
+                    + ",\"description\":" + Json.quote(event.description));
+            } else {
+                out.write(",\"status\":" + Json.quote(event.status));
+            }
+            out.write("}\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+// Where a report happened. Declaration order is the dictionary code order on
+// disk, so only ever add constants at the end.
+enum Location {
+    CLASSROOM("Classroom"),
+    HALLWAY("Hallway"),
+    CAFETERIA("Cafeteria"),
+    BATHROOM("Bathroom"),
+    LIBRARY("Library"),
+    GYM("Gym"),
+    PLAYGROUND("Playground"),
+    BUS("Bus"),
+    ONLINE("Online"),
+    OTHER("Other");
+
+    final String label;
+
+    Location(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() { return label; }
+}
@@ -0,0 +1,316 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+// Counters, latency timers and gauges for the app's hot paths and its files,
+// readable over JMX (ally:type=Metrics), as a periodic line on stdout and on the
+// admin Diagnostics tab. Recording costs a few atomic adds, so it is always on.
+//
+// Problems - a snapshot that could not be read, a log that had to be cut short, a
+// write that failed or took too long - are kept too, and passed to listeners as
+// they happen so the desktop app can show them at once.
+final class Metrics {
+    static final long SLOW_WRITE_MS = 1000;  // A disk write taking longer than this is a problem
+    private static final int MAX_PROBLEMS = 50;
+    private static final long DEFAULT_LOG_SECONDS = 60; // Override with -Dally.metricsLogSeconds, 0 for none
+    private static final DateTimeFormatter PROBLEM_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private static final ArrayDeque<Problem> problems = new ArrayDeque<>(); // Guarded by itself
+    private static final List<Consumer<Problem>> problemListeners = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService reporter;                       // Guarded by Metrics.class
+
+    static final Timer SUBMIT = timer("submit");
+    static final Timer STATUS_CHANGE = timer("status.change");
+    static final Timer SYNC_BATCH = timer("sync.batch");          // A batch uploaded by an offline client
+    static final Timer LOAD = timer("load");
+    static final Timer SNAPSHOT_VERIFY = timer("load.verify");
+    static final Timer LOG_FLUSH = timer("save.log");
+    static final Timer SNAPSHOT_SAVE = timer("save.snapshot");
+    static final Timer ARCHIVE = timer("save.archive");
+    static final Timer ARCHIVE_QUERY = timer("archive.query");
+    static final Timer EXPORT = timer("export");
+    static final Timer TABLE_BUILD = timer("table.build");
+    static final Timer ANALYTICS_RENDER = timer("analytics.render");
+    static final Timer EDT_LAG = timer("edt.lag");
+    static final Timer URGENT_FIRST_REVIEW = timer("triage.urgentFirstReview"); // Submit to Under Review
+    static final Timer DUPLICATE_MATCH = timer("duplicates.match");
+    static final Timer EVENT_DELIVERY = timer("events.delivery"); // Publish to a subscriber taking it
+    static final Timer STARTUP_WINDOW = timer("startup.window");   // JVM start to a usable window
+    static final Timer STARTUP_LOADED = timer("startup.reports");  // JVM start to reports loaded
+    static final Counter EDT_BLOCKED_MS = counter("edt.blockedMs");
+    static final Counter LOAD_ERRORS = counter("load.errors");
+    static final Counter SAVE_ERRORS = counter("save.errors");
+    static final Counter SLOW_WRITES = counter("save.slow");
+    static final Counter ARCHIVED_REPORTS = counter("save.archivedReports"); // Resolved reports moved to the archive
+    static final Counter PROBLEMS = counter("problems");
+    static final Counter EVENTS_DROPPED = counter("events.dropped");
+    static final Counter TRIAGE_CLAIMS = counter("triage.claims");
+    static final Counter SYNC_DUPLICATES = counter("sync.duplicates"); // Retried reports already filed
+
+    private Metrics() {}
+
+    static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        void increment() { count.increment(); }
+        void add(long amount) { count.add(amount); }
+        long get() { return count.sum(); }
+    }
+
+    // Latencies in microseconds: start() before the work, stop(start) after it
+    static final class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        long start() {
+            return System.nanoTime();
+        }
+
+        // Records the time since start and returns it in microseconds
+        long stop(long start) {
+            long micros = (System.nanoTime() - start) / 1000;
+            histogram.record(micros);
+            return micros;
+        }
+
+        // For times measured some other way, such as from JVM start
+        void record(long micros) {
+            histogram.record(micros);
+        }
+
+        LatencyHistogram histogram() { return histogram; }
+    }
+
+    static final class Problem {
+        final LocalDateTime at;
+        final String message;
+
+        Problem(LocalDateTime at, String message) {
+            this.at = at;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return at.format(PROBLEM_TIME_FORMAT) + "  " + message;
+        }
+    }
+
+    static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    // Read whenever the metrics are; a later gauge of the same name replaces this one
+    static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    static Map<String, Timer> timers() { return Collections.unmodifiableMap(timers); }
+    static Map<String, Counter> counters() { return Collections.unmodifiableMap(counters); }
+    static Map<String, LongSupplier> gauges() { return Collections.unmodifiableMap(gauges); }
+
+    // Records a problem, prints it to stderr and tells the listeners, on the calling thread
+    static void problem(String message) {
+        Problem problem = new Problem(LocalDateTime.now(), message);
+        System.err.println(problem);
+        PROBLEMS.increment();
+        synchronized (problems) {
+            if (problems.size() == MAX_PROBLEMS) {
+                problems.removeFirst();
+            }
+            problems.addLast(problem);
+        }
+        for (Consumer<Problem> listener : problemListeners) {
+            listener.accept(problem);
+        }
+    }
+
+    // Oldest first
+    static List<Problem> problems() {
+        synchronized (problems) {
+            return new ArrayList<>(problems);
+        }
+    }
+
+    static void onProblem(Consumer<Problem> listener) {
+        problemListeners.add(listener);
+    }
+
+    // Counts a disk write that took longer than SLOW_WRITE_MS and records it as a problem
+    static void checkSlowWrite(String what, long micros) {
+        if (micros > SLOW_WRITE_MS * 1000) {
+            SLOW_WRITES.increment();
+            problem(String.format("Slow disk: %s took %,d ms", what, micros / 1000));
+        }
+    }
+
+    // Registers the JMX bean and starts the periodic log line; later calls do nothing
+    static synchronized void start() {
+        if (reporter != null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("ally:type=Metrics"));
+        } catch (JMException e) {
+            System.err.println("Metrics not available over JMX: " + e.getMessage());
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ally-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long seconds = Long.getLong("ally.metricsLogSeconds", DEFAULT_LOG_SECONDS);
+        if (seconds > 0) {
+            reporter.scheduleAtFixedRate(() -> System.out.println("metrics " + summary()),
+                seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Runs task every periodMillis on the metrics thread; start() must have been called
+    static synchronized void every(long periodMillis, Runnable task) {
+        reporter.scheduleWithFixedDelay(task, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // One line: every timer that has recorded something, then the counters and gauges
+    static String summary() {
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            LatencyHistogram histogram = entry.getValue().histogram();
+            if (histogram.getCount() > 0) {
+                line.append(String.format("%s n=%d p50=%.2fms p99=%.2fms max=%.2fms  ", entry.getKey(),
+                    histogram.getCount(), millis(histogram.percentile(50)), millis(histogram.percentile(99)),
+                    millis(histogram.getMax())));
+            }
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            line.append(entry.getKey()).append('=').append(entry.getValue().get()).append("  ");
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            line.append(entry.getKey()).append('=').append(entry.getValue().getAsLong()).append("  ");
+        }
+        return line.toString().trim();
+    }
+
+    static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    // Attributes are listed afresh on every call, since gauges can be added at any time:
+    // <timer>.count, .p50Ms, .p99Ms, .maxMs and .meanMs, each counter and gauge by name,
+    // and lastProblem
+    private static final class Bean implements DynamicMBean {
+        private static final String[] TIMER_STATS = {"count", "p50Ms", "p99Ms", "maxMs", "meanMs"};
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            if (name.equals("lastProblem")) {
+                List<Problem> all = problems();
+                return all.isEmpty() ? "" : all.get(all.size() - 1).toString();
+            }
+            Counter counter = counters.get(name);
+            if (counter != null) {
+                return counter.get();
+            }
+            LongSupplier gauge = gauges.get(name);
+            if (gauge != null) {
+                return gauge.getAsLong();
+            }
+            int dot = name.lastIndexOf('.');
+            Timer timer = dot > 0 ? timers.get(name.substring(0, dot)) : null;
+            if (timer != null) {
+                LatencyHistogram histogram = timer.histogram();
+                switch (name.substring(dot + 1)) {
+                    case "count": return histogram.getCount();
+                    case "p50Ms": return millis(histogram.percentile(50));
+                    case "p99Ms": return millis(histogram.percentile(99));
+                    case "maxMs": return millis(histogram.getMax());
+                    case "meanMs": return histogram.getMean() / 1000;
+                    default: break;
+                }
+            }
+            throw new AttributeNotFoundException(name);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList values = new AttributeList();
+            for (String name : names) {
+                try {
+                    values.add(new Attribute(name, getAttribute(name)));
+                } catch (AttributeNotFoundException e) {
+                    // Left out, as the interface expects
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String timer : timers.keySet()) {
+                for (String stat : TIMER_STATS) {
+                    String type = stat.equals("count") ? "java.lang.Long" : "java.lang.Double";
+                    attributes.add(attribute(timer + "." + stat, type, stat.equals("count")
+                        ? "Times " + timer + " was measured" : timer + " latency in milliseconds"));
+                }
+            }
+            for (String counter : counters.keySet()) {
+                attributes.add(attribute(counter, "java.lang.Long", "Counter"));
+            }
+            for (String gauge : gauges.keySet()) {
+                attributes.add(attribute(gauge, "java.lang.Long", "Gauge"));
+            }
+            attributes.add(attribute("lastProblem", "java.lang.String", "Most recent problem"));
+            return new MBeanInfo(Metrics.class.getName(), "Ally performance metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+
+        private static MBeanAttributeInfo attribute(String name, String type, String description) {
+            return new MBeanAttributeInfo(name, type, description, true, false, false);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Report counts per category x location x severity x status, kept up to date one
+// report at a time so the dashboards never have to rescan the archive.
+//
+// Each field is indexed by its FieldDictionary code; values outside the field's
+// enum share one extra "unlisted" slot per field. Queries sum over at most a few
+// thousand cells, so they cost the same whether there are ten reports or ten million.
+//
+// Every counter is atomic, so ingest threads never wait on each other here. A query
+// that reads several counters may see a report that is only half counted yet.
+class ReportAnalytics {
+    // Slots per field: every listed value plus the unlisted slot
+    private static final int CATEGORIES = FieldDictionary.CATEGORY.listedCount() + 1;
+    private static final int LOCATIONS = FieldDictionary.LOCATION.listedCount() + 1;
+    private static final int SEVERITIES = FieldDictionary.SEVERITY.listedCount() + 1;
+    private static final int STATUSES = FieldDictionary.STATUS.listedCount() + 1;
+
+    private final AtomicIntegerArray cube = new AtomicIntegerArray(CATEGORIES * LOCATIONS * SEVERITIES * STATUSES);
+    private final AtomicIntegerArray byCategory = new AtomicIntegerArray(CATEGORIES);
+    private final AtomicIntegerArray bySeverity = new AtomicIntegerArray(SEVERITIES);
+    private final AtomicIntegerArray byStatus = new AtomicIntegerArray(STATUSES);
+    private final AtomicInteger total = new AtomicInteger();
+
+    // Arguments are FieldDictionary codes
+    public void reportAdded(int category, int location, int severity, int status) {
+        int cat = slot(category, CATEGORIES);
+        int sev = slot(severity, SEVERITIES);
+        int st = slot(status, STATUSES);
+        cube.incrementAndGet(cell(cat, slot(location, LOCATIONS), sev, st));
+        byCategory.incrementAndGet(cat);
+        bySeverity.incrementAndGet(sev);
+        byStatus.incrementAndGet(st);
+        total.incrementAndGet();
+    }
+
+    // Count reports with the same codes at once, as for an archive segment's tallies
+    public void reportsAdded(int category, int location, int severity, int status, int count) {
+        int cat = slot(category, CATEGORIES);
+        int sev = slot(severity, SEVERITIES);
+        int st = slot(status, STATUSES);
+        cube.addAndGet(cell(cat, slot(location, LOCATIONS), sev, st), count);
+        byCategory.addAndGet(cat, count);
+        bySeverity.addAndGet(sev, count);
+        byStatus.addAndGet(st, count);
+        total.addAndGet(count);
+    }
+
+    public void statusChanged(int category, int location, int severity, int oldStatus, int newStatus) {
+        int cat = slot(category, CATEGORIES);
+        int loc = slot(location, LOCATIONS);
+        int sev = slot(severity, SEVERITIES);
+        int from = slot(oldStatus, STATUSES);
+        int to = slot(newStatus, STATUSES);
+        cube.decrementAndGet(cell(cat, loc, sev, from));
+        cube.incrementAndGet(cell(cat, loc, sev, to));
+        byStatus.decrementAndGet(from);
+        byStatus.incrementAndGet(to);
+    }
+
+    // Adds every count from other into this one, as for a district made of several schools
+    public void addAll(ReportAnalytics other) {
+        addInto(cube, other.cube);
+        addInto(byCategory, other.byCategory);
+        addInto(bySeverity, other.bySeverity);
+        addInto(byStatus, other.byStatus);
+        total.addAndGet(other.total.get());
+    }
+
+    private static void addInto(AtomicIntegerArray into, AtomicIntegerArray from) {
+        for (int i = 0; i < into.length(); i++) {
+            int count = from.get(i);
+            if (count != 0) {
+                into.addAndGet(i, count);
+            }
+        }
+    }
+
+    public int getTotal() { return total.get(); }
+
+    public int countBySeverity(Severity severity) {
+        return bySeverity.get(severity.ordinal());
+    }
+
+    // Reports of this severity or worse
+    public int countAtLeast(Severity severity) {
+        int count = 0;
+        for (Severity worse : severity.andAbove()) {
+            count += countBySeverity(worse);
+        }
+        return count;
+    }
+
+    public int countByStatus(Status status) {
+        return byStatus.get(status.ordinal());
+    }
+
+    // Listed category with the most reports, or null when there are none
+    public String getMostCommonCategory() {
+        int best = -1;
+        int bestCount = 0;
+        for (int cat = 0; cat < CATEGORIES - 1; cat++) {
+            int count = byCategory.get(cat);
+            if (count > bestCount) {
+                best = cat;
+                bestCount = count;
+            }
+        }
+        return best < 0 ? null : FieldDictionary.CATEGORY.value(best);
+    }
+
+    // Reports matching every non-null argument
+    public int count(String category, String location, String severity, String status) {
+        int[] cats = slots(FieldDictionary.CATEGORY, category, CATEGORIES);
+        int[] locs = slots(FieldDictionary.LOCATION, location, LOCATIONS);
+        int[] sevs = slots(FieldDictionary.SEVERITY, severity, SEVERITIES);
+        int[] sts = slots(FieldDictionary.STATUS, status, STATUSES);
+        int sum = 0;
+        for (int cat : cats) {
+            for (int loc : locs) {
+                for (int sev : sevs) {
+                    for (int st : sts) {
+                        sum += cube.get(cell(cat, loc, sev, st));
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static int[] slots(FieldDictionary dictionary, String value, int size) {
+        if (value != null) {
+            int code = dictionary.find(value);
+            return code >= 0 ? new int[] {slot(code, size)} : new int[0];
+        }
+        int[] all = new int[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    private static int cell(int cat, int loc, int sev, int st) {
+        return ((cat * LOCATIONS + loc) * SEVERITIES + sev) * STATUSES + st;
+    }
+
+    // Codes past the listed values all land in the last slot
+    private static int slot(int code, int size) {
+        return Math.min(code, size - 1);
+    }
+}
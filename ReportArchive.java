@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Resolved reports old enough to leave the working set, in immutable compressed
+// segment files under archive/ beside the snapshot: one or more per calendar month
+// the reports were made in, named <yyyy-MM>-<n>.seg. A segment is written whole,
+// checksummed, fsynced and renamed into place, and never changed after that.
+//
+// Opening reads only each segment's header: its report IDs, the days it spans and
+// how many reports it holds per category, location, severity and status, for the
+// analytics totals. Reports themselves are inflated only when a search reaches
+// back into a segment's days.
+//
+// Segment: [int MAGIC][byte VERSION][int header length][header][int header CRC32C]
+//          [int body length][body][int body CRC32C]
+// Header:  [varint count][varint first epoch day][varint last epoch day]
+//          [varint tallies]([category][location][severity][status][varint count])...
+//          [varint ID - previous ID]...   in ascending ID order
+// Body:    a ReportCodec snapshot of the reports, deflated
+final class ReportArchive {
+    static final String DIRECTORY = "archive";
+    static final int DEFAULT_ARCHIVE_AFTER_DAYS = 180; // Override with -Dally.archiveAfterDays, 0 to never archive
+    static final int MIN_REPORTS_TO_ARCHIVE = 100;     // Fewer wait until there are more, rather than make tiny segments
+    private static final int MAGIC = 0x414C5941;       // "ALYA"
+    private static final byte VERSION = 1;
+    private static final String SUFFIX = ".seg";
+    private static final int PREAMBLE_SIZE = 9;
+
+    private final Path directory;
+    private volatile List<Segment> segments = List.of(); // Oldest month first
+
+    ReportArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    // One segment's header, kept in memory while the body stays on disk
+    static final class Segment {
+        final Path path;
+        final long firstDay;
+        final long lastDay;
+        final int[] ids;             // Ascending
+        final List<Tally> tallies;
+        final long bodyPosition;
+
+        Segment(Path path, long firstDay, long lastDay, int[] ids, List<Tally> tallies, long bodyPosition) {
+            this.path = path;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.ids = ids;
+            this.tallies = tallies;
+            this.bodyPosition = bodyPosition;
+        }
+
+        boolean overlaps(long first, long last) {
+            return firstDay <= last && lastDay >= first;
+        }
+    }
+
+    static final class Tally {
+        final String category;
+        final String location;
+        final String severity;
+        final String status;
+        final int count;
+
+        Tally(String category, String location, String severity, String status, int count) {
+            this.category = category;
+            this.location = location;
+            this.severity = severity;
+            this.status = status;
+            this.count = count;
+        }
+    }
+
+    static int archiveAfterDays() {
+        return Integer.getInteger("ally.archiveAfterDays", DEFAULT_ARCHIVE_AFTER_DAYS);
+    }
+
+    // Reads every segment's header. A segment whose header fails its checksum is
+    // moved aside and left out, and reported to onDamaged.
+    void open(Consumer<String> onDamaged) throws IOException {
+        List<Segment> opened = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+            }
+            for (Path file : files) {
+                try {
+                    opened.add(readHeader(file));
+                } catch (IOException | RuntimeException e) {
+                    onDamaged.accept("Archive segment " + file + " is damaged (" + e.getMessage() + "); moved it to "
+                        + SnapshotGenerations.setAside(file));
+                }
+            }
+        }
+        segments = List.copyOf(opened);
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.ids.length;
+        }
+        return total;
+    }
+
+    public boolean contains(int id) {
+        return segmentOf(id) != null;
+    }
+
+    // Counts every archived report into analytics, from the headers alone
+    void addCountsTo(ReportAnalytics analytics) {
+        for (Segment segment : segments) {
+            for (Tally tally : segment.tallies) {
+                analytics.reportsAdded(FieldDictionary.CATEGORY.code(tally.category),
+                    FieldDictionary.LOCATION.code(tally.location), FieldDictionary.SEVERITY.code(tally.severity),
+                    FieldDictionary.STATUS.code(tally.status), tally.count);
+            }
+        }
+    }
+
+    // Archived reports made on any day from first to last (either may be null for
+    // no limit) that pass filter. Only segments spanning those days are read.
+    public List<SafetyReport> find(LocalDate first, LocalDate last, Predicate<SafetyReport> filter) throws IOException {
+        long firstDay = first != null ? first.toEpochDay() : Long.MIN_VALUE;
+        long lastDay = last != null ? last.toEpochDay() : Long.MAX_VALUE;
+        List<SafetyReport> found = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.overlaps(firstDay, lastDay)) {
+                for (SafetyReport report : readReports(segment)) {
+                    long day = report.getTimestamp().toLocalDate().toEpochDay();
+                    if (day >= firstDay && day <= lastDay && filter.test(report)) {
+                        found.add(report);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    public SafetyReport findById(int id) throws IOException {
+        Segment segment = segmentOf(id);
+        if (segment == null) {
+            return null;
+        }
+        for (SafetyReport report : readReports(segment)) {
+            if (report.getId() == id) {
+                return report;
+            }
+        }
+        return null;
+    }
+
+    // The usual admin filter fields, each matching anything when null
+    static Predicate<SafetyReport> matching(String category, String location, String severity, String status) {
+        return report -> (category == null || category.equals(report.getCategory()))
+            && (location == null || location.equals(report.getLocation()))
+            && (severity == null || severity.equals(report.getSeverity()))
+            && (status == null || status.equals(report.getStatus()));
+    }
+
+    private Segment segmentOf(int id) {
+        for (Segment segment : segments) {
+            if (Arrays.binarySearch(segment.ids, id) >= 0) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    // Writes the reports as new segments, one per month they were made in. They
+    // are all on disk before this returns and before any is visible to readers.
+    void write(List<SafetyReport> reports) throws IOException {
+        Files.createDirectories(directory);
+        Map<YearMonth, List<SafetyReport>> byMonth = new TreeMap<>();
+        for (SafetyReport report : reports) {
+            byMonth.computeIfAbsent(YearMonth.from(report.getTimestamp()), month -> new ArrayList<>()).add(report);
+        }
+        List<Segment> written = new ArrayList<>(segments);
+        Path path = null;
+        for (Map.Entry<YearMonth, List<SafetyReport>> month : byMonth.entrySet()) {
+            path = nextSegmentPath(month.getKey());
+            writeSegment(path, month.getValue());
+            written.add(readHeader(path));
+        }
+        if (path != null) {
+            ColumnarReportStore.syncDirectory(path);
+        }
+        written.sort(Comparator.comparing(segment -> segment.path.getFileName().toString()));
+        segments = List.copyOf(written);
+    }
+
+    private Path nextSegmentPath(YearMonth month) {
+        for (int n = 1; ; n++) {
+            Path path = directory.resolve(month + "-" + n + SUFFIX);
+            if (!Files.exists(path)) {
+                return path;
+            }
+        }
+    }
+
+    private static void writeSegment(Path path, List<SafetyReport> reports) throws IOException {
+        List<SafetyReport> sorted = new ArrayList<>(reports);
+        sorted.sort(Comparator.comparingInt(SafetyReport::getId));
+
+        Map<String, int[]> tallies = new TreeMap<>();
+        long firstDay = Long.MAX_VALUE;
+        long lastDay = Long.MIN_VALUE;
+        for (SafetyReport report : sorted) {
+            long day = report.getTimestamp().toLocalDate().toEpochDay();
+            firstDay = Math.min(firstDay, day);
+            lastDay = Math.max(lastDay, day);
+            String key = report.getCategory() + '\n' + report.getLocation() + '\n' + report.getSeverity()
+                + '\n' + report.getStatus();
+            tallies.computeIfAbsent(key, k -> new int[1])[0]++;
+        }
+        ReportCodec.Writer header = new ReportCodec.Writer(64 + sorted.size() * 2);
+        header.writeVarLong(sorted.size());
+        header.writeVarLong(firstDay);
+        header.writeVarLong(lastDay);
+        header.writeVarLong(tallies.size());
+        for (Map.Entry<String, int[]> tally : tallies.entrySet()) {
+            for (String field : tally.getKey().split("\n", 4)) {
+                header.writeString(field);
+            }
+            header.writeVarLong(tally.getValue()[0]);
+        }
+        int previous = 0;
+        for (SafetyReport report : sorted) {
+            header.writeVarLong(report.getId() - previous);
+            previous = report.getId();
+        }
+        byte[] body = deflate(ReportCodec.encodeSnapshot(sorted));
+
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE).putInt(MAGIC).put(VERSION).putInt(header.size());
+        ByteBuffer headerEnd = ByteBuffer.allocate(8).putInt(crc(header.array(), 0, header.size())).putInt(body.length);
+        ByteBuffer bodyEnd = ByteBuffer.allocate(4).putInt(crc(body, 0, body.length));
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(out, preamble.flip());
+            writeFully(out, ByteBuffer.wrap(header.array(), 0, header.size()));
+            writeFully(out, headerEnd.flip());
+            writeFully(out, ByteBuffer.wrap(body));
+            writeFully(out, bodyEnd.flip());
+            out.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Segment readHeader(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer preamble = readFully(in, 0, PREAMBLE_SIZE);
+            if (preamble.getInt() != MAGIC) {
+                throw new IOException("not an archive segment");
+            }
+            byte version = preamble.get();
+            if (version != VERSION) {
+                throw new IOException("unsupported segment version " + version);
+            }
+            int headerLength = preamble.getInt();
+            if (headerLength < 0 || headerLength > in.size() - PREAMBLE_SIZE - 8) {
+                throw new IOException("bad header length " + headerLength);
+            }
+            ByteBuffer header = readFully(in, PREAMBLE_SIZE, headerLength + 4);
+            if (crc(header.array(), 0, headerLength) != header.getInt(headerLength)) {
+                throw new IOException("header checksum mismatch");
+            }
+            header.limit(headerLength);
+            try {
+                int count = (int) ReportCodec.readVarLong(header);
+                long firstDay = ReportCodec.readVarLong(header);
+                long lastDay = ReportCodec.readVarLong(header);
+                int tallyCount = (int) ReportCodec.readVarLong(header);
+                List<Tally> tallies = new ArrayList<>(tallyCount);
+                for (int i = 0; i < tallyCount; i++) {
+                    tallies.add(new Tally(ReportCodec.readString(header), ReportCodec.readString(header),
+                        ReportCodec.readString(header), ReportCodec.readString(header),
+                        (int) ReportCodec.readVarLong(header)));
+                }
+                int[] ids = new int[count];
+                int previous = 0;
+                for (int i = 0; i < count; i++) {
+                    previous += (int) ReportCodec.readVarLong(header);
+                    ids[i] = previous;
+                }
+                return new Segment(path, firstDay, lastDay, ids, tallies, PREAMBLE_SIZE + headerLength + 4L);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("truncated header", e);
+            }
+        }
+    }
+
+    private static List<SafetyReport> readReports(Segment segment) throws IOException {
+        try (FileChannel in = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            int bodyLength = readFully(in, segment.bodyPosition, 4).getInt();
+            if (bodyLength < 0 || bodyLength > in.size() - segment.bodyPosition - 8) {
+                throw new IOException("Archive segment " + segment.path + " has a bad body length");
+            }
+            ByteBuffer body = readFully(in, segment.bodyPosition + 4, bodyLength + 4);
+            if (crc(body.array(), 0, bodyLength) != body.getInt(bodyLength)) {
+                throw new IOException("Archive segment " + segment.path + " fails its checksum");
+            }
+            return ReportCodec.decodeSnapshot(ByteBuffer.wrap(inflate(body.array(), bodyLength)));
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ReportCodec.Writer out = new ReportCodec.Writer(data.length / 4);
+            byte[] chunk = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.writeBytes(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 0, length);
+            ReportCodec.Writer out = new ReportCodec.Writer(length * 4);
+            byte[] chunk = new byte[64 * 1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Archive segment body is truncated");
+                }
+                out.writeBytes(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Archive segment body is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer readFully(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Which rows of the report list have each category, location, severity and status,
+// and which rows were reported on each day, as bitmaps. Compound filters become
+// a handful of word-wide ANDs and ORs (see ReportQuery) instead of comparing
+// strings across every report.
+//
+// Field values are indexed by their FieldDictionary code, one bitmap per code,
+// so values outside the field enums are indexed like any other. Day bitmaps cover only the span
+// of rows reported that day, which, since reports arrive in time order, keeps
+// them small however long the archive gets.
+//
+// Each bitmap has its own lock, so ingest threads only meet when they set bits in
+// the same one.
+class ReportBitmapIndex {
+    private static final int FIELDS = 4;
+    private static final int CODES = 256;
+
+    private final RowBitmap[][] byValue = new RowBitmap[FIELDS][CODES];
+    private final ConcurrentSkipListMap<Long, RowBitmap> byDay = new ConcurrentSkipListMap<>();
+    private final AtomicInteger rowLimit = new AtomicInteger(); // One past the highest row indexed
+
+    ReportBitmapIndex() {
+        for (int field = 0; field < FIELDS; field++) {
+            for (int code = 0; code < CODES; code++) {
+                byValue[field][code] = new RowBitmap();
+            }
+        }
+    }
+
+    // Field arguments are FieldDictionary codes
+    public void reportAdded(int row, int category, int location, int severity, int status,
+                            LocalDateTime timestamp) {
+        byValue[ColumnarReportStore.CATEGORY][category].set(row);
+        byValue[ColumnarReportStore.LOCATION][location].set(row);
+        byValue[ColumnarReportStore.SEVERITY][severity].set(row);
+        byValue[ColumnarReportStore.STATUS][status].set(row);
+        byDay.computeIfAbsent(timestamp.toLocalDate().toEpochDay(), day -> new RowBitmap()).set(row);
+        rowLimit.accumulateAndGet(row + 1, Math::max);
+    }
+
+    public void statusChanged(int row, int oldStatus, int newStatus) {
+        byValue[ColumnarReportStore.STATUS][oldStatus].clear(row);
+        byValue[ColumnarReportStore.STATUS][newStatus].set(row);
+    }
+
+    public int getRowLimit() {
+        return rowLimit.get();
+    }
+
+    // Rows whose field holds the value, as `words` words of bits
+    long[] rowsWith(int field, String value, int words) {
+        int code = FieldDictionary.forField(field).find(value);
+        return code >= 0 ? byValue[field][code].toWords(words) : new long[words];
+    }
+
+    // Rows reported on any day from firstDay to lastDay (epoch days, inclusive)
+    long[] rowsOnDays(long firstDay, long lastDay, int words) {
+        long[] result = new long[words];
+        for (RowBitmap day : byDay.subMap(firstDay, true, lastDay, true).values()) {
+            day.orInto(result);
+        }
+        return result;
+    }
+
+    // Row numbers of the set bits, in ascending order
+    static int[] rows(long[] bits) {
+        int[] rows = new int[count(bits)];
+        int n = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                rows[n++] = word * 64 + Long.numberOfTrailingZeros(w);
+                w &= w - 1;
+            }
+        }
+        return rows;
+    }
+
+    static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    static int wordsFor(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    // A growable bitmap that stores only the words from its lowest set bit's word up
+    private static final class RowBitmap {
+        private long[] words = new long[0];
+        private int firstWord = -1; // Word index of words[0]; -1 while empty
+
+        synchronized void set(int row) {
+            int word = row >>> 6;
+            if (firstWord < 0) {
+                firstWord = word;
+                words = new long[4];
+            } else if (word < firstWord) {
+                long[] grown = new long[words.length + (firstWord - word)];
+                System.arraycopy(words, 0, grown, firstWord - word, words.length);
+                words = grown;
+                firstWord = word;
+            } else if (word - firstWord >= words.length) {
+                words = Arrays.copyOf(words, Math.max(words.length * 2, word - firstWord + 1));
+            }
+            words[word - firstWord] |= 1L << row;
+        }
+
+        synchronized void clear(int row) {
+            int index = (row >>> 6) - firstWord;
+            if (firstWord >= 0 && index >= 0 && index < words.length) {
+                words[index] &= ~(1L << row);
+            }
+        }
+
+        synchronized long[] toWords(int length) {
+            long[] result = new long[length];
+            orInto(result);
+            return result;
+        }
+
+        synchronized void orInto(long[] result) {
+            if (firstWord < 0) {
+                return;
+            }
+            int end = Math.min(words.length, result.length - firstWord);
+            for (int i = 0; i < end; i++) {
+                result[firstWord + i] |= words[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Which rows changed, in order, so a client that has already seen the reports can
+// fetch only those submitted or changed since, instead of the whole list each time.
+//
+// Every submit and status change takes the next version and notes its row in a
+// ring of the last CAPACITY changes. A cursor is "epoch.version": the epoch is new
+// each time the store loads, since rows may be renumbered then, so a cursor from
+// before a restart, or one too old for the ring, asks the client to start over.
+class ReportChanges {
+    private static final int CAPACITY = 1 << 16;
+
+    // The rows changed after a cursor, and where the next fetch picks up
+    static final class Delta {
+        final int[] rows;       // Each once, in the order of their latest change
+        final String cursor;
+        final boolean more;     // Stopped at the limit with changes left over
+
+        Delta(int[] rows, String cursor, boolean more) {
+            this.rows = rows;
+            this.cursor = cursor;
+            this.more = more;
+        }
+    }
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final int[] ring = new int[CAPACITY];
+    private long version; // Changes noted so far
+
+    public synchronized void record(int row) {
+        ring[(int) (version++ % CAPACITY)] = row;
+    }
+
+    // Where a client that has everything up to now picks up
+    public synchronized String cursor() {
+        return epoch + "." + version;
+    }
+
+    // Up to limit rows changed after the cursor, or null if the cursor is from an
+    // earlier load, malformed, or older than the ring
+    public synchronized Delta since(String cursor, int limit) {
+        long from = versionOf(cursor);
+        if (from < 0 || from > version || version - from > CAPACITY) {
+            return null;
+        }
+        // Walking back from the newest keeps each row at its latest change
+        Set<Integer> newestFirst = new LinkedHashSet<>();
+        for (long v = version - 1; v >= from; v--) {
+            newestFirst.add(ring[(int) (v % CAPACITY)]);
+        }
+        int[] rows = new int[newestFirst.size()];
+        int i = rows.length;
+        for (int row : newestFirst) {
+            rows[--i] = row;
+        }
+        if (rows.length <= limit) {
+            return new Delta(rows, epoch + "." + version, false);
+        }
+        // Too many: hand out the oldest limit and resume after the last one's latest change
+        int[] first = Arrays.copyOf(rows, limit);
+        long stop = version - 1;
+        while (ring[(int) (stop % CAPACITY)] != first[limit - 1]) {
+            stop--;
+        }
+        return new Delta(first, epoch + "." + (stop + 1), true);
+    }
+
+    private long versionOf(String cursor) {
+        int dot = cursor != null ? cursor.indexOf('.') : -1;
+        if (dot < 0 || !cursor.substring(0, dot).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(cursor.substring(dot + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
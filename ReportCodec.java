@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compact binary format for SafetyReport, replacing Java serialization.
+//
+// Report:   [varint id][varint epoch millis][cat][loc][sev][status][varint len][utf-8 description]
+// Field:    one byte dictionary code, or ESCAPE followed by [varint len][utf-8] for values
+//           outside the dictionary so nothing is lost on old or hand-edited data
+// Snapshot: [int MAGIC][byte VERSION][varint count][report]...
+//
+// Timestamps are stored as the local date-time read as UTC, which round-trips exactly to
+// the millisecond without depending on the machine's time zone.
+final class ReportCodec {
+    static final int MAGIC = 0x414C4C59; // "ALLY"
+    static final byte VERSION = 1;
+    private static final int ESCAPE = 0xFF;
+
+    // First two bytes of a java.io.ObjectOutputStream, used to spot legacy files
+    static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    private ReportCodec() {}
+
+    public static void encode(SafetyReport report, Writer out) {
+        out.writeVarLong(report.getId());
+        out.writeVarLong(report.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+        writeCode(out, SafetyReport.CATEGORIES, report.getCategory());
+        writeCode(out, SafetyReport.LOCATIONS, report.getLocation());
+        writeCode(out, SafetyReport.SEVERITIES, report.getSeverity());
+        writeCode(out, SafetyReport.STATUSES, report.getStatus());
+        out.writeString(report.getDescription());
+    }
+
+    public static SafetyReport decode(ByteBuffer in) throws IOException {
+        try {
+            int id = (int) readVarLong(in);
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(readVarLong(in)), ZoneOffset.UTC);
+            String category = readCode(in, SafetyReport.CATEGORIES);
+            String location = readCode(in, SafetyReport.LOCATIONS);
+            String severity = readCode(in, SafetyReport.SEVERITIES);
+            String status = readCode(in, SafetyReport.STATUSES);
+            String description = readString(in);
+            return new SafetyReport(id, category, location, severity, description, timestamp, status);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated report record", e);
+        }
+    }
+
+    public static byte[] encodeSnapshot(List<SafetyReport> reports) {
+        Writer out = new Writer(16 + reports.size() * 64);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong(reports.size());
+        for (SafetyReport report : reports) {
+            encode(report, out);
+        }
+        return out.toByteArray();
+    }
+
+    public static List<SafetyReport> decodeSnapshot(ByteBuffer in) throws IOException {
+        if (in.remaining() < 5 || in.getInt() != MAGIC) {
+            throw new IOException("Not an Ally snapshot");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        int count = (int) readVarLong(in);
+        List<SafetyReport> reports = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            reports.add(decode(in));
+        }
+        return reports;
+    }
+
+    static void writeCode(Writer out, String[] dictionary, String value) {
+        int code = indexOf(dictionary, value);
+        if (code >= 0) {
+            out.writeByte(code);
+        } else {
+            out.writeByte(ESCAPE);
+            out.writeString(value);
+        }
+    }
+
+    static String readCode(ByteBuffer in, String[] dictionary) throws IOException {
+        int code = in.get() & 0xFF;
+        if (code == ESCAPE) {
+            return readString(in);
+        }
+        if (code >= dictionary.length) {
+            throw new IOException("Unknown dictionary code: " + code);
+        }
+        return dictionary[code];
+    }
+
+    static int indexOf(String[] dictionary, String value) {
+        for (int i = 0; i < dictionary.length; i++) {
+            if (dictionary[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static String readString(ByteBuffer in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Bad string length: " + length);
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Growable byte buffer; cheaper than DataOutputStream over ByteArrayOutputStream
+    static final class Writer {
+        private byte[] bytes;
+        private int size;
+
+        Writer(int initialCapacity) {
+            bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            bytes[size++] = (byte) (v >>> 24);
+            bytes[size++] = (byte) (v >>> 16);
+            bytes[size++] = (byte) (v >>> 8);
+            bytes[size++] = (byte) v;
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            writeBytes(utf8, 0, utf8.length);
+        }
+
+        void writeBytes(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, bytes, size, length);
+            size += length;
+        }
+
+        int size() { return size; }
+
+        void reset() { size = 0; }
+
+        byte[] array() { return bytes; }
+
+        byte[] toByteArray() { return Arrays.copyOf(bytes, size); }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// New reports and status changes as they happen, for views that show them live:
+// the desktop app's tabs and the server's /api/events streams.
+//
+// Each subscriber has a bounded queue of its own and publishing never waits on
+// one. A subscriber that falls a whole queue behind loses what was queued and its
+// next batch says so, and it reloads from the store instead; that is cheaper than
+// catching up event by event, and a stalled client can't hold up a submit.
+final class ReportEvents {
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    enum Kind { SUBMITTED, STATUS_CHANGED }
+
+    static final class Event {
+        final long sequence; // Increasing in publish order, across every school
+        final Kind kind;
+        final String school;
+        final SafetyReport report;
+        final int row;       // The report's index in its school's list
+        final String status; // The report's status as of this event
+        final long publishedNanos;
+
+        Event(long sequence, Kind kind, String school, SafetyReport report, int row, String status) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.school = school;
+            this.report = report;
+            this.row = row;
+            this.status = status;
+            this.publishedNanos = System.nanoTime();
+        }
+    }
+
+    // Events taken from a subscription together, oldest first. If missed is set,
+    // events before these were dropped and the subscriber should reload.
+    static final class Batch {
+        final List<Event> events;
+        final boolean missed;
+
+        Batch(List<Event> events, boolean missed) {
+            this.events = events;
+            this.missed = missed;
+        }
+
+        boolean isEmpty() {
+            return events.isEmpty() && !missed;
+        }
+    }
+
+    ReportEvents() {
+        Metrics.gauge("events.subscribers", subscriptions::size);
+    }
+
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    // Called by the store after the change is applied, so a subscriber that reads
+    // the store on hearing of it sees the change
+    void publish(Kind kind, String school, SafetyReport report, int row, String status) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        Event event = new Event(sequence.incrementAndGet(), kind, school, report, row, status);
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    // Batches are handed to consumer through executor, one at a time; events that
+    // arrive while one is waiting to run join it rather than queueing another
+    Subscription subscribe(Executor executor, Consumer<Batch> consumer) {
+        return add(new Subscription(DEFAULT_CAPACITY, executor, consumer));
+    }
+
+    // For a subscriber with a thread of its own, which takes batches with poll()
+    Subscription subscribe(int capacity) {
+        return add(new Subscription(capacity, null, null));
+    }
+
+    private Subscription add(Subscription subscription) {
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    final class Subscription implements AutoCloseable {
+        private final ArrayBlockingQueue<Event> queue;
+        private final Executor executor;
+        private final Consumer<Batch> consumer;
+        private final AtomicBoolean missed = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscription(int capacity, Executor executor, Consumer<Batch> consumer) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.executor = executor;
+            this.consumer = consumer;
+        }
+
+        private void offer(Event event) {
+            if (!queue.offer(event)) {
+                // Full: drop the backlog rather than wait, and have the subscriber reload
+                Metrics.EVENTS_DROPPED.add(queue.size() + 1);
+                queue.clear();
+                missed.set(true);
+            }
+            if (executor != null && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            scheduled.set(false); // Before draining, so a later event schedules another delivery
+            Batch batch = drain(null);
+            if (!batch.isEmpty() && !closed) {
+                consumer.accept(batch);
+            }
+        }
+
+        // Waits up to timeout for events; an empty batch if none came. Interrupt the
+        // waiting thread to end a wait early.
+        Batch poll(long timeout, TimeUnit unit) throws InterruptedException {
+            Event first = missed.get() || closed ? null : queue.poll(timeout, unit);
+            return drain(first);
+        }
+
+        private Batch drain(Event first) {
+            List<Event> events = new ArrayList<>();
+            if (first != null) {
+                events.add(first);
+            }
+            queue.drainTo(events, MAX_BATCH - events.size());
+            for (Event event : events) {
+                Metrics.EVENT_DELIVERY.stop(event.publishedNanos);
+            }
+            boolean wasMissed = missed.getAndSet(false);
+            return new Batch(events.isEmpty() ? Collections.emptyList() : events, wasMissed);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+// Streams reports to a file as CSV, JSON Lines or the plain-text listing.
+//
+// Rows are formatted in fixed-size chunks on the compute executor, a few chunks
+// ahead of the one being written, and written in order through one large buffer.
+// At most MAX_CHUNKS_IN_FLIGHT formatted chunks exist at once, so memory stays
+// the same whether the export holds a hundred reports or a district's whole year.
+//
+// With gzip each chunk is compressed on its formatter thread as a separate gzip
+// member; concatenated members are a valid gzip file (RFC 1952), so compression
+// runs in parallel too.
+class ReportExporter {
+    private static final int CHUNK_ROWS = 4096;
+    private static final int MAX_CHUNKS_IN_FLIGHT = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final DateTimeFormatter CSV_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter TEXT_TIME_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
+
+    enum Format {
+        CSV("CSV", "csv"),
+        JSON_LINES("JSON Lines", "jsonl"),
+        TEXT("Text listing", "txt");
+
+        final String label;
+        final String extension;
+
+        Format(String label, String extension) {
+            this.label = label;
+            this.extension = extension;
+        }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    // Which reports to export; null fields match everything. from is inclusive, to exclusive.
+    static final class Filter {
+        final LocalDateTime from;
+        final LocalDateTime to;
+        final String category;
+        final String status;
+        private final int categoryCode; // FieldDictionary codes, -1 for a value no report has
+        private final int statusCode;
+
+        Filter(LocalDateTime from, LocalDateTime to, String category, String status) {
+            this.from = from;
+            this.to = to;
+            this.category = category;
+            this.status = status;
+            this.categoryCode = FieldDictionary.CATEGORY.find(category);
+            this.statusCode = FieldDictionary.STATUS.find(status);
+        }
+
+        static Filter all() {
+            return new Filter(null, null, null, null);
+        }
+
+        boolean matches(SafetyReport report) {
+            LocalDateTime timestamp = report.getTimestamp();
+            return (from == null || !timestamp.isBefore(from))
+                && (to == null || timestamp.isBefore(to))
+                && (category == null || report.getCategoryCode() == categoryCode)
+                && (status == null || report.getStatusCode() == statusCode);
+        }
+
+        // The first and last whole days the range touches, null where it is open
+        LocalDate firstDay() {
+            return from != null ? from.toLocalDate() : null;
+        }
+
+        LocalDate lastDay() {
+            return to != null ? to.minusNanos(1).toLocalDate() : null;
+        }
+    }
+
+    // first's reports then then's, as one list without copying either
+    static List<SafetyReport> concat(List<SafetyReport> first, List<SafetyReport> then) {
+        class Concatenated extends AbstractList<SafetyReport> implements RandomAccess {
+            @Override
+            public SafetyReport get(int index) {
+                return index < first.size() ? first.get(index) : then.get(index - first.size());
+            }
+
+            @Override
+            public int size() {
+                return first.size() + then.size();
+            }
+        }
+        return first.isEmpty() ? then : new Concatenated();
+    }
+
+    // Told how many of the reports have been looked at so far
+    interface Progress {
+        void update(int done, int total);
+    }
+
+    private final Format format;
+    private final boolean gzip;
+    private final Filter filter;
+    private final Executor formatters;
+
+    ReportExporter(Format format, boolean gzip, Filter filter, Executor formatters) {
+        this.format = format;
+        this.gzip = gzip;
+        this.filter = filter;
+        this.formatters = formatters;
+    }
+
+    // Writes every matching report in list order and returns how many were written.
+    // reports must not change while this runs; pass a frozen view.
+    public int export(List<SafetyReport> reports, Path file, Progress progress) throws IOException {
+        long began = Metrics.EXPORT.start();
+        int total = reports.size();
+        int chunks = (total + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        int nextChunk = 0;
+        int written = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES)) {
+            out.write(encode(header()));
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                while (nextChunk < chunks && inFlight.size() < MAX_CHUNKS_IN_FLIGHT) {
+                    int start = nextChunk * CHUNK_ROWS;
+                    int end = Math.min(total, start + CHUNK_ROWS);
+                    inFlight.add(CompletableFuture.supplyAsync(() -> format(reports, start, end), formatters));
+                    nextChunk++;
+                }
+                Chunk formatted = await(inFlight.remove());
+                out.write(formatted.bytes);
+                written += formatted.rows;
+                progress.update(Math.min(total, (chunk + 1) * CHUNK_ROWS), total);
+            }
+        } finally {
+            inFlight.forEach(pending -> pending.cancel(false));
+        }
+        if (chunks == 0) {
+            progress.update(0, 0);
+        }
+        Metrics.EXPORT.stop(began);
+        return written;
+    }
+
+    private static Chunk await(CompletableFuture<Chunk> chunk) throws IOException {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            throw new IOException("Could not format reports: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private static final class Chunk {
+        final byte[] bytes;
+        final int rows;
+
+        Chunk(byte[] bytes, int rows) {
+            this.bytes = bytes;
+            this.rows = rows;
+        }
+    }
+
+    // Runs on a formatter thread
+    private Chunk format(List<SafetyReport> reports, int start, int end) {
+        StringBuilder out = new StringBuilder((end - start) * 160);
+        int rows = 0;
+        for (int i = start; i < end; i++) {
+            SafetyReport report = reports.get(i);
+            if (filter.matches(report)) {
+                appendRow(out, report);
+                rows++;
+            }
+        }
+        return new Chunk(encode(out.toString()), rows);
+    }
+
+    private byte[] encode(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (!gzip) {
+            return bytes;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream member = new GZIPOutputStream(compressed)) {
+            member.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory streams don't fail
+        }
+        return compressed.toByteArray();
+    }
+
+    private String header() {
+        switch (format) {
+            case CSV:
+                return "id,timestamp,category,location,severity,status,description\r\n";
+            case TEXT:
+                return "Ally Safety Reports Export\n"
+                    + "Generated: " + LocalDateTime.now().format(TEXT_TIME_FORMAT) + "\n"
+                    + "=".repeat(50) + "\n\n";
+            default:
+                return "";
+        }
+    }
+
+    private void appendRow(StringBuilder out, SafetyReport report) {
+        switch (format) {
+            case CSV:
+                out.append(report.getId()).append(',')
+                    .append(report.getTimestamp().format(CSV_TIME_FORMAT)).append(',');
+                appendCsvField(out, report.getCategory()).append(',');
+                appendCsvField(out, report.getLocation()).append(',');
+                appendCsvField(out, report.getSeverity()).append(',');
+                appendCsvField(out, report.getStatus()).append(',');
+                appendCsvField(out, report.getDescription()).append("\r\n");
+                break;
+            case JSON_LINES:
+                out.append(ReportServer.toJson(report)).append('\n');
+                break;
+            case TEXT:
+                out.append("Report ID: ").append(report.getId()).append('\n')
+                    .append("Timestamp: ").append(report.getTimestamp().format(TEXT_TIME_FORMAT)).append('\n')
+                    .append("Category: ").append(report.getCategory()).append('\n')
+                    .append("Location: ").append(report.getLocation()).append('\n')
+                    .append("Severity: ").append(report.getSeverity()).append('\n')
+                    .append("Status: ").append(report.getStatus()).append('\n')
+                    .append("Description: ").append(report.getDescription()).append('\n')
+                    .append("-".repeat(30)).append("\n\n");
+                break;
+        }
+    }
+
+    // RFC 4180: quote fields holding a comma, quote or line break, doubling inner quotes.
+    // Descriptions come from students, so a field a spreadsheet would run as a formula
+    // (starting =, +, -, @, tab or carriage return) is kept as text with a leading '.
+    private static StringBuilder appendCsvField(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        String prefix = !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0 ? "'" : "";
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return out.append(prefix).append(value);
+        }
+        out.append('"').append(prefix);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            out.append(c);
+            if (c == '"') {
+                out.append('"');
+            }
+        }
+        return out.append('"');
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out report IDs from an atomic counter, so creating a report never takes a lock.
+//
+// Once persistTo() is called, IDs are handed out in blocks whose upper bound (the
+// high-water mark) is written to disk before any ID in the block is used. After a
+// crash the next run starts above the recorded mark, so an ID a client has already
+// been given is never given out again, even if its report never reached the log.
+class ReportIdAllocator implements AutoCloseable {
+    private static final int BLOCK_SIZE = 1024;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private volatile long ceiling = Long.MAX_VALUE; // IDs below this need no disk write
+    private FileChannel highWaterMark;              // Guarded by this
+
+    public int allocate() {
+        long id = nextId.getAndIncrement();
+        if (id >= ceiling) {
+            raiseCeiling(id);
+        }
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Report IDs exhausted");
+        }
+        return (int) id;
+    }
+
+    // Keeps newly created reports from reusing an ID that was loaded from disk
+    public void reserve(long id) {
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    // Starts recording the high-water mark in the given file, first skipping past the
+    // mark a previous run left there
+    public synchronized void persistTo(Path path) {
+        try {
+            highWaterMark = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            ByteBuffer saved = ByteBuffer.allocate(Long.BYTES);
+            if (highWaterMark.read(saved, 0) == Long.BYTES) {
+                reserve(saved.getLong(0) - 1);
+            }
+            writeCeiling(nextId.get() + BLOCK_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open ID high-water mark " + path, e);
+        }
+    }
+
+    // Only the thread that crosses the ceiling gets here; everyone else keeps counting
+    private synchronized void raiseCeiling(long id) {
+        if (id < ceiling) {
+            return; // Another thread already raised it past us
+        }
+        try {
+            writeCeiling(Math.max(id + 1, nextId.get()) + BLOCK_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record ID high-water mark", e);
+        }
+    }
+
+    private void writeCeiling(long newCeiling) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, newCeiling);
+        highWaterMark.write(buffer, 0);
+        highWaterMark.force(false);
+        ceiling = newCeiling;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (highWaterMark != null) {
+            highWaterMark.close();
+            highWaterMark = null;
+            ceiling = Long.MAX_VALUE;
+        }
+    }
+}
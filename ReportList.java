@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// All reports as one list: the rows of the mapped snapshot followed by reports
+// added since it was written. Snapshot rows become SafetyReport objects only when
+// someone asks for them, and the same object is handed out every time after that
+// so status changes made through it stick.
+//
+// Safe for many threads at once. Reads take no lock. Appends hold the read side of
+// a read-write lock that only rebase() and freeze() take exclusively, and otherwise
+// use only atomic operations on the tail, so no append ever waits for another (see Tail).
+// Iterating while others append is weakly consistent: it sees at least the
+// reports that were there when it started.
+class ReportList extends AbstractList<SafetyReport> implements RandomAccess {
+    // Snapshot, its materialized rows and the tail after it. Replaced as a whole by
+    // rebase(); only the tail and the materialized cache change in place.
+    private static final class State {
+        final ColumnarReportStore snapshot;
+        final AtomicReferenceArray<SafetyReport> materialized;
+        final Tail tail = new Tail();
+
+        State(ColumnarReportStore snapshot, AtomicReferenceArray<SafetyReport> materialized) {
+            this.snapshot = snapshot;
+            this.materialized = materialized;
+        }
+
+        int snapshotSize() {
+            return materialized.length();
+        }
+    }
+
+    private volatile State state;
+    private final ReadWriteLock rebaseLock = new ReentrantReadWriteLock(); // Appends share it; rebase() and freeze() exclude them
+
+    ReportList() {
+        this.state = new State(null, new AtomicReferenceArray<>(0));
+    }
+
+    ReportList(ColumnarReportStore snapshot) {
+        this.state = new State(snapshot, new AtomicReferenceArray<>(snapshot.size()));
+    }
+
+    @Override
+    public SafetyReport get(int index) {
+        State current = state;
+        if (index >= current.snapshotSize()) {
+            return current.tail.get(index - current.snapshotSize());
+        }
+        SafetyReport report = current.materialized.get(index);
+        return report != null ? report : materialize(index);
+    }
+
+    // First request for a snapshot row. Holding the lock keeps rebase() from carrying
+    // the cache over while we fill it, and the compare-and-set makes sure two threads
+    // asking at once end up with the same object.
+    private SafetyReport materialize(int index) {
+        rebaseLock.readLock().lock();
+        try {
+            State current = state;
+            if (index >= current.snapshotSize()) {
+                return current.tail.get(index - current.snapshotSize()); // A rebase moved it
+            }
+            SafetyReport created = current.snapshot.report(index);
+            return current.materialized.compareAndSet(index, null, created)
+                ? created
+                : current.materialized.get(index);
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        State current = state;
+        return current.snapshotSize() + current.tail.size();
+    }
+
+    @Override
+    public boolean add(SafetyReport report) {
+        append(report);
+        return true;
+    }
+
+    // Adds the report and returns its index
+    public int append(SafetyReport report) {
+        rebaseLock.readLock().lock();
+        try {
+            State current = state;
+            return current.snapshotSize() + current.tail.append(report);
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    // Field readers that go straight to the snapshot columns for rows nobody has
+    // materialized yet, so scanning or painting rows does not fill the heap
+    public String categoryAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.category(index) : get(index).getCategory();
+    }
+
+    public String locationAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.location(index) : get(index).getLocation();
+    }
+
+    public String severityAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.severity(index) : get(index).getSeverity();
+    }
+
+    public String statusAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.status(index) : get(index).getStatus();
+    }
+
+    public LocalDateTime timestampAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.timestamp(index) : get(index).getTimestamp();
+    }
+
+    public LocalDateTime statusTimeAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.statusTime(index) : get(index).getStatusTime();
+    }
+
+    public String descriptionAt(int index) {
+        State current = state;
+        return isColumnRow(current, index) ? current.snapshot.description(index) : get(index).getDescription();
+    }
+
+    // FieldDictionary code of one of ColumnarReportStore's coded fields
+    public int codeAt(int field, int index) {
+        State current = state;
+        if (isColumnRow(current, index)) {
+            return current.snapshot.code(field, index);
+        }
+        SafetyReport report = get(index);
+        switch (field) {
+            case ColumnarReportStore.CATEGORY: return report.getCategoryCode();
+            case ColumnarReportStore.LOCATION: return report.getLocationCode();
+            case ColumnarReportStore.SEVERITY: return report.getSeverityCode();
+            case ColumnarReportStore.STATUS: return report.getStatusCode();
+            default: throw new IllegalArgumentException("Not a coded field: " + field);
+        }
+    }
+
+    private static boolean isColumnRow(State current, int index) {
+        return index < current.snapshotSize() && current.materialized.get(index) == null;
+    }
+
+    // Report with the given ID, or null
+    public SafetyReport findById(int id) {
+        int index = indexOfId(id);
+        return index >= 0 ? get(index) : null;
+    }
+
+    // Index of the report with the given ID, or -1
+    public int indexOfId(int id) {
+        State current = state;
+        int slot = current.tail.slotOf(id);
+        if (slot >= 0) {
+            return current.snapshotSize() + slot;
+        }
+        return current.snapshot != null ? current.snapshot.rowOf(id) : -1;
+    }
+
+    public int getMaxId() {
+        State current = state;
+        int maxId = current.snapshot != null ? current.snapshot.getMaxId() : 0;
+        for (int i = 0; i < current.tail.size(); i++) {
+            maxId = Math.max(maxId, current.tail.get(i).getId());
+        }
+        return maxId;
+    }
+
+    // Fixed view of the reports as they are now, safe to read from a background
+    // thread while this list keeps growing. The tail is append-only, so the view
+    // just remembers how much of it there was. Rows nobody had materialized are
+    // read from the snapshot without being cached.
+    //
+    // Taken with appends shut out, so no slot is claimed but unfilled: the view holds
+    // every report whose append() has returned, even while the published mark is held
+    // up, which is what lets a compaction reset away their log records and a query
+    // look up any row its indexes gave it. Appends wait only for the two reads here.
+    public List<SafetyReport> freeze() {
+        State frozen;
+        int frozenTailSize;
+        rebaseLock.writeLock().lock();
+        try {
+            frozen = state;
+            frozenTailSize = frozen.tail.size();
+        } finally {
+            rebaseLock.writeLock().unlock();
+        }
+        int frozenSnapshotSize = frozen.snapshotSize();
+        return new AbstractList<SafetyReport>() {
+            @Override
+            public SafetyReport get(int index) {
+                if (index < frozenSnapshotSize) {
+                    SafetyReport report = frozen.materialized.get(index);
+                    return report != null ? report : frozen.snapshot.report(index);
+                }
+                if (index - frozenSnapshotSize >= frozenTailSize) {
+                    throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+                }
+                return frozen.tail.get(index - frozenSnapshotSize);
+            }
+
+            @Override
+            public int size() {
+                return frozenSnapshotSize + frozenTailSize;
+            }
+        };
+    }
+
+    // Switches to a freshly written snapshot of this list's first newSnapshot.size()
+    // reports. Reports already handed out keep their identity but now read their
+    // description from the new file; reports added since the snapshot was frozen stay
+    // appended. The old snapshot is not closed, since a frozen view may still be
+    // reading it; its file is released once nothing refers to it.
+    public void rebase(ColumnarReportStore newSnapshot) {
+        rebaseLock.writeLock().lock();
+        try {
+            State old = state;
+            int oldSnapshotSize = old.snapshotSize();
+            int oldSize = oldSnapshotSize + old.tail.size();
+            int newSnapshotSize = newSnapshot.size();
+            if (newSnapshotSize > oldSize) {
+                throw new IllegalArgumentException("Snapshot has " + newSnapshotSize + " reports, list has " + oldSize);
+            }
+            State rebased = new State(newSnapshot, new AtomicReferenceArray<>(newSnapshotSize));
+            for (int i = 0; i < newSnapshotSize; i++) {
+                SafetyReport report = i < oldSnapshotSize ? old.materialized.get(i) : old.tail.get(i - oldSnapshotSize);
+                if (report != null) {
+                    report.moveDescriptionTo(newSnapshot, i);
+                    rebased.materialized.set(i, report);
+                }
+            }
+            for (int i = newSnapshotSize; i < oldSize; i++) {
+                rebased.tail.append(old.tail.get(i - oldSnapshotSize));
+            }
+            state = rebased;
+        } finally {
+            rebaseLock.writeLock().unlock();
+        }
+    }
+
+    // Closes the current snapshot file; nothing may read the list after this
+    public void close() throws IOException {
+        State current = state;
+        if (current.snapshot != null) {
+            current.snapshot.close();
+        }
+    }
+
+    // Append-only array of reports in fixed-size chunks, so growing it never copies
+    // or moves what is already there. A writer claims a slot with an atomic counter,
+    // fills it, and then moves the published mark past every filled slot in a row.
+    // A writer held up between claiming and filling only holds back the mark, never
+    // another writer: whoever fills the last gap carries the mark past the slots
+    // filled meanwhile. size() and iteration see the published prefix, which never
+    // has holes; a filled slot can be read by index before the mark reaches it, so
+    // a writer can use its own row as soon as append() returns. With no append in
+    // progress (ReportList.freeze()) every claimed slot is filled and published.
+    private static final class Tail {
+        private static final int CHUNK_BITS = 12;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+        private final AtomicInteger claimed = new AtomicInteger();
+        private final AtomicInteger published = new AtomicInteger();
+        private volatile AtomicReferenceArray<SafetyReport>[] chunks = newChunks(4);
+        private final Map<Integer, Integer> slotById = new ConcurrentHashMap<>();
+
+        int append(SafetyReport report) {
+            int slot = claimed.getAndIncrement();
+            chunkFor(slot).set(slot & (CHUNK_SIZE - 1), report);
+            slotById.put(report.getId(), slot);
+            // Either this sees the mark reach our slot, or the writer that moved it
+            // there sees our slot filled and carries it on
+            for (int mark = published.get(); filled(mark); mark = published.get()) {
+                published.compareAndSet(mark, mark + 1);
+            }
+            return slot;
+        }
+
+        int size() {
+            return published.get();
+        }
+
+        SafetyReport get(int index) {
+            SafetyReport report = index >= 0 ? slot(index) : null;
+            if (report == null) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + published.get());
+            }
+            return report;
+        }
+
+        // Slot holding the report with the given ID once it is filled, or -1
+        int slotOf(int id) {
+            Integer slot = slotById.get(id);
+            return slot != null ? slot : -1;
+        }
+
+        private boolean filled(int index) {
+            return index < claimed.get() && slot(index) != null;
+        }
+
+        // The report in a slot, or null if it isn't filled yet
+        private SafetyReport slot(int index) {
+            AtomicReferenceArray<SafetyReport>[] current = chunks;
+            int chunk = index >>> CHUNK_BITS;
+            return chunk < current.length && current[chunk] != null
+                ? current[chunk].get(index & (CHUNK_SIZE - 1))
+                : null;
+        }
+
+        private AtomicReferenceArray<SafetyReport> chunkFor(int slot) {
+            int chunk = slot >>> CHUNK_BITS;
+            AtomicReferenceArray<SafetyReport>[] current = chunks;
+            if (chunk < current.length && current[chunk] != null) {
+                return current[chunk];
+            }
+            return addChunk(chunk);
+        }
+
+        // Rare: once every CHUNK_SIZE appends
+        private synchronized AtomicReferenceArray<SafetyReport> addChunk(int chunk) {
+            AtomicReferenceArray<SafetyReport>[] current = chunks;
+            if (chunk >= current.length) {
+                AtomicReferenceArray<SafetyReport>[] grown = newChunks(Math.max(current.length * 2, chunk + 1));
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[chunk] == null) {
+                current[chunk] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            }
+            chunks = current; // Volatile write publishes the new chunk to readers
+            return current[chunk];
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static AtomicReferenceArray<SafetyReport>[] newChunks(int length) {
+            return new AtomicReferenceArray[length];
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log of report events.
+// Each record is [int length][int crc32][type byte][ReportCodec payload] so a torn
+// write at the tail is detected on replay and cut off instead of corrupting the file.
+class ReportLog implements Closeable {
+    static final byte REPORT_CREATED = 1;
+    static final byte STATUS_CHANGED = 2;      // Older logs: no time of change
+    static final byte STATUS_CHANGED_AT = 3;   // With when it happened, as ReportCodec stores timestamps
+
+    private static final int HEADER_SIZE = 8;
+    private static final int SYNC_BATCH_SIZE = 32;       // fsync after this many unsynced records...
+    private static final long SYNC_INTERVAL_MS = 200;    // ...or after this long, whichever comes first
+
+    // Receives records in the order they were appended
+    interface Handler {
+        void reportCreated(SafetyReport report);
+        // at is null for records written before status changes were timed
+        void statusChanged(int reportId, String status, LocalDateTime at);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ScheduledExecutorService syncTimer;
+    private final ReportCodec.Writer record = new ReportCodec.Writer(256);
+    private int unsyncedRecords;
+    private int recordCount;
+
+    ReportLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.syncTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-log-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncTimer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void appendCreated(SafetyReport report) throws IOException {
+        record.reset();
+        record.writeByte(REPORT_CREATED);
+        ReportCodec.encode(report, record);
+        append();
+    }
+
+    public synchronized void appendStatusChanged(int reportId, String status, LocalDateTime at) throws IOException {
+        record.reset();
+        record.writeByte(STATUS_CHANGED_AT);
+        record.writeVarLong(reportId);
+        ReportCodec.writeCode(record, SafetyReport.STATUSES, status);
+        record.writeVarLong(at.toInstant(ZoneOffset.UTC).toEpochMilli());
+        append();
+    }
+
+    private void append() throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.size());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + record.size());
+        buffer.putInt(record.size());
+        buffer.putInt((int) crc.getValue());
+        buffer.put(record.array(), 0, record.size());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount++;
+        if (++unsyncedRecords >= SYNC_BATCH_SIZE) {
+            sync();
+        }
+    }
+
+    // Forces any batched records to disk
+    public synchronized void sync() throws IOException {
+        if (unsyncedRecords > 0 && channel.isOpen()) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error syncing report log: " + e.getMessage());
+        }
+    }
+
+    // Number of records appended since the log was opened or last reset
+    public synchronized int getRecordCount() { return recordCount; }
+
+    // Drops every record; called once a snapshot containing them is safely written
+    public synchronized void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        unsyncedRecords = 0;
+        recordCount = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        syncTimer.shutdownNow();
+        if (channel.isOpen()) {
+            sync();
+            channel.close();
+        }
+    }
+
+    // Replays every intact record in order. A torn or corrupt tail is truncated
+    // so that later appends continue from the last good record; the bytes cut off
+    // are kept beside the log first, since a bad record mid-file ends replay there.
+    public static int replay(Path path, Handler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int replayed = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (position + HEADER_SIZE <= size) {
+                header.clear();
+                in.read(header, position);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                in.read(payload, position + HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload.array(), handler);
+                position += HEADER_SIZE + length;
+                replayed++;
+            }
+            if (position < size) {
+                Path aside = keepTail(in, position, path);
+                Metrics.LOAD_ERRORS.increment();
+                Metrics.problem("Report log damaged at byte " + position + " of " + size + "; the last "
+                    + (size - position) + " bytes could not be replayed and were moved to " + aside);
+                in.truncate(position);
+            }
+        }
+        return replayed;
+    }
+
+    private static Path keepTail(FileChannel in, long position, Path path) throws IOException {
+        Path aside = path.resolveSibling(path.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try (FileChannel out = FileChannel.open(aside, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+        return aside;
+    }
+
+    private static void apply(byte[] payload, Handler handler) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        byte type = in.get();
+        if (type == REPORT_CREATED) {
+            handler.reportCreated(ReportCodec.decode(in));
+        } else if (type == STATUS_CHANGED || type == STATUS_CHANGED_AT) {
+            int reportId = (int) ReportCodec.readVarLong(in);
+            String status = ReportCodec.readCode(in, SafetyReport.STATUSES);
+            LocalDateTime at = type == STATUS_CHANGED_AT
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(ReportCodec.readVarLong(in)), ZoneOffset.UTC)
+                : null;
+            handler.statusChanged(reportId, status, at);
+        } else {
+            throw new IOException("Unknown report log record type: " + type);
+        }
+    }
+
+    public Path getPath() { return path; }
+}
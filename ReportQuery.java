@@ -0,0 +1,156 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A filter over reports, built from field tests and day ranges combined with
+// allOf/anyOf/not, and answered from a ReportBitmapIndex with bitwise operations:
+//
+//   ReportQuery.severityAtLeast(Severity.HIGH)
+//       .and(ReportQuery.is(CATEGORY, "Bullying"))
+//       .and(ReportQuery.is(LOCATION, "Bathroom"))
+//       .and(ReportQuery.open())
+//       .and(ReportQuery.lastDays(7, LocalDate.now()))
+//
+// Field numbers are ColumnarReportStore's CATEGORY, LOCATION, SEVERITY and STATUS.
+abstract class ReportQuery {
+    // Evaluates to `words` words of bits, one per row of the report list
+    abstract long[] evaluate(ReportBitmapIndex index, int words);
+
+    // Rows matching this query, in list order
+    public int[] rows(ReportBitmapIndex index) {
+        return ReportBitmapIndex.rows(evaluate(index, ReportBitmapIndex.wordsFor(index.getRowLimit())));
+    }
+
+    public int count(ReportBitmapIndex index) {
+        return ReportBitmapIndex.count(evaluate(index, ReportBitmapIndex.wordsFor(index.getRowLimit())));
+    }
+
+    public ReportQuery and(ReportQuery other) {
+        return allOf(this, other);
+    }
+
+    public ReportQuery or(ReportQuery other) {
+        return anyOf(this, other);
+    }
+
+    // Every report
+    static ReportQuery all() {
+        return new ReportQuery() {
+            @Override
+            long[] evaluate(ReportBitmapIndex index, int words) {
+                long[] bits = new long[words];
+                int rows = Math.min(index.getRowLimit(), words * 64); // Rows added since evaluation began are left out
+                Arrays.fill(bits, 0, rows >>> 6, -1L);
+                if ((rows & 63) != 0) {
+                    bits[rows >>> 6] = (1L << rows) - 1;
+                }
+                return bits;
+            }
+        };
+    }
+
+    // Reports whose field holds any of the values
+    static ReportQuery is(int field, String... values) {
+        return new ReportQuery() {
+            @Override
+            long[] evaluate(ReportBitmapIndex index, int words) {
+                long[] bits = new long[words];
+                for (String value : values) {
+                    orInto(bits, index.rowsWith(field, value, words));
+                }
+                return bits;
+            }
+        };
+    }
+
+    // Reports of this severity or worse
+    static ReportQuery severityAtLeast(Severity severity) {
+        String[] labels = Arrays.stream(severity.andAbove()).map(level -> level.label).toArray(String[]::new);
+        return is(ColumnarReportStore.SEVERITY, labels);
+    }
+
+    // Reports that are not resolved yet
+    static ReportQuery open() {
+        return not(is(ColumnarReportStore.STATUS, Status.RESOLVED.label));
+    }
+
+    // Reports made on any day from first to last, inclusive
+    static ReportQuery between(LocalDate first, LocalDate last) {
+        return new ReportQuery() {
+            @Override
+            long[] evaluate(ReportBitmapIndex index, int words) {
+                return index.rowsOnDays(first.toEpochDay(), last.toEpochDay(), words);
+            }
+        };
+    }
+
+    // Reports made today or on the days - 1 days before it
+    static ReportQuery lastDays(int days, LocalDate today) {
+        return between(today.minusDays(days - 1), today);
+    }
+
+    // The usual admin filter: every non-null field must match, openOnly leaves out
+    // resolved reports and days > 0 keeps the last that many days. Null when nothing
+    // is filtered.
+    static ReportQuery matching(String category, String location, String severity, String status,
+                                boolean openOnly, int days, LocalDate today) {
+        List<ReportQuery> parts = new ArrayList<>();
+        if (category != null) parts.add(is(ColumnarReportStore.CATEGORY, category));
+        if (location != null) parts.add(is(ColumnarReportStore.LOCATION, location));
+        if (severity != null) parts.add(is(ColumnarReportStore.SEVERITY, severity));
+        if (status != null) parts.add(is(ColumnarReportStore.STATUS, status));
+        if (openOnly) parts.add(open());
+        if (days > 0) parts.add(lastDays(days, today));
+        return parts.isEmpty() ? null : allOf(parts.toArray(new ReportQuery[0]));
+    }
+
+    static ReportQuery allOf(ReportQuery... queries) {
+        return new ReportQuery() {
+            @Override
+            long[] evaluate(ReportBitmapIndex index, int words) {
+                long[] bits = queries[0].evaluate(index, words);
+                for (int q = 1; q < queries.length; q++) {
+                    long[] other = queries[q].evaluate(index, words);
+                    for (int i = 0; i < words; i++) {
+                        bits[i] &= other[i];
+                    }
+                }
+                return bits;
+            }
+        };
+    }
+
+    static ReportQuery anyOf(ReportQuery... queries) {
+        return new ReportQuery() {
+            @Override
+            long[] evaluate(ReportBitmapIndex index, int words) {
+                long[] bits = new long[words];
+                for (ReportQuery query : queries) {
+                    orInto(bits, query.evaluate(index, words));
+                }
+                return bits;
+            }
+        };
+    }
+
+    static ReportQuery not(ReportQuery query) {
+        return new ReportQuery() {
+            @Override
+            long[] evaluate(ReportBitmapIndex index, int words) {
+                long[] bits = query.evaluate(index, words);
+                long[] every = all().evaluate(index, words);
+                for (int i = 0; i < words; i++) {
+                    bits[i] = ~bits[i] & every[i];
+                }
+                return bits;
+            }
+        };
+    }
+
+    private static void orInto(long[] into, long[] bits) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] |= bits[i];
+        }
+    }
+}
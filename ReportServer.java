@@ -0,0 +1,816 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+// Headless HTTP front end to the district's report stores, so reports from every
+// student's browser end up in one place. Started with: java AllyApp --server [port]
+//
+// Every call takes an optional ?school=<id>; without one, reports go to and come
+// from the default school, and stats and trends cover the whole district.
+//
+// Reports are anonymous but not public: calls marked * read or change them and need
+// the staff token, as "Authorization: Bearer <token>" (or ?token=<token> for the
+// events stream, which browsers open without headers). Anyone may file a report.
+//
+//   GET  /                          the student web client (ally_student_app.html)
+//   POST /api/reports               {"category","location","severity","description"} -> 201 + report
+// * GET  /api/reports?offset&limit  newest first: {"total": n, "archived": n, "reports": [...]}
+//        &category&location&severity&status&days   optional filters, all must match
+//        &archive=true             also search the archive, read from disk, for old resolved
+//                                  reports ("archived" counts every one there)
+// * PUT  /api/reports/{id}/status   {"status"} -> report
+// * GET  /api/stats                 totals from the running analytics counts
+//   GET  /api/trends?window         categories rising fastest: {"trends": [...]}
+//   GET  /api/schools               {"schools": ["default", ...]}
+// * GET  /api/triage?limit          reports waiting for staff, most pressing first:
+//                                   {"waiting": n, "overdue": n, "reports": [...]}
+// * POST /api/triage/claim          {"counselor"} -> the next case, now theirs, or 204
+// * POST /api/triage/{id}/release   {"counselor"} -> 204; back in line for someone else
+// * GET  /api/events                Server-Sent Events: "submitted" and "status", each
+//                                   {"school","report"}, as they happen
+//   POST /api/sync/reports          [{"key","category","location","severity","description"}, ...]
+//                                   -> {"cursor", "results": [{"key","id"} or {"key","error"}, ...]}
+// * GET  /api/sync/changes?since&limit   reports submitted or changed after the cursor:
+//                                   {"reset","cursor","more","reports": [...]}, or 304
+//
+// An events stream that falls behind gets "resync" in place of what it missed, and
+// should fetch /api/reports again; so does one that reconnects with Last-Event-ID.
+//
+// The sync calls are for clients that work offline and catch up in batches. Each
+// uploaded report carries a key the client made up for it, so re-sending a batch
+// whose reply was lost files nothing twice; the body may be gzipped. A changes
+// fetch sends back only what moved since its cursor, with the new cursor as ETag;
+// "reset" means the cursor was unknown or too old and the newest reports follow in
+// its place, and an If-None-Match of the current cursor gets 304. Archived reports
+// never change, so the changes feed covers only the live ones.
+//
+// Old resolved reports are archived when the server starts (see ReportArchive), so
+// one left running archives at its next restart.
+class ReportServer {
+    static final int DEFAULT_PORT = 8080;
+    private static final String CLIENT_PAGE = "ally_student_app.html";
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_FIELD_CHARS = 100;
+    private static final int MAX_DESCRIPTION_CHARS = 5000;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_EVENT_STREAMS = 256;
+    private static final int EVENT_QUEUE_CAPACITY = 256; // Per stream, before it has to resync
+    private static final long KEEPALIVE_SECONDS = 15;    // Also how soon a closed client is noticed
+    private static final int RETRY_MS = 2000;
+    private static final int MAX_SYNC_BATCH = 100;               // Reports per upload
+    private static final int MAX_SYNC_BODY_BYTES = 1024 * 1024;  // Once unzipped
+    private static final int MIN_GZIP_BYTES = 1024;              // Smaller replies go as they are
+
+    private final DistrictStore district;
+    private final byte[] staffToken;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ExecutorService streams; // A thread per events stream, apart from the handlers
+    private final Semaphore streamSlots = new Semaphore(MAX_EVENT_STREAMS);
+    private final Set<ReportEvents.Subscription> openStreams = ConcurrentHashMap.newKeySet();
+
+    // staffToken unlocks the calls that read or change reports
+    ReportServer(DistrictStore district, InetSocketAddress address, String staffToken) throws IOException {
+        if (staffToken == null || staffToken.isEmpty()) {
+            throw new IllegalArgumentException("A staff token is required");
+        }
+        this.district = district;
+        this.staffToken = staffToken.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, BACKLOG);
+        this.handlers = newHandlerExecutor();
+        this.streams = BackgroundExecutor.newVirtualThreadExecutor().orElseGet(() ->
+            Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "ally-event-stream");
+                thread.setDaemon(true);
+                return thread;
+            }));
+        server.setExecutor(handlers);
+        server.createContext("/api/reports", this::handleReports);
+        server.createContext("/api/stats", this::handleStats);
+        server.createContext("/api/trends", this::handleTrends);
+        server.createContext("/api/schools", this::handleSchools);
+        server.createContext("/api/events", this::handleEvents);
+        server.createContext("/api/triage", this::handleTriage);
+        server.createContext("/api/sync", this::handleSync);
+        server.createContext("/", this::handleClientPage);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        for (ReportEvents.Subscription subscription : openStreams) {
+            subscription.close();
+        }
+        streams.shutdownNow(); // Wakes streams waiting for events
+        server.stop(1);
+        handlers.shutdown();
+        try {
+            handlers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // One virtual thread per request when available; otherwise a bounded pool, since
+    // an unbounded one would start a platform thread for every concurrent client
+    private static ExecutorService newHandlerExecutor() {
+        return BackgroundExecutor.newVirtualThreadExecutor().orElseGet(() ->
+            Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 4)));
+    }
+
+    private void handleReports(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            ReportStore store = "OPTIONS".equals(method) ? null : schoolStore(exchange);
+            if ("OPTIONS".equals(method)) {
+                sendEmpty(exchange, 204);
+            } else if (store == null) {
+                sendError(exchange, 404, "No such school");
+            } else if (path.equals("/api/reports") || path.equals("/api/reports/")) {
+                if ("POST".equals(method)) {
+                    submitReport(exchange, store);
+                } else if ("GET".equals(method)) {
+                    listReports(exchange, store);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else if (path.matches("/api/reports/\\d+/status")) {
+                if ("PUT".equals(method) || "POST".equals(method)) {
+                    int id = Integer.parseInt(path.split("/")[3]);
+                    updateStatus(exchange, store, id);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage()); // Status change the workflow doesn't allow
+        } catch (UncheckedIOException e) {
+            sendError(exchange, 500, "Cannot read reports"); // A description the snapshot can't give back
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // The school named by ?school=, the default school without one, or null for an unknown school
+    private ReportStore schoolStore(HttpExchange exchange) {
+        String school = parseQuery(exchange.getRequestURI()).get("school");
+        return district.school(school != null ? school : DistrictStore.DEFAULT_SCHOOL);
+    }
+
+    private void submitReport(HttpExchange exchange, ReportStore store) throws IOException {
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        String category = requireListed(body, "category", SafetyReport.CATEGORIES);
+        String location = requireListed(body, "location", SafetyReport.LOCATIONS);
+        String severity = requireListed(body, "severity", SafetyReport.SEVERITIES);
+        String description = requireField(body, "description", MAX_DESCRIPTION_CHARS);
+
+        SafetyReport report = store.createReport(category, location, severity, description);
+        store.submit(report);
+        sendJson(exchange, 201, toJson(report));
+    }
+
+    private void listReports(HttpExchange exchange, ReportStore store) throws IOException {
+        if (!checkStaff(exchange)) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        int offset = Math.max(0, intParam(query, "offset", 0));
+        int limit = Math.min(MAX_PAGE_SIZE, Math.max(1, intParam(query, "limit", DEFAULT_PAGE_SIZE)));
+
+        int days = intParam(query, "days", 0);
+        LocalDate today = LocalDate.now();
+        ReportQuery filter = ReportQuery.matching(query.get("category"), query.get("location"), query.get("severity"),
+            query.get("status"), false, days, today);
+        int[] rows = filter != null ? store.query(filter) : null;
+        // Frozen after the query, so it holds every matched row (see ReportList.freeze)
+        List<SafetyReport> reports = store.freeze();
+        int live = rows != null ? rows.length : reports.size();
+        // Archived reports are older than every live one, so they come after them, newest first
+        List<SafetyReport> archived = List.of();
+        if ("true".equals(query.get("archive"))) {
+            try {
+                archived = store.findArchived(days > 0 ? today.minusDays(days - 1) : null, null, ReportArchive.matching(
+                    query.get("category"), query.get("location"), query.get("severity"), query.get("status")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // A 500, not a listing that quietly leaves them out
+            }
+        }
+        int total = live + archived.size();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"total\":").append(total).append(",\"archived\":").append(store.getArchivedCount())
+            .append(",\"reports\":[");
+        int first = total - 1 - offset;
+        for (int i = first; i >= 0 && i > first - limit; i--) {
+            if (i != first) {
+                json.append(',');
+            }
+            int row = i - archived.size();
+            SafetyReport report = row < 0 ? archived.get(i) : reports.get(rows != null ? rows[row] : row);
+            json.append(toJson(report));
+        }
+        json.append("]}");
+        sendJson(exchange, 200, json.toString());
+    }
+
+    private void updateStatus(HttpExchange exchange, ReportStore store, int id) throws IOException {
+        if (!checkStaff(exchange)) {
+            return;
+        }
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        String status = requireField(body, "status", MAX_FIELD_CHARS);
+        if (ReportCodec.indexOf(SafetyReport.STATUSES, status) < 0) {
+            throw new IllegalArgumentException("Unknown status: " + status);
+        }
+        SafetyReport report = store.findById(id);
+        if (report == null) {
+            sendError(exchange, 404, "No report " + id);
+            return;
+        }
+        store.changeStatus(report, status);
+        sendJson(exchange, 200, toJson(report));
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            if (!checkStaff(exchange)) {
+                return;
+            }
+            String school = parseQuery(exchange.getRequestURI()).get("school");
+            ReportStore store = school != null ? district.school(school) : null;
+            if (school != null && store == null) {
+                sendError(exchange, 404, "No such school");
+                return;
+            }
+            ReportAnalytics analytics = store != null ? store.getAnalytics() : district.rollup().analytics;
+            String json = "{\"total\":" + analytics.getTotal()
+                + ",\"highOrUrgent\":" + analytics.countAtLeast(Severity.HIGH)
+                + ",\"urgent\":" + analytics.countBySeverity(Severity.URGENT)
+                + ",\"resolved\":" + analytics.countByStatus(Status.RESOLVED)
+                + ",\"mostCommonCategory\":" + Json.quote(analytics.getMostCommonCategory()) + "}";
+            sendJson(exchange, 200, json);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTrends(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            String name = query.getOrDefault("window", TrendWindow.Window.WEEK.name());
+            TrendWindow.Window window = TrendWindow.Window.valueOf(name.toUpperCase());
+            String school = query.get("school");
+            ReportStore store = school != null ? district.school(school) : null;
+            if (school != null && store == null) {
+                sendError(exchange, 404, "No such school");
+                return;
+            }
+            TrendWindow trendWindow = store != null ? store.getTrendWindow() : district.rollup().trends;
+            StringBuilder json = new StringBuilder("{\"window\":").append(Json.quote(window.label)).append(",\"trends\":[");
+            List<TrendWindow.Trend> trends = trendWindow.getTrends(window, false, LocalDateTime.now());
+            for (int i = 0; i < trends.size(); i++) {
+                TrendWindow.Trend trend = trends.get(i);
+                json.append(i == 0 ? "" : ",")
+                    .append("{\"category\":").append(Json.quote(trend.category))
+                    .append(",\"count\":").append((long) trend.count)
+                    .append(",\"baseline\":").append((long) trend.baseline).append('}');
+            }
+            sendJson(exchange, 200, json.append("]}").toString());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "Unknown window");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleSchools(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder json = new StringBuilder("{\"schools\":[");
+            List<String> schools = district.schoolIds();
+            for (int i = 0; i < schools.size(); i++) {
+                json.append(i == 0 ? "" : ",").append(Json.quote(schools.get(i)));
+            }
+            sendJson(exchange, 200, json.append("]}").toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTriage(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            ReportStore store = "OPTIONS".equals(method) ? null : schoolStore(exchange);
+            if ("OPTIONS".equals(method)) {
+                sendEmpty(exchange, 204);
+            } else if (store == null) {
+                sendError(exchange, 404, "No such school");
+            } else if (path.equals("/api/triage") || path.equals("/api/triage/")) {
+                if ("GET".equals(method)) {
+                    listTriage(exchange, store);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else if (path.equals("/api/triage/claim")) {
+                if ("POST".equals(method)) {
+                    claimNextCase(exchange, store);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else if (path.matches("/api/triage/\\d+/release")) {
+                if ("POST".equals(method)) {
+                    int id = Integer.parseInt(path.split("/")[3]);
+                    releaseCase(exchange, store, id);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            sendError(exchange, 500, "Cannot read reports");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listTriage(HttpExchange exchange, ReportStore store) throws IOException {
+        if (!checkStaff(exchange)) {
+            return;
+        }
+        int limit = Math.min(MAX_PAGE_SIZE, Math.max(1, intParam(parseQuery(exchange.getRequestURI()), "limit",
+            DEFAULT_PAGE_SIZE)));
+        TriageQueue triage = store.getTriage();
+        LocalDateTime now = LocalDateTime.now();
+        int[] rows = triage.peek(limit, now);
+        List<SafetyReport> reports = store.freeze(); // After the peek, so it holds every row peeked
+        StringBuilder json = new StringBuilder();
+        json.append("{\"waiting\":").append(triage.size())
+            .append(",\"overdue\":").append(triage.overdueCount(now)).append(",\"reports\":[");
+        for (int i = 0; i < rows.length; i++) {
+            json.append(i == 0 ? "" : ",").append(toJson(reports.get(rows[i])));
+        }
+        sendJson(exchange, 200, json.append("]}").toString());
+    }
+
+    private void claimNextCase(HttpExchange exchange, ReportStore store) throws IOException {
+        if (!checkStaff(exchange)) {
+            return;
+        }
+        String counselor = requireField(Json.parseObject(readBody(exchange)), "counselor", MAX_FIELD_CHARS);
+        int row = store.getTriage().claim(counselor, LocalDateTime.now());
+        if (row < 0) {
+            sendEmpty(exchange, 204);
+            return;
+        }
+        sendJson(exchange, 200, toJson(store.getReports().get(row)));
+    }
+
+    private void releaseCase(HttpExchange exchange, ReportStore store, int id) throws IOException {
+        if (!checkStaff(exchange)) {
+            return;
+        }
+        String counselor = requireField(Json.parseObject(readBody(exchange)), "counselor", MAX_FIELD_CHARS);
+        int row = store.getReports().indexOfId(id);
+        if (row < 0) {
+            sendError(exchange, 404, "No report " + id);
+            return;
+        }
+        store.getTriage().release(row, counselor);
+        sendEmpty(exchange, 204);
+    }
+
+    private void handleSync(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            ReportStore store = "OPTIONS".equals(method) ? null : schoolStore(exchange);
+            if ("OPTIONS".equals(method)) {
+                sendEmpty(exchange, 204);
+            } else if (store == null) {
+                sendError(exchange, 404, "No such school");
+            } else if (path.equals("/api/sync/reports")) {
+                if ("POST".equals(method)) {
+                    syncReports(exchange, store);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else if (path.equals("/api/sync/changes")) {
+                if ("GET".equals(method)) {
+                    syncChanges(exchange, store);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            sendError(exchange, 500, "Cannot read reports");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Items that fail validation get an error of their own; the rest are filed together
+    private void syncReports(HttpExchange exchange, ReportStore store) throws IOException {
+        List<Map<String, String>> items = Json.parseArray(readSyncBody(exchange));
+        if (items.size() > MAX_SYNC_BATCH) {
+            throw new IllegalArgumentException("More than " + MAX_SYNC_BATCH + " reports in one batch");
+        }
+        String[] keys = new String[items.size()];
+        String[] errors = new String[items.size()];
+        List<String> validKeys = new ArrayList<>();
+        List<SafetyReport> valid = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, String> item = items.get(i);
+            keys[i] = item.get("key");
+            try {
+                if (keys[i] == null || !SyncKeys.KEY.matcher(keys[i]).matches()) {
+                    throw new IllegalArgumentException("Missing or malformed key");
+                }
+                valid.add(store.createReport(requireListed(item, "category", SafetyReport.CATEGORIES),
+                    requireListed(item, "location", SafetyReport.LOCATIONS),
+                    requireListed(item, "severity", SafetyReport.SEVERITIES),
+                    requireField(item, "description", MAX_DESCRIPTION_CHARS)));
+                validKeys.add(keys[i]);
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        }
+        int[] ids = store.submitBatch(validKeys, valid);
+
+        StringBuilder json = new StringBuilder("{\"cursor\":").append(Json.quote(store.getChanges().cursor()))
+            .append(",\"results\":[");
+        for (int i = 0, next = 0; i < items.size(); i++) {
+            json.append(i == 0 ? "{\"key\":" : ",{\"key\":").append(keys[i] != null ? Json.quote(keys[i]) : "null");
+            if (errors[i] != null) {
+                json.append(",\"error\":").append(Json.quote(errors[i])).append('}');
+            } else {
+                json.append(",\"id\":").append(ids[next++]).append('}');
+            }
+        }
+        sendJsonCompressible(exchange, 200, json.append("]}").toString());
+    }
+
+    private void syncChanges(HttpExchange exchange, ReportStore store) throws IOException {
+        if (!checkStaff(exchange)) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        int limit = Math.min(MAX_PAGE_SIZE, Math.max(1, intParam(query, "limit", MAX_PAGE_SIZE)));
+        ReportChanges changes = store.getChanges();
+        String since = query.get("since");
+        String known = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String current = changes.cursor();
+        if (known != null && known.equals("\"" + current + "\"")) {
+            exchange.getResponseHeaders().set("ETag", known);
+            sendEmpty(exchange, 304);
+            return;
+        }
+
+        ReportChanges.Delta delta = since != null ? changes.since(since, limit) : null;
+        // After the cursor and delta, so it holds every row they count
+        List<SafetyReport> reports = store.freeze();
+        int[] rows;
+        if (delta != null) {
+            rows = delta.rows;
+            current = delta.cursor;
+        } else {
+            // Taken before the list is read, so anything added meanwhile comes next time
+            int size = reports.size();
+            rows = new int[Math.min(limit, size)];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = size - rows.length + i;
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"reset\":").append(delta == null)
+            .append(",\"cursor\":").append(Json.quote(current))
+            .append(",\"more\":").append(delta != null && delta.more).append(",\"reports\":[");
+        for (int i = 0; i < rows.length; i++) {
+            json.append(i == 0 ? "" : ",").append(toJson(reports.get(rows[i])));
+        }
+        exchange.getResponseHeaders().set("ETag", "\"" + current + "\"");
+        sendJsonCompressible(exchange, 200, json.append("]}").toString());
+    }
+
+    // Streams run on their own threads so they never tie up a request handler; this
+    // only checks the request and hands the exchange over, leaving it open
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        String school = parseQuery(exchange.getRequestURI()).get("school");
+        boolean resumed = exchange.getRequestHeaders().containsKey("Last-Event-ID");
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendAndClose(exchange, 405, "Method not allowed");
+            return;
+        }
+        if (!isStaff(exchange, parseQuery(exchange.getRequestURI()).get("token"))) {
+            sendAndClose(exchange, 401, "Staff token required");
+            return;
+        }
+        if (school != null && district.school(school) == null) {
+            sendAndClose(exchange, 404, "No such school");
+            return;
+        }
+        if (!streamSlots.tryAcquire()) {
+            sendAndClose(exchange, 503, "Too many event streams");
+            return;
+        }
+        ReportEvents.Subscription subscription = district.getEvents().subscribe(EVENT_QUEUE_CAPACITY);
+        openStreams.add(subscription);
+        try {
+            streams.execute(() -> streamEvents(exchange, subscription, school, resumed));
+        } catch (RejectedExecutionException e) {
+            endStream(exchange, subscription); // Stopping
+        }
+    }
+
+    private void streamEvents(HttpExchange exchange, ReportEvents.Subscription subscription, String school,
+                              boolean resumed) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "text/event-stream; charset=utf-8");
+            headers.set("Cache-Control", "no-cache");
+            addCorsHeaders(headers);
+            exchange.sendResponseHeaders(200, 0);
+            StringBuilder chunk = new StringBuilder("retry: " + RETRY_MS + "\n\n");
+            if (resumed) {
+                chunk.append("event: resync\ndata: {}\n\n"); // Whatever happened while away is gone
+            }
+            while (!subscription.isClosed()) {
+                out.write(chunk.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                chunk.setLength(0);
+                ReportEvents.Batch batch = subscription.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+                if (batch.missed) {
+                    chunk.append("event: resync\ndata: {}\n\n");
+                }
+                for (ReportEvents.Event event : batch.events) {
+                    if (school == null || school.equals(event.school)) {
+                        chunk.append("id: ").append(event.sequence)
+                            .append(event.kind == ReportEvents.Kind.SUBMITTED ? "\nevent: submitted" : "\nevent: status")
+                            .append("\ndata: {\"school\":").append(Json.quote(event.school))
+                            .append(",\"report\":").append(toJson(event.report)).append("}\n\n");
+                    }
+                }
+                if (chunk.length() == 0) {
+                    chunk.append(": keepalive\n\n");
+                }
+            }
+        } catch (IOException e) {
+            // The client went away
+        } catch (InterruptedException e) {
+            // The server is stopping
+        } finally {
+            endStream(exchange, subscription);
+        }
+    }
+
+    private void endStream(HttpExchange exchange, ReportEvents.Subscription subscription) {
+        subscription.close();
+        openStreams.remove(subscription);
+        streamSlots.release();
+        exchange.close();
+    }
+
+    private void handleClientPage(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Path page = Paths.get(CLIENT_PAGE);
+            if (!(path.equals("/") || path.equals("/" + CLIENT_PAGE)) || !Files.exists(page)) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            byte[] html = Files.readAllBytes(page);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, html.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(html);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Sends 401 unless the request carries the staff token
+    private boolean checkStaff(HttpExchange exchange) throws IOException {
+        if (isStaff(exchange, null)) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer realm=\"ally\"");
+        sendError(exchange, 401, "Staff token required");
+        return false;
+    }
+
+    // The token from the Authorization header, or else the given one from the query
+    private boolean isStaff(HttpExchange exchange, String queryToken) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = header != null && header.regionMatches(true, 0, "Bearer ", 0, 7)
+            ? header.substring(7).trim() : queryToken;
+        // Compared in constant time so the token can't be guessed a character at a time
+        return token != null && MessageDigest.isEqual(staffToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A random token for a server started without one
+    static String newStaffToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    static String toJson(SafetyReport report) {
+        return "{\"id\":" + report.getId()
+            + ",\"category\":" + Json.quote(report.getCategory())
+            + ",\"location\":" + Json.quote(report.getLocation())
+            + ",\"severity\":" + Json.quote(report.getSeverity())
+            + ",\"status\":" + Json.quote(report.getStatus())
+            + ",\"timestamp\":" + Json.quote(report.getTimestamp().toString())
+            + ",\"description\":" + Json.quote(report.getDescription()) + "}";
+    }
+
+    // Only the UI's own choices: each new value would take a dictionary code for good
+    private static String requireListed(Map<String, String> body, String name, String[] labels) {
+        String value = requireField(body, name, MAX_FIELD_CHARS);
+        if (ReportCodec.indexOf(labels, value) < 0) {
+            throw new IllegalArgumentException("Unknown " + name + ": " + value);
+        }
+        return value;
+    }
+
+    private static String requireField(Map<String, String> body, String name, int maxLength) {
+        String value = body.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        value = value.trim();
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(name + " is longer than " + maxLength + " characters");
+        }
+        return value;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Like readBody, but larger and gunzipped if the client says so; the limit is on
+    // the unzipped size, so a small zip can't expand without bound
+    private static String readSyncBody(HttpExchange exchange) throws IOException {
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean gzipped = encoding != null && encoding.trim().equalsIgnoreCase("gzip");
+        if (encoding != null && !gzipped && !encoding.trim().equalsIgnoreCase("identity")) {
+            throw new IllegalArgumentException("Unsupported Content-Encoding: " + encoding);
+        }
+        try (InputStream in = gzipped ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_SYNC_BODY_BYTES + 1);
+            if (body.length > MAX_SYNC_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        } catch (ZipException | EOFException e) {
+            throw new IllegalArgumentException("Request body is not valid gzip");
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        addCorsHeaders(headers);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Gzipped when the client accepts it and the reply is big enough to gain from it
+    private static void sendJsonCompressible(HttpExchange exchange, int status, String json) throws IOException {
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        if (accepted == null || !accepted.contains("gzip") || body.length < MIN_GZIP_BYTES) {
+            sendJson(exchange, status, json);
+            return;
+        }
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(zipped)) {
+            gzip.write(body);
+        }
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Content-Encoding", "gzip");
+        headers.set("Vary", "Accept-Encoding");
+        addCorsHeaders(headers);
+        exchange.sendResponseHeaders(status, zipped.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            zipped.writeTo(out);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, "{\"error\":" + Json.quote(message) + "}");
+    }
+
+    private static void sendAndClose(HttpExchange exchange, int status, String message) throws IOException {
+        try {
+            sendError(exchange, status, message);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // The request is closed first: the JDK server otherwise sometimes drops the
+    // connection after a reply with no body, and the client's next call on it fails
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.getRequestBody().close();
+        addCorsHeaders(exchange.getResponseHeaders());
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    // The web client may be opened from a file or another host, so allow cross-origin calls
+    private static void addCorsHeaders(Headers headers) {
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Allow-Methods", "GET, POST, PUT, OPTIONS");
+        headers.set("Access-Control-Allow-Headers", "Content-Type, Content-Encoding, If-None-Match, Authorization");
+        headers.set("Access-Control-Expose-Headers", "ETag");
+    }
+}
@@ -0,0 +1,629 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+// The reports, everything derived from them, and the files they live in. Shared by
+// the desktop UI and the headless server; every change goes through here so the
+// list, the running counts and the log never disagree.
+//
+// There is no store-wide lock: the list, the counts and the log queue each handle
+// concurrent callers themselves, and a status change locks only its own report.
+//
+// Resolved reports older than ReportArchive.archiveAfterDays() move to the archive
+// when the store opens, so the list, the indexes and the snapshot hold only recent
+// and open reports. Rows are what the indexes and the table know reports by, so
+// they only change there, before anything has looked at them. The counts still
+// cover every report, archived or not.
+class ReportStore implements AutoCloseable {
+    static final String DATA_FILE = "safety_reports.dat";
+    static final String LOG_FILE = "safety_reports.log";
+    static final String ID_FILE = "safety_reports.ids";
+    static final String KEYS_FILE = "safety_reports.keys";
+    private static final int COMPACT_AFTER_RECORDS = 1000; // Snapshot once the log holds this many records
+
+    private final Path dataPath;
+    private final Path logPath;
+    private final Path idPath;
+    private ReportList reports;
+    private TrendWindow trendWindow;
+    private SpikeDetector spikes;
+    private TriageQueue triage;
+    private ReportChanges changes;
+    private ReportAnalytics analytics;
+    private DescriptionIndex searchIndex;
+    private DuplicateDetector duplicates;
+    private ReportBitmapIndex bitmapIndex;
+    private ReportLog reportLog;
+    private BackgroundExecutor background;
+    private final SnapshotGenerations snapshots;
+    private final ReportArchive archive;
+    private final ReportIdAllocator ids;
+    private final SyncKeys syncKeys;
+    private final String metricsPrefix; // Before this store's gauge names, to tell shards apart
+    private boolean snapshotNeedsRewrite; // Older format, or recovered from an older generation
+    private volatile ReportEvents events; // Told of each submit and status change, if set
+    private volatile String school;
+
+    // A store numbering its reports in the default ID space
+    ReportStore(Path dataPath, Path logPath, Path idPath) {
+        this(dataPath, logPath, idPath, SafetyReport.ids(), "");
+    }
+
+    ReportStore(Path dataPath, Path logPath, Path idPath, ReportIdAllocator ids, String metricsPrefix) {
+        this.dataPath = dataPath;
+        this.logPath = logPath;
+        this.idPath = idPath;
+        this.snapshots = new SnapshotGenerations(dataPath);
+        this.archive = new ReportArchive(dataPath.resolveSibling(ReportArchive.DIRECTORY));
+        this.syncKeys = new SyncKeys(dataPath.resolveSibling(KEYS_FILE));
+        this.ids = ids;
+        this.metricsPrefix = metricsPrefix;
+    }
+
+    // Loads the snapshot, replays the log and starts background persistence.
+    // Background results are handed to callbacks (the EDT for the desktop app).
+    public void open(Executor callbacks, IntConsumer pendingListener) {
+        load();
+        if (archiveOldReports()) {
+            reloadAfterArchiving();
+        }
+        ids.persistTo(idPath);
+        try {
+            syncKeys.load();
+        } catch (IOException e) {
+            Metrics.LOAD_ERRORS.increment();
+            Metrics.problem("Cannot read sync keys beside " + dataPath + "; retried uploads may be filed twice: "
+                + e.getMessage());
+        }
+        try {
+            reportLog = new ReportLog(logPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open report log " + logPath, e);
+        }
+        background = new BackgroundExecutor(reportLog, callbacks, pendingListener);
+        // Reports already on disk are indexed in the background; new ones as they arrive
+        DescriptionIndex index = new DescriptionIndex(reports.size());
+        searchIndex = index;
+        background.compute(() -> {
+            index.buildBase(reports);
+            return null;
+        }, built -> { }, e -> Metrics.problem("Error indexing report descriptions: " + e.getMessage()));
+        DuplicateDetector detector = new DuplicateDetector(reports.size());
+        duplicates = detector;
+        background.compute(() -> {
+            detector.buildBase(reports);
+            return null;
+        }, built -> { }, e -> Metrics.problem("Error grouping similar reports: " + e.getMessage()));
+        if (snapshotNeedsRewrite) {
+            saveData(); // Migrate to the columnar format, or replace a damaged snapshot, right away
+        }
+        Metrics.gauge(metricsPrefix + "reports", () -> reports.size());
+        Metrics.gauge(metricsPrefix + "file.snapshotBytes", () -> fileSize(dataPath));
+        Metrics.gauge(metricsPrefix + "file.logBytes", () -> fileSize(logPath));
+        Metrics.gauge(metricsPrefix + "archive.reports", archive::size);
+        Metrics.gauge(metricsPrefix + "duplicates.clusters", detector::clusterCount);
+        Metrics.gauge(metricsPrefix + "triage.waiting", () -> triage.size());
+        Metrics.gauge(metricsPrefix + "triage.claimed", () -> triage.claimedCount());
+    }
+
+    // Publishes this store's new reports and status changes, as the given school's
+    public void publishTo(ReportEvents events, String school) {
+        this.school = school;
+        this.events = events;
+    }
+
+    public ReportList getReports() { return reports; }
+    public ReportAnalytics getAnalytics() { return analytics; }
+    public TrendWindow getTrendWindow() { return trendWindow; }
+    public SpikeDetector getSpikes() { return spikes; }
+    public TriageQueue getTriage() { return triage; }
+    public ReportChanges getChanges() { return changes; }
+    public BackgroundExecutor getBackground() { return background; }
+    public DescriptionIndex getSearchIndex() { return searchIndex; }
+    public DuplicateDetector getDuplicates() { return duplicates; }
+    public ReportBitmapIndex getBitmapIndex() { return bitmapIndex; }
+
+    // Rows of the report list matching the query, in list order
+    public int[] query(ReportQuery query) {
+        return query.rows(bitmapIndex);
+    }
+
+    public int count(ReportQuery query) {
+        return query.count(bitmapIndex);
+    }
+
+    // Archived reports made from first to last (null for no limit) that pass filter.
+    // Reads every archive segment spanning those days, so run it off the EDT.
+    public List<SafetyReport> findArchived(LocalDate first, LocalDate last, Predicate<SafetyReport> filter)
+            throws IOException {
+        long start = Metrics.ARCHIVE_QUERY.start();
+        List<SafetyReport> found = archive.find(first, last, filter);
+        Metrics.ARCHIVE_QUERY.stop(start);
+        return found;
+    }
+
+    // Archived reports are read-only; a status change needs the report in the list
+    public boolean isArchived(int id) {
+        return archive.contains(id);
+    }
+
+    public int getArchivedCount() {
+        return archive.size();
+    }
+
+    // A new report numbered in this store's ID space, ready to submit
+    public SafetyReport createReport(String category, String location, String severity, String description) {
+        return new SafetyReport(ids, category, location, severity, description);
+    }
+
+    // Adds and logs a new report, returning its index in the list
+    public int submit(SafetyReport report) {
+        long start = Metrics.SUBMIT.start();
+        int index = addReport(report);
+        appendToLog(log -> log.appendCreated(report));
+        ReportEvents bus = events;
+        if (bus != null) {
+            bus.publish(ReportEvents.Kind.SUBMITTED, school, report, index, report.getStatus());
+        }
+        Metrics.SUBMIT.stop(start);
+        return index;
+    }
+
+    // Adds and logs reports uploaded together by an offline client, each with its
+    // client's idempotency key, and returns their IDs in order. A key seen before
+    // gets the ID of the report first sent with it, so a retried batch files nothing
+    // twice. The whole batch is one log write with one fsync; its keys are written
+    // after that, so a crash in between can file a retry twice but never lose one.
+    public int[] submitBatch(List<String> keys, List<SafetyReport> batch) {
+        long start = Metrics.SYNC_BATCH.start();
+        int[] reportIds = new int[batch.size()];
+        List<SafetyReport> added = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        List<String> newKeys = new ArrayList<>();
+        synchronized (syncKeys) {
+            for (int i = 0; i < batch.size(); i++) {
+                Integer existing = syncKeys.idFor(keys.get(i));
+                if (existing != null) {
+                    Metrics.SYNC_DUPLICATES.increment();
+                    reportIds[i] = existing;
+                    continue;
+                }
+                SafetyReport report = batch.get(i);
+                rows.add(addReport(report));
+                added.add(report);
+                newKeys.add(keys.get(i));
+                syncKeys.put(keys.get(i), report.getId());
+                reportIds[i] = report.getId();
+            }
+        }
+        if (!added.isEmpty()) {
+            int[] addedIds = added.stream().mapToInt(SafetyReport::getId).toArray();
+            appendToLog(log -> {
+                for (SafetyReport report : added) {
+                    log.appendCreated(report);
+                }
+                log.sync();
+                syncKeys.write(newKeys, addedIds);
+            }, added.size());
+            ReportEvents bus = events;
+            if (bus != null) {
+                for (int i = 0; i < added.size(); i++) {
+                    bus.publish(ReportEvents.Kind.SUBMITTED, school, added.get(i), rows.get(i),
+                        added.get(i).getStatus());
+                }
+            }
+        }
+        Metrics.SYNC_BATCH.stop(start);
+        return reportIds;
+    }
+
+    // Locked on the report so two changes to it count and log in the same order.
+    // Throws IllegalStateException if the report's current status can't move to this one.
+    public void changeStatus(SafetyReport report, String status) {
+        Status next = Status.fromLabel(status);
+        if (next == null) {
+            throw new IllegalArgumentException("Unknown status: " + status);
+        }
+        long start = Metrics.STATUS_CHANGE.start();
+        synchronized (report) {
+            Status current = Status.fromLabel(report.getStatus());
+            // Reports with a status outside the enum may move to any but New
+            if (current != null ? !current.canMoveTo(next) : next == Status.NEW) {
+                throw new IllegalStateException("Report " + report.getId() + " cannot go from "
+                    + report.getStatus() + " to " + status);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            applyStatus(report, status, now);
+            appendToLog(log -> log.appendStatusChanged(report.getId(), status, now));
+            if (current == Status.NEW && report.getSeverityCode() == Severity.URGENT.ordinal()) {
+                Metrics.URGENT_FIRST_REVIEW.record(Duration.between(report.getTimestamp(), now).toNanos() / 1000);
+            }
+            ReportEvents bus = events;
+            if (bus != null && bus.hasSubscribers()) {
+                bus.publish(ReportEvents.Kind.STATUS_CHANGED, school, report, reports.indexOfId(report.getId()), status);
+            }
+        }
+        Metrics.STATUS_CHANGE.stop(start);
+    }
+
+    // Applies the status to each report that can move to it, skipping the rest;
+    // returns how many moved. For a cluster of similar reports handled together.
+    public int changeStatus(List<SafetyReport> batch, String status) {
+        int changed = 0;
+        for (SafetyReport report : batch) {
+            try {
+                changeStatus(report, status);
+                changed++;
+            } catch (IllegalStateException e) {
+                // Already further along, or resolved
+            }
+        }
+        return changed;
+    }
+
+    // The report and those the duplicate detector grouped with it, in the order
+    // they came in; just the report if it has none or is archived
+    public List<SafetyReport> similarReports(SafetyReport report) {
+        int row = reports.indexOfId(report.getId());
+        if (row < 0) {
+            return List.of(report);
+        }
+        List<SafetyReport> similar = new ArrayList<>();
+        for (int member : duplicates.members(row)) {
+            similar.add(reports.get(member));
+        }
+        return similar;
+    }
+
+    public SafetyReport findById(int id) {
+        return reports.findById(id);
+    }
+
+    public List<SafetyReport> freeze() {
+        return reports.freeze();
+    }
+
+    // Adds a report to the list and to every running count, returning its index;
+    // logging is up to the caller
+    private int addReport(SafetyReport report) {
+        int index = reports.append(report);
+        updateTrendData(report);
+        analytics.reportAdded(report.getCategoryCode(), report.getLocationCode(), report.getSeverityCode(),
+            report.getStatusCode());
+        bitmapIndex.reportAdded(index, report.getCategoryCode(), report.getLocationCode(), report.getSeverityCode(),
+            report.getStatusCode(), report.getTimestamp());
+        triage.reportAdded(index, report.getSeverityCode(), report.getStatusCode(), report.getTimestamp(),
+            report.getStatusTime());
+        changes.record(index);
+        if (searchIndex != null) { // Replayed reports are indexed with the rest of the base
+            searchIndex.add(index, report.getDescription());
+            duplicates.add(index, report);
+        }
+        return index;
+    }
+
+    // at is when the change was made, kept with the report through the log and snapshots
+    private void applyStatus(SafetyReport report, String status, LocalDateTime at) {
+        int oldStatus = report.getStatusCode();
+        report.setStatus(status, at);
+        analytics.statusChanged(report.getCategoryCode(), report.getLocationCode(), report.getSeverityCode(),
+            oldStatus, report.getStatusCode());
+        int row = reports.indexOfId(report.getId());
+        bitmapIndex.statusChanged(row, oldStatus, report.getStatusCode());
+        triage.statusChanged(row, report.getSeverityCode(), oldStatus, report.getStatusCode(), report.getTimestamp(), at);
+        changes.record(row);
+    }
+
+    private void updateTrendData(SafetyReport report) {
+        trendWindow.record(report.getCategory(), report.getTimestamp());
+        spikes.record(report.getCategoryCode(), report.getLocationCode(), report.getTimestamp());
+    }
+
+    // Queues a log write on the persistence thread, compacting once the log is long enough
+    private void appendToLog(BackgroundExecutor.LogWrite write) {
+        appendToLog(write, 1);
+    }
+
+    private void appendToLog(BackgroundExecutor.LogWrite write, int records) {
+        background.submitLogWrite(write, records);
+        if (background.getRecordsSinceCompaction() >= COMPACT_AFTER_RECORDS) {
+            compactIfDue();
+        }
+    }
+
+    // Checked again under the lock so threads crossing the threshold together compact once
+    private synchronized void compactIfDue() {
+        if (background.getRecordsSinceCompaction() >= COMPACT_AFTER_RECORDS) {
+            saveData();
+        }
+    }
+
+    // Compacts the log into a full snapshot in the background; only the log is written per report
+    private synchronized void saveData() {
+        background.submitCompaction(snapshots, reports::freeze, reports::rebase);
+    }
+
+    // Reads the snapshot and replays the log into the list and every running count.
+    // open() starts with this; on its own it writes nothing and starts no threads of
+    // its own, except to move a damaged snapshot aside (see loadNewestSnapshot).
+    public void load() {
+        long start = Metrics.LOAD.start();
+        try {
+            archive.open(problem -> {
+                Metrics.LOAD_ERRORS.increment();
+                Metrics.problem(problem);
+            });
+        } catch (IOException e) {
+            Metrics.LOAD_ERRORS.increment();
+            Metrics.problem("Cannot read the report archive beside " + dataPath + ": " + e.getMessage());
+        }
+        reports = new ReportList();
+        trendWindow = new TrendWindow();
+        spikes = new SpikeDetector(LocalDateTime.now());
+        triage = new TriageQueue();
+        changes = new ReportChanges();
+        analytics = new ReportAnalytics();
+        bitmapIndex = new ReportBitmapIndex();
+        if (hasOlderFormatSnapshot()) {
+            loadOlderFormatSnapshot();
+        } else {
+            loadNewestSnapshot();
+        }
+
+        // Trend and analytics counts are derived from the reports themselves, not stored
+        for (int i = 0; i < reports.size(); i++) {
+            int category = reports.codeAt(ColumnarReportStore.CATEGORY, i);
+            int location = reports.codeAt(ColumnarReportStore.LOCATION, i);
+            int severity = reports.codeAt(ColumnarReportStore.SEVERITY, i);
+            int status = reports.codeAt(ColumnarReportStore.STATUS, i);
+            LocalDateTime timestamp = reports.timestampAt(i);
+            trendWindow.record(FieldDictionary.CATEGORY.value(category), timestamp);
+            spikes.record(category, location, timestamp);
+            analytics.reportAdded(category, location, severity, status);
+            bitmapIndex.reportAdded(i, category, location, severity, status, timestamp);
+            triage.reportAdded(i, severity, status, timestamp, reports.statusTimeAt(i));
+        }
+        archive.addCountsTo(analytics);
+        ids.reserve(reports.getMaxId());
+
+        // Replay anything logged since the snapshot was taken
+        try {
+            ReportLog.replay(logPath, new ReportLog.Handler() {
+                @Override
+                public void reportCreated(SafetyReport report) {
+                    // Already in the snapshot if we crashed between snapshot and log reset,
+                    // or archived if we crashed between archiving and the log reset after it
+                    if (reports.findById(report.getId()) == null && !archive.contains(report.getId())) {
+                        addReport(report);
+                    }
+                    ids.reserve(report.getId());
+                }
+
+                @Override
+                public void statusChanged(int reportId, String status, LocalDateTime at) {
+                    SafetyReport report = reports.findById(reportId);
+                    if (report != null) {
+                        // Older records have no time; the report's own keeps every reload alike
+                        applyStatus(report, status, at != null ? at : report.getTimestamp());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            Metrics.LOAD_ERRORS.increment();
+            Metrics.problem("Error replaying report log " + logPath + ": " + e.getMessage());
+        }
+        Metrics.LOAD.stop(start);
+    }
+
+    // Writes resolved reports made before the cutoff to the archive, then rewrites
+    // the snapshot without them and empties the log, which the snapshot now covers.
+    // Reports already archived (left behind by a crash partway through) are only
+    // dropped. Returns whether the snapshot was rewritten; on failure nothing is
+    // lost, as the old snapshot and log still hold every report.
+    private boolean archiveOldReports() {
+        int days = ReportArchive.archiveAfterDays();
+        if (days <= 0) {
+            return false;
+        }
+        LocalDateTime cutoff = LocalDate.now().minusDays(days).atStartOfDay();
+        int resolved = FieldDictionary.STATUS.find(Status.RESOLVED.label);
+        List<SafetyReport> all = reports.freeze();
+        List<SafetyReport> toArchive = new ArrayList<>();
+        int[] keep = new int[all.size()];
+        int kept = 0;
+        boolean alreadyArchived = false;
+        for (int i = 0; i < all.size(); i++) {
+            if (reports.codeAt(ColumnarReportStore.STATUS, i) == resolved && reports.timestampAt(i).isBefore(cutoff)) {
+                SafetyReport report = all.get(i);
+                if (archive.contains(report.getId())) {
+                    alreadyArchived = true;
+                } else {
+                    toArchive.add(report);
+                }
+            } else {
+                keep[kept++] = i;
+            }
+        }
+        if (toArchive.size() < ReportArchive.MIN_REPORTS_TO_ARCHIVE && !alreadyArchived) {
+            return false;
+        }
+
+        long start = Metrics.ARCHIVE.start();
+        int hotCount = kept;
+        try {
+            archive.write(toArchive);
+            snapshots.save(new AbstractList<SafetyReport>() {
+                @Override
+                public SafetyReport get(int index) {
+                    return all.get(keep[index]);
+                }
+
+                @Override
+                public int size() {
+                    return hotCount;
+                }
+            });
+            if (Files.exists(logPath)) {
+                try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                    log.truncate(0);
+                    log.force(true);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error archiving " + toArchive.size() + " resolved reports beside " + dataPath + ": "
+                + e.getMessage());
+            return false;
+        }
+        Metrics.checkSlowWrite("archiving " + toArchive.size() + " reports", Metrics.ARCHIVE.stop(start));
+        Metrics.ARCHIVED_REPORTS.add(toArchive.size());
+        return true;
+    }
+
+    // Starts over from the rewritten snapshot, so every row and count matches it
+    private void reloadAfterArchiving() {
+        try {
+            reports.close();
+        } catch (IOException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error closing snapshot " + dataPath + ": " + e.getMessage());
+        }
+        snapshotNeedsRewrite = false;
+        load();
+    }
+
+    // A snapshot from before the columnar format, which has no checksum or generations
+    private boolean hasOlderFormatSnapshot() {
+        try (InputStream in = Files.newInputStream(dataPath)) {
+            return !ColumnarReportStore.isColumnarSnapshot(in.readNBytes(5));
+        } catch (NoSuchFileException e) {
+            return false; // First run, or only older generations survived
+        } catch (IOException e) {
+            return false; // Left to the checksum to judge
+        }
+    }
+
+    // Older formats are read whole and rewritten as a columnar snapshot
+    private void loadOlderFormatSnapshot() {
+        try {
+            byte[] snapshot = Files.readAllBytes(dataPath);
+            reports.addAll(isLegacySnapshot(snapshot)
+                ? loadLegacySnapshot(snapshot)
+                : ReportCodec.decodeSnapshot(ByteBuffer.wrap(snapshot)));
+            snapshotNeedsRewrite = true;
+        } catch (IOException | ClassNotFoundException e) {
+            setAsideCorrupt(e);
+        }
+    }
+
+    // Opens the newest snapshot generation that passes its checksum. Damaged ones
+    // are moved aside and reported; falling back to an older one is reported too,
+    // and the current snapshot is rewritten from it straight away.
+    private void loadNewestSnapshot() {
+        SnapshotGenerations.Loaded loaded;
+        long start = Metrics.SNAPSHOT_VERIFY.start();
+        try {
+            loaded = snapshots.openNewest();
+        } catch (IOException e) {
+            Metrics.LOAD_ERRORS.increment();
+            Metrics.problem("Cannot read snapshots beside " + dataPath + ": " + e.getMessage());
+            throw new UncheckedIOException("Cannot read snapshots beside " + dataPath, e);
+        }
+        Metrics.SNAPSHOT_VERIFY.stop(start);
+        for (int i = 0; i < loaded.damaged.size(); i++) {
+            Metrics.LOAD_ERRORS.increment();
+            Metrics.problem("Snapshot " + loaded.damaged.get(i) + " is damaged (checksum or structure); moved it to "
+                + loaded.movedTo.get(i));
+        }
+        if (loaded.snapshot != null) {
+            reports = new ReportList(loaded.snapshot);
+            if (loaded.generation > 0) {
+                Metrics.problem("Recovered " + loaded.snapshot.size() + " reports from the older snapshot "
+                    + loaded.path + "; reports saved only in newer snapshots are missing");
+                snapshotNeedsRewrite = true;
+            }
+            if (!loaded.snapshot.hasIdOrder()) {
+                snapshotNeedsRewrite = true; // Written before the ID index; lookups would scan it
+            }
+        } else if (!loaded.damaged.isEmpty()) {
+            Metrics.problem("No intact snapshot left beside " + dataPath + "; starting without the reports in them");
+        }
+    }
+
+    // Starts empty without the unreadable snapshot, after moving it where the next
+    // compaction can't overwrite it. If it can't be moved, nothing is started at all.
+    private void setAsideCorrupt(Exception cause) {
+        Metrics.LOAD_ERRORS.increment();
+        Path aside;
+        try {
+            aside = SnapshotGenerations.setAside(dataPath);
+        } catch (UncheckedIOException e) {
+            Metrics.problem("Cannot read " + dataPath + " (" + cause.getMessage() + ") or move it aside: "
+                + e.getCause().getMessage());
+            throw e;
+        }
+        Metrics.problem("Cannot read " + dataPath + " (" + cause.getMessage() + "); moved it to " + aside
+            + " and started without the reports in it");
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0; // Not written yet
+        }
+    }
+
+    private static boolean isLegacySnapshot(byte[] snapshot) {
+        return snapshot.length >= 2
+            && ((snapshot[0] & 0xFF) << 8 | (snapshot[1] & 0xFF)) == ReportCodec.JAVA_SERIALIZATION_MAGIC;
+    }
+
+    // Reads a snapshot written by Java serialization before ReportCodec existed
+    @SuppressWarnings("unchecked")
+    private static List<SafetyReport> loadLegacySnapshot(byte[] snapshot) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(snapshot))) {
+            List<SafetyReport> legacy = (List<SafetyReport>) ois.readObject();
+            return new ArrayList<>(legacy);
+        }
+    }
+
+    // Writes everything still queued and closes the log and the snapshot
+    @Override
+    public void close() {
+        if (background != null) {
+            background.close();
+        }
+        try {
+            if (reports != null) {
+                reports.close();
+            }
+        } catch (IOException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error closing snapshot " + dataPath + ": " + e.getMessage());
+        }
+        try {
+            ids.close();
+        } catch (IOException e) {
+            Metrics.SAVE_ERRORS.increment();
+            Metrics.problem("Error closing ID high-water mark beside " + dataPath + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+// Review Reports table backed directly by the report list. Cells are read and
+// formatted only when the table paints them, so the cost of showing the tab does
+// not grow with the archive; callers fire row-level events as reports change.
+// It can also show just a chosen set of rows, such as search results, in the
+// order given, followed by matching reports read back from the archive.
+//
+// The row count is the model's own, moved on only by reportAdded() and reload(),
+// so reports appended from other threads appear when the table is told of them.
+//
+// Grouped, only the first of each cluster of similar reports (DuplicateDetector)
+// among the rows otherwise shown is listed, with the cluster's size beside it.
+class ReportTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
+    private static final String[] COLUMN_NAMES = {"Date/Time", "Category", "Location", "Severity", "Status", "Similar"};
+
+    private final transient ReportList reports;
+    private final transient DuplicateDetector duplicates;
+    private int[] chosenRows; // Rows picked by showOnly(), or null for all of them
+    private int[] shownRows;  // Rows of the report list being shown, or null for all of them
+    private boolean grouped;
+    private transient List<SafetyReport> archived = List.of(); // Shown after shownRows
+    private int size;        // Rows of the report list the table knows of
+
+    ReportTableModel(ReportList reports, DuplicateDetector duplicates) {
+        this.reports = reports;
+        this.duplicates = duplicates;
+        this.size = reports.size();
+    }
+
+    @Override
+    public int getRowCount() {
+        return shownRows != null ? shownRows.length + archived.size() : size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int tableRow, int column) {
+        if (isArchivedRow(tableRow)) {
+            SafetyReport report = getReport(tableRow);
+            switch (column) {
+                case 0: return report.getTimestamp().format(TIME_FORMAT);
+                case 1: return report.getCategory();
+                case 2: return report.getLocation();
+                case 3: return report.getSeverity();
+                case 4: return report.getStatus() + " (archived)";
+                case 5: return "";
+                default: throw new IndexOutOfBoundsException("column " + column);
+            }
+        }
+        int row = toReportRow(tableRow);
+        switch (column) {
+            case 0: return reports.timestampAt(row).format(TIME_FORMAT);
+            case 1: return reports.categoryAt(row);
+            case 2: return reports.locationAt(row);
+            case 3: return reports.severityAt(row);
+            case 4: return reports.statusAt(row);
+            case 5: return similarText(row);
+            default: throw new IndexOutOfBoundsException("column " + column);
+        }
+    }
+
+    public SafetyReport getReport(int tableRow) {
+        if (isArchivedRow(tableRow)) {
+            return archived.get(tableRow - shownRows.length);
+        }
+        return reports.get(toReportRow(tableRow));
+    }
+
+    private String similarText(int row) {
+        int size = duplicates.clusterSize(row);
+        return size > 1 ? size + " reports" : "";
+    }
+
+    boolean isGrouped() {
+        return grouped;
+    }
+
+    public void setGrouped(boolean grouped) {
+        if (this.grouped != grouped) {
+            this.grouped = grouped;
+            refresh();
+        }
+    }
+
+    private boolean isArchivedRow(int tableRow) {
+        return shownRows != null && tableRow >= shownRows.length;
+    }
+
+    private int toReportRow(int tableRow) {
+        return shownRows != null ? shownRows[tableRow] : tableRow;
+    }
+
+    public void showOnly(int[] rows) {
+        showOnly(rows, List.of());
+    }
+
+    public void showOnly(int[] rows, List<SafetyReport> archivedReports) {
+        chosenRows = rows;
+        archived = archivedReports;
+        refresh();
+    }
+
+    public void showAll() {
+        if (chosenRows != null || size != reports.size()) {
+            chosenRows = null;
+            archived = List.of();
+            size = reports.size();
+            refresh();
+        }
+    }
+
+    // Catches up with every change to the list, after some went unreported
+    public void reload() {
+        size = reports.size();
+        refresh();
+    }
+
+    private void refresh() {
+        if (!grouped) {
+            shownRows = chosenRows;
+        } else if (chosenRows != null) {
+            shownRows = duplicates.firstOfEachCluster(chosenRows);
+        } else {
+            int[] all = new int[size];
+            for (int row = 0; row < size; row++) {
+                all[row] = row;
+            }
+            shownRows = duplicates.firstOfEachCluster(all);
+        }
+        fireTableDataChanged();
+    }
+
+    // row is the report's index in the list; reports added out of order, or twice,
+    // are covered by the first call that reaches past the known rows
+    public void reportAdded(int row) {
+        if (row < size) {
+            return;
+        }
+        int first = size;
+        size = row + 1;
+        if (chosenRows == null && !grouped) {
+            fireTableRowsInserted(first, row);
+        }
+        // A report joining a cluster changes the count shown for it
+        for (int added = first; added <= row; added++) {
+            int clusterFirst = duplicates.clusterOf(added);
+            if (clusterFirst != added) {
+                reportChanged(clusterFirst);
+            } else if (chosenRows == null && grouped) {
+                shownRows = Arrays.copyOf(shownRows, shownRows.length + 1);
+                shownRows[shownRows.length - 1] = added;
+                fireTableRowsInserted(shownRows.length - 1, shownRows.length - 1);
+            }
+        }
+    }
+
+    // row is the report's index in the list, wherever the table shows it; grouped,
+    // the row standing for its cluster is repainted instead
+    public void reportChanged(int row) {
+        if (shownRows == null) {
+            if (row < size) {
+                fireTableRowsUpdated(row, row);
+            }
+            return;
+        }
+        int cluster = grouped ? duplicates.clusterOf(row) : -1;
+        for (int i = 0; i < shownRows.length; i++) {
+            if (shownRows[i] == row || (grouped && duplicates.clusterOf(shownRows[i]) == cluster)) {
+                fireTableRowsUpdated(i, i);
+            }
+        }
+    }
+}
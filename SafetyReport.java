@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Safety Report Data Class
+class SafetyReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // Choices offered in the UI, in the field enums' order. ReportCodec stores each
+    // value as its index here.
+    static final String[] CATEGORIES = FieldDictionary.CATEGORY.listed();
+    static final String[] LOCATIONS = FieldDictionary.LOCATION.listed();
+    static final String[] SEVERITIES = FieldDictionary.SEVERITY.listed();
+    static final String[] STATUSES = FieldDictionary.STATUS.listed();
+    private static final ReportIdAllocator IDS = new ReportIdAllocator();
+    
+    // Java serialization still reads and writes the original String fields, so
+    // snapshots saved before ReportCodec existed load unchanged
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("category", String.class),
+        new ObjectStreamField("location", String.class),
+        new ObjectStreamField("severity", String.class),
+        new ObjectStreamField("description", String.class),
+        new ObjectStreamField("timestamp", LocalDateTime.class),
+        new ObjectStreamField("status", String.class)
+    };
+    
+    private int id;
+    // FieldDictionary codes
+    private byte category;
+    private byte location;
+    private byte severity;
+    private volatile byte status;
+    private volatile String description;
+    private LocalDateTime timestamp;
+    private volatile LocalDateTime statusTime; // When the status last changed; null if it never has
+    
+    // Set when the description is still on disk in a snapshot rather than in memory
+    private transient ColumnarReportStore descriptionStore;
+    private transient int descriptionRow;
+    
+    // A new report numbered in the default ID space; a school's store numbers its own
+    // through ReportStore.createReport
+    public SafetyReport(String category, String location, String severity, String description) {
+        this(IDS, category, location, severity, description);
+    }
+    
+    SafetyReport(ReportIdAllocator ids, String category, String location, String severity, String description) {
+        this.id = ids.allocate();
+        this.category = (byte) FieldDictionary.CATEGORY.code(category);
+        this.location = (byte) FieldDictionary.LOCATION.code(location);
+        this.severity = (byte) FieldDictionary.SEVERITY.code(severity);
+        this.description = description;
+        this.timestamp = LocalDateTime.now();
+        this.status = (byte) Status.NEW.ordinal();
+    }
+    
+    // Restores a previously saved report without allocating a new ID
+    SafetyReport(int id, String category, String location, String severity, String description,
+                 LocalDateTime timestamp, String status) {
+        this(id, FieldDictionary.CATEGORY.code(category), FieldDictionary.LOCATION.code(location),
+            FieldDictionary.SEVERITY.code(severity), FieldDictionary.STATUS.code(status), timestamp);
+        this.description = description;
+    }
+    
+    // Restores a snapshot row, given FieldDictionary codes, whose description is only
+    // read when first asked for
+    SafetyReport(int id, int category, int location, int severity, int status, LocalDateTime timestamp,
+                 LocalDateTime statusTime, ColumnarReportStore descriptionStore, int descriptionRow) {
+        this(id, category, location, severity, status, timestamp);
+        this.statusTime = statusTime.equals(timestamp) ? null : statusTime;
+        moveDescriptionTo(descriptionStore, descriptionRow);
+    }
+    
+    private SafetyReport(int id, int category, int location, int severity, int status, LocalDateTime timestamp) {
+        this.id = id;
+        this.category = (byte) category;
+        this.location = (byte) location;
+        this.severity = (byte) severity;
+        this.status = (byte) status;
+        this.timestamp = timestamp;
+    }
+    
+    // Drops the in-memory description once a snapshot holds it. The store is set
+    // before the volatile description is cleared, so a reader on another thread that
+    // sees no description always sees where to find it.
+    void moveDescriptionTo(ColumnarReportStore store, int row) {
+        this.descriptionStore = store;
+        this.descriptionRow = row;
+        this.description = null;
+    }
+    
+    // The default ID space, used by the default school's store
+    static ReportIdAllocator ids() {
+        return IDS;
+    }
+    
+    // Getters
+    public int getId() { return id; }
+    public String getCategory() { return FieldDictionary.CATEGORY.value(getCategoryCode()); }
+    public String getLocation() { return FieldDictionary.LOCATION.value(getLocationCode()); }
+    public String getSeverity() { return FieldDictionary.SEVERITY.value(getSeverityCode()); }
+    public String getDescription() {
+        String inMemory = description;
+        return inMemory != null ? inMemory : descriptionStore.description(descriptionRow);
+    }
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public String getStatus() { return FieldDictionary.STATUS.value(getStatusCode()); }
+    // When the status last changed; when the report was made if it never has
+    public LocalDateTime getStatusTime() {
+        LocalDateTime changed = statusTime;
+        return changed != null ? changed : timestamp;
+    }
+    
+    // FieldDictionary codes, for comparing without looking at the Strings
+    public int getCategoryCode() { return category & 0xFF; }
+    public int getLocationCode() { return location & 0xFF; }
+    public int getSeverityCode() { return severity & 0xFF; }
+    public int getStatusCode() { return status & 0xFF; }
+    
+    // Setters
+    // The time is set first, so whoever sees the new status sees when it came
+    public void setStatus(String status, LocalDateTime at) {
+        this.statusTime = at;
+        this.status = (byte) FieldDictionary.STATUS.code(status);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("category", getCategory());
+        fields.put("location", getLocation());
+        fields.put("severity", getSeverity());
+        fields.put("description", getDescription());
+        fields.put("timestamp", timestamp);
+        fields.put("status", getStatus());
+        out.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        try {
+            id = fields.get("id", 0);
+            category = (byte) FieldDictionary.CATEGORY.code((String) fields.get("category", null));
+            location = (byte) FieldDictionary.LOCATION.code((String) fields.get("location", null));
+            severity = (byte) FieldDictionary.SEVERITY.code((String) fields.get("severity", null));
+            status = (byte) FieldDictionary.STATUS.code((String) fields.get("status", null));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+        description = (String) fields.get("description", null);
+        timestamp = (LocalDateTime) fields.get("timestamp", null);
+    }
+    
+    @Override
+    public String toString() {
+        return "SafetyReport{" +
+                "id=" + id +
+                ", category='" + getCategory() + '\'' +
+                ", location='" + getLocation() + '\'' +
+                ", severity='" + getSeverity() + '\'' +
+                ", timestamp=" + timestamp +
+                ", status='" + getStatus() + '\'' +
+                '}';
+    }
+}
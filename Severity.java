@@ -0,0 +1,29 @@
+import java.util.Arrays;
+
+// How serious a report is, least to most. Declaration order is both the ordering
+// and the dictionary code order on disk, so only ever add constants at the end.
+enum Severity {
+    LOW("Low"),
+    MEDIUM("Medium"),
+    HIGH("High"),
+    URGENT("Urgent");
+
+    final String label;
+
+    Severity(String label) {
+        this.label = label;
+    }
+
+    public boolean isAtLeast(Severity other) {
+        return compareTo(other) >= 0;
+    }
+
+    // This severity and every one above it
+    public Severity[] andAbove() {
+        Severity[] all = values();
+        return Arrays.copyOfRange(all, ordinal(), all.length);
+    }
+
+    @Override
+    public String toString() { return label; }
+}
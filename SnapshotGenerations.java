@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// The current snapshot and the RETAINED ones before it: safety_reports.dat, then
+// safety_reports.dat.1 (the one before), .dat.2 and so on. A new snapshot is
+// written, checksummed and fsynced in full before the others shift along and it
+// is renamed into place, so there is always at least one whole snapshot on disk.
+//
+// Loading verifies the current snapshot alone and opens it if it passes, so a
+// healthy start costs one sequential read of it. Only when it fails are the older
+// generations verified, all at once; each stops reading as soon as a newer one is
+// known good, and the newest that passes is opened.
+final class SnapshotGenerations {
+    static final int RETAINED = 2;
+
+    private final Path current;
+
+    SnapshotGenerations(Path current) {
+        this.current = current;
+    }
+
+    // What openNewest() found: the snapshot it opened (null if none was intact),
+    // which generation that was, and where each damaged one was moved
+    static final class Loaded {
+        final ColumnarReportStore snapshot;
+        final Path path;
+        final int generation;
+        final List<Path> damaged;
+        final List<Path> movedTo;
+
+        Loaded(ColumnarReportStore snapshot, Path path, int generation, List<Path> damaged, List<Path> movedTo) {
+            this.snapshot = snapshot;
+            this.path = path;
+            this.generation = generation;
+            this.damaged = damaged;
+            this.movedTo = movedTo;
+        }
+    }
+
+    // 0 is the current snapshot, 1 the one before it, ...
+    Path generation(int n) {
+        return n == 0 ? current : current.resolveSibling(current.getFileName() + "." + n);
+    }
+
+    // Writes reports as the new current snapshot, keeping RETAINED older ones
+    void save(List<SafetyReport> reports) throws IOException {
+        Path temp = ColumnarReportStore.writeTemporary(current, reports);
+        for (int n = RETAINED - 1; n >= 0; n--) {
+            if (Files.exists(generation(n))) {
+                Files.move(generation(n), generation(n + 1),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.move(temp, current, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ColumnarReportStore.syncDirectory(current);
+    }
+
+    // Opens the newest generation that verifies. Every one found damaged is moved
+    // aside first, so it is kept for inspection and rotation can't delete it.
+    Loaded openNewest() throws IOException {
+        List<Integer> candidates = new ArrayList<>();
+        for (int n = 0; n <= RETAINED; n++) {
+            if (Files.exists(generation(n))) {
+                candidates.add(n);
+            }
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        List<CompletableFuture<Boolean>> checks = List.of();
+        List<Path> damaged = new ArrayList<>();
+        ColumnarReportStore opened = null;
+        int openedGeneration = -1;
+        try {
+            for (int i = 0; i < candidates.size() && opened == null; i++) {
+                if (i == 1) {
+                    checks = verifyOlder(candidates, found); // The newest is damaged or gone
+                }
+                Path path = generation(candidates.get(i));
+                Boolean intact = i == 0 ? verifyIfPresent(path) : join(checks.get(i - 1));
+                if (intact == null) {
+                    continue; // Gone since it was listed, such as by a concurrent save
+                }
+                if (intact) {
+                    try {
+                        opened = ColumnarReportStore.open(path);
+                        openedGeneration = candidates.get(i);
+                        continue;
+                    } catch (IOException | RuntimeException e) {
+                        // Checksum matched but the contents don't make sense; damaged all the same
+                    }
+                }
+                damaged.add(path);
+            }
+        } finally {
+            found.set(true); // Stops the older checks still running
+        }
+
+        List<Path> movedTo = new ArrayList<>();
+        for (Path path : damaged) {
+            movedTo.add(setAside(path));
+        }
+        return new Loaded(opened, opened != null ? generation(openedGeneration) : null, openedGeneration,
+            damaged, movedTo);
+    }
+
+    // Starts verifying every candidate after the first at once; each gives up once found is set
+    private List<CompletableFuture<Boolean>> verifyOlder(List<Integer> candidates, AtomicBoolean found) {
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+        for (int i = 1; i < candidates.size(); i++) {
+            Path path = generation(candidates.get(i));
+            checks.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return ColumnarReportStore.verify(path, found::get);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        return checks;
+    }
+
+    private static Boolean verifyIfPresent(Path path) throws IOException {
+        try {
+            return ColumnarReportStore.verify(path, () -> false);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Boolean join(CompletableFuture<Boolean> check) throws IOException {
+        try {
+            return check.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NoSuchFileException) {
+                return null;
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Renames a damaged file to <name>.corrupt-<millis> beside it
+    static Path setAside(Path file) {
+        Path aside = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.move(file, aside);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot move damaged " + file + " aside", e);
+        }
+        return aside;
+    }
+}
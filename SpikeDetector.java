@@ -0,0 +1,240 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Notices when one kind of report at one place suddenly jumps, say harassment in
+// the bathrooms ten times over in the last hour, which totals and per-category
+// trends don't show.
+//
+// Reports are counted per category and location in count-min sketches, one per
+// SLICE_MINUTES slice, for the last hour. A closed slice is folded into a baseline
+// sketch that decays over about a day, giving what an hour usually brings. A pair
+// is spiking while its last hour is ALERT_RATIO times its usual hour or more.
+// Memory is the same however many reports, pairs or days there are: the sketches,
+// the TOP busiest pairs and at most TOP active spikes. Like TrendWindow, time only
+// moves forward as reports and queries arrive.
+//
+// Loading replays every stored report in order, and each slice closed costs a pass
+// over the sketch, so a detector made with the time it starts at skips reports from
+// before its last SEED_SLICES: by then they would have decayed out of the baseline.
+class SpikeDetector {
+    static final int SLICE_MINUTES = 10;
+    private static final int SLICES = 60 / SLICE_MINUTES;              // One hour
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 256;                               // Counters per hash row
+    private static final double BASELINE_WEIGHT = 1.0 / (24 * SLICES); // Per closed slice: about a day
+    private static final int WARMUP_SLICES = 24 * SLICES;              // No spikes before a day's baseline
+    private static final int SEED_SLICES = 3 * WARMUP_SLICES;          // Older reports weigh under 5% by now
+    private static final int MIN_SPIKE_REPORTS = 5;
+    private static final double ALERT_RATIO = 4;
+    private static final int TOP = 10;
+    private static final int[] SEEDS = {0x7F4A7C15, 0x1CE4E5B9, 0x133111EB, 0x6A09E667};
+
+    // A category and location's last hour against its usual hour
+    static final class Hotspot {
+        final String category;
+        final String location;
+        final int count;              // Reports in the last hour (never an undercount)
+        final double expected;        // Reports in a usual hour
+        final LocalDateTime since;    // When it started spiking, or null if it isn't
+
+        Hotspot(String category, String location, int count, double expected, LocalDateTime since) {
+            this.category = category;
+            this.location = location;
+            this.count = count;
+            this.expected = expected;
+            this.since = since;
+        }
+
+        double getRatio() {
+            return count / Math.max(expected, 1.0);
+        }
+    }
+
+    private final int[][] slices = new int[SLICES][DEPTH * WIDTH];
+    private final int[] lastHour = new int[DEPTH * WIDTH];      // Sum of slices
+    private final float[] baseline = new float[DEPTH * WIDTH];  // Reports in a usual slice
+    private final int[] busiest = new int[TOP];                 // Keys, the first busiestCount in use
+    private final int[] busiestCounts = new int[TOP];
+    private int busiestCount;
+    private final Map<Integer, LocalDateTime> spiking = new LinkedHashMap<>(); // Key -> since
+    private long headSlice = Long.MIN_VALUE;
+    private long slicesSeen;
+    private final long seedFrom; // The first slice recorded; older reports only count toward the warm-up
+
+    SpikeDetector() {
+        seedFrom = Long.MIN_VALUE;
+    }
+
+    SpikeDetector(LocalDateTime now) {
+        seedFrom = sliceOf(now) - SEED_SLICES;
+    }
+
+    // Field arguments are FieldDictionary codes
+    public synchronized void record(int category, int location, LocalDateTime timestamp) {
+        long slice = sliceOf(timestamp);
+        advanceTo(slice);
+        if (slice <= headSlice - SLICES) {
+            return; // Older than the last hour
+        }
+        int key = category << 8 | location;
+        int[] counts = slices[slot(slice)];
+        int count = Integer.MAX_VALUE;
+        float usual = Float.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = cell(row, key);
+            counts[cell]++;
+            count = Math.min(count, ++lastHour[cell]);
+            usual = Math.min(usual, baseline[cell]);
+        }
+        noteBusy(key, count);
+        if (isSpike(count, usual * SLICES) && !spiking.containsKey(key)) {
+            if (spiking.size() == TOP) {
+                dropEnded();
+            }
+            if (spiking.size() < TOP) {
+                spiking.put(key, timestamp);
+            }
+        }
+    }
+
+    // Pairs spiking now, sharpest first
+    public synchronized List<Hotspot> getSpikes(LocalDateTime now) {
+        advanceTo(sliceOf(now));
+        dropEnded();
+        List<Hotspot> spikes = new ArrayList<>();
+        for (Map.Entry<Integer, LocalDateTime> entry : spiking.entrySet()) {
+            spikes.add(hotspot(entry.getKey(), entry.getValue()));
+        }
+        spikes.sort((a, b) -> Double.compare(b.getRatio(), a.getRatio()));
+        return spikes;
+    }
+
+    // The pairs with the most reports in the last hour, most first
+    public synchronized List<Hotspot> getBusiest(LocalDateTime now) {
+        advanceTo(sliceOf(now));
+        List<Hotspot> busy = new ArrayList<>();
+        for (int i = 0; i < busiestCount; i++) {
+            Hotspot hotspot = hotspot(busiest[i], spiking.get(busiest[i]));
+            if (hotspot.count > 0) {
+                busy.add(hotspot);
+            }
+        }
+        busy.sort((a, b) -> Integer.compare(b.count, a.count));
+        return busy;
+    }
+
+    private Hotspot hotspot(int key, LocalDateTime since) {
+        return new Hotspot(FieldDictionary.CATEGORY.value(key >>> 8), FieldDictionary.LOCATION.value(key & 0xFF),
+            estimate(lastHour, key), expected(key), since);
+    }
+
+    private boolean isSpike(int count, double expected) {
+        return slicesSeen >= WARMUP_SLICES && count >= MIN_SPIKE_REPORTS && count >= ALERT_RATIO * Math.max(expected, 1.0);
+    }
+
+    // A spike ends once its last hour is back under half the level that started it
+    private void dropEnded() {
+        Iterator<Integer> keys = spiking.keySet().iterator();
+        while (keys.hasNext()) {
+            int key = keys.next();
+            if (estimate(lastHour, key) * 2 < ALERT_RATIO * Math.max(expected(key), 1.0)) {
+                keys.remove();
+            }
+        }
+    }
+
+    // Keeps the TOP keys by last-hour count, as of each key's latest report, replacing
+    // the quietest when a busier one comes; the counts are fresh again when read
+    private void noteBusy(int key, int count) {
+        int quietest = 0;
+        for (int i = 0; i < busiestCount; i++) {
+            if (busiest[i] == key) {
+                busiestCounts[i] = count;
+                return;
+            }
+            if (busiestCounts[i] < busiestCounts[quietest]) {
+                quietest = i;
+            }
+        }
+        if (busiestCount < TOP) {
+            quietest = busiestCount++;
+        } else if (count <= busiestCounts[quietest]) {
+            return;
+        }
+        busiest[quietest] = key;
+        busiestCounts[quietest] = count;
+    }
+
+    private double expected(int key) {
+        float least = Float.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            least = Math.min(least, baseline[cell(row, key)]);
+        }
+        return least * SLICES;
+    }
+
+    private static int estimate(int[] sketch, int key) {
+        int least = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            least = Math.min(least, sketch[cell(row, key)]);
+        }
+        return least;
+    }
+
+    // Closes each slice between the old head and the new one into the baseline
+    private void advanceTo(long slice) {
+        if (slice <= headSlice) {
+            return;
+        }
+        if (headSlice == Long.MIN_VALUE) {
+            // Starting at the seed window, every older report returns from record() at once
+            headSlice = Math.max(slice, seedFrom);
+            slicesSeen = headSlice - slice;
+            return;
+        }
+        long passed = slice - headSlice;
+        for (long s = headSlice - SLICES + 1; s <= Math.min(slice - SLICES, headSlice); s++) {
+            int[] closed = slices[slot(s)];
+            for (int cell = 0; cell < closed.length; cell++) {
+                baseline[cell] += (float) ((closed[cell] - baseline[cell]) * BASELINE_WEIGHT);
+                lastHour[cell] -= closed[cell];
+            }
+            Arrays.fill(closed, 0);
+        }
+        // Slices that never held a report only decay the baseline
+        long empty = passed - Math.min(passed, SLICES);
+        if (empty > 0) {
+            float decay = (float) Math.pow(1 - BASELINE_WEIGHT, empty);
+            for (int cell = 0; cell < baseline.length; cell++) {
+                baseline[cell] *= decay;
+            }
+        }
+        for (int i = 0; i < busiestCount; i++) {
+            busiestCounts[i] = estimate(lastHour, busiest[i]);
+        }
+        slicesSeen += passed;
+        headSlice = slice;
+    }
+
+    private static int cell(int row, int key) {
+        int h = (key + 1) * 0x9E3779B9 ^ SEEDS[row];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return row * WIDTH + (h & (WIDTH - 1));
+    }
+
+    private static int slot(long slice) {
+        return (int) Math.floorMod(slice, (long) SLICES);
+    }
+
+    private static long sliceOf(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), 60L * SLICE_MINUTES);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.EnumSet;
+import java.util.Set;
+
+// Where a report is in its handling. A report starts New, is reviewed, worked on,
+// and then either resolved or flagged for follow-up; follow-ups go back to being
+// worked on, and a resolved report can be reopened for follow-up. Declaration order
+// is the dictionary code order on disk, so only ever add constants at the end.
+enum Status {
+    NEW("New"),
+    UNDER_REVIEW("Under Review"),
+    IN_PROGRESS("In Progress"),
+    RESOLVED("Resolved"),
+    NEEDS_FOLLOW_UP("Needs Follow-up");
+
+    final String label;
+
+    Status(String label) {
+        this.label = label;
+    }
+
+    // The status with this label, or null for one outside the enum
+    static Status fromLabel(String label) {
+        int code = FieldDictionary.STATUS.find(label);
+        return code >= 0 && code < FieldDictionary.STATUS.listedCount() ? values()[code] : null;
+    }
+
+    // Statuses a report in this one may move to
+    public Set<Status> next() {
+        switch (this) {
+            case NEW:
+                return EnumSet.of(UNDER_REVIEW);
+            case UNDER_REVIEW:
+                return EnumSet.of(IN_PROGRESS);
+            case IN_PROGRESS:
+                return EnumSet.of(RESOLVED, NEEDS_FOLLOW_UP);
+            case NEEDS_FOLLOW_UP:
+                return EnumSet.of(IN_PROGRESS, RESOLVED);
+            case RESOLVED:
+                return EnumSet.of(NEEDS_FOLLOW_UP);
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    public boolean canMoveTo(Status status) {
+        return next().contains(status);
+    }
+
+    public boolean isOpen() {
+        return this != RESOLVED;
+    }
+
+    @Override
+    public String toString() { return label; }
+}
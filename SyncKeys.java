@@ -0,0 +1,108 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// The idempotency keys clients send with uploaded reports, and the ID each report
+// got, so a client that retries a batch it never heard back about doesn't file the
+// same reports twice.
+//
+// The newest MAX_KEYS are kept in memory and appended to a file of "key id" lines
+// once the reports themselves are on disk; a crash in between can only file a
+// retried report twice, never lose one. The file is rewritten without forgotten
+// keys once it holds twice as many lines as are remembered.
+class SyncKeys {
+    static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]{8,64}");
+    private static final int MAX_KEYS = 100_000;
+
+    private final Path path;
+    private final Map<String, Integer> ids = new LinkedHashMap<String, Integer>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+    private int linesInFile; // Only touched by load() and the persistence thread
+
+    SyncKeys(Path path) {
+        this.path = path;
+    }
+
+    // Lines that don't parse, such as one torn by a crash, are skipped
+    public void load() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        synchronized (this) {
+            for (String line : lines) {
+                int space = line.indexOf(' ');
+                if (space > 0 && KEY.matcher(line.substring(0, space)).matches()) {
+                    try {
+                        ids.put(line.substring(0, space), Integer.parseInt(line.substring(space + 1)));
+                    } catch (NumberFormatException e) {
+                        // Torn line
+                    }
+                }
+            }
+        }
+        linesInFile = lines.size();
+    }
+
+    // The ID of the report uploaded with this key, or null if none was
+    public synchronized Integer idFor(String key) {
+        return ids.get(key);
+    }
+
+    public synchronized void put(String key, int id) {
+        ids.put(key, id);
+    }
+
+    // Adds the keys to the file and forces it; on the persistence thread, after the
+    // reports' own log records are forced
+    public void write(List<String> keys, int[] reportIds) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            lines.append(keys.get(i)).append(' ').append(reportIds[i]).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(StandardCharsets.UTF_8.encode(lines.toString()));
+            channel.force(false);
+        }
+        linesInFile += keys.size();
+        if (linesInFile > 2 * MAX_KEYS) {
+            rewrite();
+        }
+    }
+
+    private void rewrite() throws IOException {
+        List<Map.Entry<String, Integer>> remembered;
+        synchronized (this) {
+            remembered = new ArrayList<>(ids.entrySet());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Integer> entry : remembered) {
+                out.write(entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        linesInFile = remembered.size();
+    }
+}
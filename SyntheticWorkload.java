@@ -0,0 +1,167 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Generates a realistic timeline of reports for LoadGenerator: arrivals at random
+// (Poisson) around a target rate with periodic bursts, field values drawn from
+// weighted distributions, descriptions of varying length, and each report walked
+// some way along the status workflow at random delays after it was made.
+class SyntheticWorkload implements LoadTrace.Source {
+    // Everything a run can be tuned by; the defaults are a normal school day
+    static final class Profile {
+        int reports = 10_000;
+        double rate = 100;            // Reports per second outside bursts
+        double burstFactor = 1;       // Rate multiplier during a burst
+        double burstEverySeconds = 0; // 0 for no bursts
+        double burstSeconds = 0;
+        double[] categoryWeights = {30, 10, 12, 18, 10, 15, 5};
+        double[] locationWeights = {15, 20, 15, 12, 4, 8, 10, 6, 8, 2};
+        double[] severityWeights = {40, 35, 18, 7};
+        int meanWords = 40;
+        double reviewChance = 0.7;    // Picked up for review at all
+        double workChance = 0.8;      // Worked on, once reviewed
+        double resolveChance = 0.85;  // Resolved rather than flagged, once worked on
+        double statusDelaySeconds = 30;
+
+        // Replaces the weights of the named values, e.g. "Bullying=5,Other=1"
+        static void setWeights(double[] weights, String[] values, String spec) {
+            for (String part : spec.split(",")) {
+                String[] pair = part.split("=", 2);
+                int index = ReportCodec.indexOf(values, pair[0].trim());
+                if (pair.length != 2 || index < 0) {
+                    throw new IllegalArgumentException("Expected value=weight with a value from "
+                        + Arrays.toString(values) + ": " + part);
+                }
+                weights[index] = Double.parseDouble(pair[1].trim());
+            }
+        }
+    }
+
+    private static final String[] WORDS = {
+        "student", "students", "hallway", "locker", "lunch", "class", "teacher", "pushed", "shoved",
+        "called", "names", "laughed", "threatened", "phone", "message", "group", "chat", "photo",
+        "posted", "excluded", "alone", "again", "every", "day", "after", "before", "school", "bus",
+        "stop", "broken", "light", "door", "stairs", "wet", "floor", "smell", "fight", "crowd",
+        "older", "kids", "scared", "upset", "crying", "nobody", "helped", "saw", "happened", "week",
+        "near", "gym", "field", "library", "bathroom", "stall", "online", "account", "fake", "rumor"
+    };
+
+    private final Profile profile;
+    private final Random random;
+    private final double[] categoryCumulative;
+    private final double[] locationCumulative;
+    private final double[] severityCumulative;
+    private final PriorityQueue<LoadTrace.Event> statusChanges =
+        new PriorityQueue<>((a, b) -> Long.compare(a.at, b.at));
+    private double clockSeconds;
+    private int created;
+
+    SyntheticWorkload(Profile profile, long seed) {
+        this.profile = profile;
+        this.random = new Random(seed);
+        this.categoryCumulative = cumulative(profile.categoryWeights);
+        this.locationCumulative = cumulative(profile.locationWeights);
+        this.severityCumulative = cumulative(profile.severityWeights);
+        this.clockSeconds = nextGap();
+    }
+
+    @Override
+    public LoadTrace.Event next() {
+        long nextCreateAt = created < profile.reports ? toMillis(clockSeconds) : Long.MAX_VALUE;
+        LoadTrace.Event due = statusChanges.peek();
+        if (due != null && due.at <= nextCreateAt) {
+            return statusChanges.poll();
+        }
+        if (created == profile.reports) {
+            return null;
+        }
+        int report = created++;
+        LoadTrace.Event event = LoadTrace.Event.created(nextCreateAt, report,
+            SafetyReport.CATEGORIES[pick(categoryCumulative)],
+            SafetyReport.LOCATIONS[pick(locationCumulative)],
+            SafetyReport.SEVERITIES[pick(severityCumulative)],
+            description());
+        scheduleStatusChanges(report, clockSeconds);
+        clockSeconds += nextGap();
+        return event;
+    }
+
+    // New -> Under Review -> In Progress -> Resolved or Needs Follow-up, stopping
+    // early at random; a follow-up is usually worked on and resolved in the end
+    private void scheduleStatusChanges(int report, double createdAt) {
+        double at = createdAt;
+        if (random.nextDouble() >= profile.reviewChance) {
+            return;
+        }
+        at = schedule(report, at, Status.UNDER_REVIEW);
+        if (random.nextDouble() >= profile.workChance) {
+            return;
+        }
+        at = schedule(report, at, Status.IN_PROGRESS);
+        if (random.nextDouble() < profile.resolveChance) {
+            schedule(report, at, Status.RESOLVED);
+            return;
+        }
+        at = schedule(report, at, Status.NEEDS_FOLLOW_UP);
+        if (random.nextDouble() < profile.workChance) {
+            at = schedule(report, at, Status.IN_PROGRESS);
+            schedule(report, at, Status.RESOLVED);
+        }
+    }
+
+    private double schedule(int report, double after, Status status) {
+        double at = after + exponential(profile.statusDelaySeconds);
+        statusChanges.add(LoadTrace.Event.statusChanged(toMillis(at), report, status.label));
+        return at;
+    }
+
+    // Seconds to the next arrival, at the burst rate while inside a burst
+    private double nextGap() {
+        double rate = profile.rate;
+        if (profile.burstEverySeconds > 0 && clockSeconds % profile.burstEverySeconds < profile.burstSeconds) {
+            rate *= profile.burstFactor;
+        }
+        return exponential(1 / rate);
+    }
+
+    // Around meanWords words, skewed so most are short and a few run long
+    private String description() {
+        double scale = Math.exp(0.6 * random.nextGaussian() - 0.18); // Log-normal with mean 1
+        int words = Math.max(3, (int) Math.round(profile.meanWords * scale));
+        StringBuilder text = new StringBuilder(words * 7);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private double exponential(double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    private int pick(double[] cumulative) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, target);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] sums = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += Math.max(0, weights[i]);
+            sums[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        return sums;
+    }
+
+    private static long toMillis(double seconds) {
+        return Math.round(seconds * 1000);
+    }
+}
@@ -0,0 +1,139 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-category report counts in hourly buckets, kept in a ring long enough to hold
+// the longest window plus an equally long baseline before it. Moving the clock
+// forward only clears the buckets that fell off the end, and a query sums at most
+// two windows' worth of buckets, so neither ever looks at the reports themselves.
+class TrendWindow {
+    enum Window {
+        DAY("Last 24 hours", 24),
+        WEEK("Last 7 days", 24 * 7),
+        MONTH("Last 30 days", 24 * 30);
+
+        final String label;
+        final int hours;
+
+        Window(String label, int hours) {
+            this.label = label;
+            this.hours = hours;
+        }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    // One category's standing in a window
+    static final class Trend {
+        final String category;
+        final double count;      // Reports in the window (decay-weighted if requested)
+        final double baseline;   // Same, for the window just before it
+
+        Trend(String category, double count, double baseline) {
+            this.category = category;
+            this.count = count;
+            this.baseline = baseline;
+        }
+
+        // Growth over the baseline, smoothed so a category going from 0 to 1 doesn't top the list
+        double getRate() {
+            return (count + 1) / (baseline + 1);
+        }
+    }
+
+    private static final int RING_HOURS = Window.MONTH.hours * 2;
+    private static final int DECAY_HALF_LIVES_PER_WINDOW = 4;
+
+    private final Map<String, int[]> buckets = new LinkedHashMap<>();
+    private long headHour = Long.MIN_VALUE; // Newest hour the ring covers
+
+    public synchronized void record(String category, LocalDateTime timestamp) {
+        long hour = hourOf(timestamp);
+        advanceTo(hour);
+        if (hour <= headHour - RING_HOURS) {
+            return; // Older than anything we report on
+        }
+        buckets.computeIfAbsent(category, c -> new int[RING_HOURS])[slot(hour)]++;
+    }
+
+    // Categories with any reports in the window, most sharply rising first. With decay,
+    // each hour counts half as much every quarter-window, so a burst fades out gradually
+    // instead of falling off a cliff when the window slides past it.
+    public synchronized List<Trend> getTrends(Window window, boolean decay, LocalDateTime now) {
+        long nowHour = hourOf(now);
+        advanceTo(nowHour);
+        double halfLife = (double) window.hours / DECAY_HALF_LIVES_PER_WINDOW;
+        List<Trend> trends = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : buckets.entrySet()) {
+            int[] counts = entry.getValue();
+            double current = 0;
+            double baseline = 0;
+            for (int age = 0; age < window.hours; age++) {
+                double weight = decay ? Math.pow(0.5, age / halfLife) : 1;
+                current += weight * counts[slot(nowHour - age)];
+                baseline += weight * counts[slot(nowHour - window.hours - age)];
+            }
+            if (current > 0) {
+                trends.add(new Trend(entry.getKey(), current, baseline));
+            }
+        }
+        trends.sort((a, b) -> a.getRate() != b.getRate()
+            ? Double.compare(b.getRate(), a.getRate())
+            : Double.compare(b.count, a.count));
+        return trends;
+    }
+
+    // Adds other's counts to this window's, hour for hour, as for a district made of
+    // several schools. Hours that have slid out of either ring are left out.
+    public void addAll(TrendWindow other) {
+        Map<String, int[]> theirs = new LinkedHashMap<>();
+        long theirHead;
+        synchronized (other) { // Copied first, so the two locks are never held together
+            theirHead = other.headHour;
+            for (Map.Entry<String, int[]> entry : other.buckets.entrySet()) {
+                theirs.put(entry.getKey(), entry.getValue().clone());
+            }
+        }
+        if (theirHead == Long.MIN_VALUE) {
+            return;
+        }
+        synchronized (this) {
+            advanceTo(theirHead);
+            // Only the hours both rings hold: from where ours now starts up to their head
+            for (Map.Entry<String, int[]> entry : theirs.entrySet()) {
+                int[] counts = buckets.computeIfAbsent(entry.getKey(), c -> new int[RING_HOURS]);
+                int[] added = entry.getValue();
+                for (long hour = headHour - RING_HOURS + 1; hour <= theirHead; hour++) {
+                    counts[slot(hour)] += added[slot(hour)];
+                }
+            }
+        }
+    }
+
+    // Clears the buckets for every hour between the old head and the new one
+    private void advanceTo(long hour) {
+        if (hour <= headHour) {
+            return;
+        }
+        long from = headHour == Long.MIN_VALUE ? hour : Math.max(headHour + 1, hour - RING_HOURS + 1);
+        for (long h = from; h <= hour; h++) {
+            int slot = slot(h);
+            for (int[] counts : buckets.values()) {
+                counts[slot] = 0;
+            }
+        }
+        headHour = hour;
+    }
+
+    private static int slot(long hour) {
+        return (int) Math.floorMod(hour, (long) RING_HOURS);
+    }
+
+    private static long hourOf(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), 3600L);
+    }
+}
@@ -0,0 +1,249 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Reports waiting for staff, most pressing first, so an urgent report never sits
+// behind hundreds of routine ones.
+//
+// A report waits while it is New or Needs Follow-up. Waiting reports are ordered by
+// severity, then by deadline: when they came in plus their severity's SLA, which for
+// a report sent back for follow-up counts from then. Urgent reports therefore always
+// come first, and within a severity the one nearest (or furthest past) its deadline.
+//
+// The queue is a binary heap of rows with each row's place in it indexed, so a
+// status change takes a report out, or puts it back, in O(log n). Staff take the
+// next case with claim(): a claimed report leaves the heap, so two counselors
+// calling together never get the same one. A claim ends when the report moves on,
+// when it is released, or after CLAIM_MINUTES, and then the report is back in line.
+class TriageQueue {
+    static final long CLAIM_MINUTES = 30;
+    private static final long[] SLA_MINUTES = {5 * 24 * 60, 2 * 24 * 60, 8 * 60, 60}; // By Severity
+    private static final int DEADLINE_BITS = 40; // Epoch minutes, beneath the severity rank
+
+    // Who has a report and since when
+    private static final class Claim {
+        final String counselor;
+        final long key;
+        final LocalDateTime at;
+
+        Claim(String counselor, long key, LocalDateTime at) {
+            this.counselor = counselor;
+            this.key = key;
+            this.at = at;
+        }
+    }
+
+    private int[] heap = new int[64];       // Rows, heap-ordered by keys
+    private long[] keys = new long[64];     // Parallel to heap; smaller is more pressing
+    private int size;
+    private int[] slotOf = new int[64];     // Row -> index in heap + 1, or 0 if not there
+    private final Map<Integer, Claim> claims = new HashMap<>();
+
+    // Field arguments are FieldDictionary codes; since is when the status last changed,
+    // as saved with the report, so a reload puts it back where it was
+    public synchronized void reportAdded(int row, int severity, int status, LocalDateTime reported,
+                                         LocalDateTime since) {
+        if (isWaiting(status)) {
+            insert(row, key(severity, slaStart(status, reported, since)));
+        }
+    }
+
+    // Called with the report's old and new status codes; since is when the change was made
+    public synchronized void statusChanged(int row, int severity, int oldStatus, int newStatus, LocalDateTime reported,
+                                           LocalDateTime since) {
+        boolean waiting = isWaiting(newStatus);
+        if (waiting == isWaiting(oldStatus)) {
+            return;
+        }
+        claims.remove(row);
+        if (!waiting) {
+            remove(row);
+        } else {
+            insert(row, key(severity, slaStart(newStatus, reported, since)));
+        }
+    }
+
+    // Takes the most pressing waiting report for the counselor; its row, or -1 if none wait
+    public synchronized int claim(String counselor, LocalDateTime now) {
+        returnExpiredClaims(now);
+        if (size == 0) {
+            return -1;
+        }
+        int row = heap[0];
+        long key = keys[0];
+        remove(row);
+        claims.put(row, new Claim(counselor, key, now));
+        Metrics.TRIAGE_CLAIMS.increment();
+        return row;
+    }
+
+    // Puts the report back in line if the counselor still has it
+    public synchronized void release(int row, String counselor) {
+        Claim claim = claims.get(row);
+        if (claim != null && claim.counselor.equals(counselor)) {
+            claims.remove(row);
+            insert(row, claim.key);
+        }
+    }
+
+    // Who has the row's report, or null if nobody does
+    public synchronized String claimedBy(int row, LocalDateTime now) {
+        returnExpiredClaims(now);
+        Claim claim = claims.get(row);
+        return claim != null ? claim.counselor : null;
+    }
+
+    // The waiting rows, most pressing first, at most limit of them; the queue is unchanged
+    public synchronized int[] peek(int limit, LocalDateTime now) {
+        returnExpiredClaims(now);
+        int[] rows = new int[Math.min(limit, size)];
+        // Walks the heap best-first with a small frontier, O(limit log limit)
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> Long.compare(keys[a], keys[b]));
+        if (size > 0) {
+            frontier.add(0);
+        }
+        for (int i = 0; i < rows.length; i++) {
+            int slot = frontier.poll();
+            rows[i] = heap[slot];
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                frontier.add(child);
+            }
+        }
+        return rows;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int claimedCount() {
+        return claims.size();
+    }
+
+    // Waiting reports already past their deadline
+    public synchronized int overdueCount(LocalDateTime now) {
+        long nowMinute = minuteOf(now);
+        int overdue = 0;
+        for (int i = 0; i < size; i++) {
+            if ((keys[i] & ((1L << DEADLINE_BITS) - 1)) < nowMinute) {
+                overdue++;
+            }
+        }
+        return overdue;
+    }
+
+    // The report's deadline: from when it came in, or when it was sent back for follow-up
+    static LocalDateTime deadline(Severity severity, int status, LocalDateTime reported, LocalDateTime since) {
+        return slaStart(status, reported, since).plusMinutes(SLA_MINUTES[severity.ordinal()]);
+    }
+
+    // Back for follow-up: the SLA runs again from then
+    private static LocalDateTime slaStart(int status, LocalDateTime reported, LocalDateTime since) {
+        return status == Status.NEEDS_FOLLOW_UP.ordinal() ? since : reported;
+    }
+
+    private void returnExpiredClaims(LocalDateTime now) {
+        if (claims.isEmpty()) {
+            return;
+        }
+        LocalDateTime cutoff = now.minusMinutes(CLAIM_MINUTES);
+        Iterator<Map.Entry<Integer, Claim>> entries = claims.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Integer, Claim> entry = entries.next();
+            if (entry.getValue().at.isBefore(cutoff)) {
+                entries.remove();
+                insert(entry.getKey(), entry.getValue().key);
+            }
+        }
+    }
+
+    private static boolean isWaiting(int status) {
+        return status == Status.NEW.ordinal() || status == Status.NEEDS_FOLLOW_UP.ordinal();
+    }
+
+    // Severity rank above the deadline, so one long compares both. Severities outside
+    // the enum rank as Low.
+    private static long key(int severity, LocalDateTime from) {
+        int known = severity < SLA_MINUTES.length ? severity : 0;
+        long rank = SLA_MINUTES.length - 1 - known;
+        return rank << DEADLINE_BITS | (minuteOf(from) + SLA_MINUTES[known]);
+    }
+
+    private static long minuteOf(LocalDateTime timestamp) {
+        return Math.max(0, Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), 60L));
+    }
+
+    private void insert(int row, long key) {
+        if (row >= slotOf.length) {
+            slotOf = Arrays.copyOf(slotOf, Math.max(row + 1, slotOf.length * 2));
+        }
+        if (slotOf[row] != 0) {
+            return; // Already waiting
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        place(size++, row, key);
+        siftUp(size - 1);
+    }
+
+    private void remove(int row) {
+        int slot = row < slotOf.length ? slotOf[row] - 1 : -1;
+        if (slot < 0) {
+            return;
+        }
+        slotOf[row] = 0;
+        size--;
+        if (slot == size) {
+            return;
+        }
+        place(slot, heap[size], keys[size]);
+        siftDown(slot);
+        siftUp(slot);
+    }
+
+    private void siftUp(int slot) {
+        int row = heap[slot];
+        long key = keys[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(slot, heap[parent], keys[parent]);
+            slot = parent;
+        }
+        place(slot, row, key);
+    }
+
+    private void siftDown(int slot) {
+        int row = heap[slot];
+        long key = keys[slot];
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= key) {
+                break;
+            }
+            place(slot, heap[child], keys[child]);
+            slot = child;
+        }
+        place(slot, row, key);
+    }
+
+    private void place(int slot, int row, long key) {
+        heap[slot] = row;
+        keys[slot] = key;
+        slotOf[row] = slot + 1;
+    }
+}
@@ -0,0 +1,245 @@
+import ally.bench.Fixture;
+import ally.bench.Workload;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import javax.swing.table.DefaultTableModel;
+
+// The app side of the JMH suite in benchmarks/: a year of sample reports, the
+// same reports on disk as a columnar snapshot and as the Java serialization it
+// replaced, and each hot path as a named Workload. Workloads named "legacy..."
+// are the code the current path replaced, so every run measures both.
+public class BenchmarkFixture implements Fixture {
+    private static final int VISIBLE_ROWS = 40; // Rows a table paints when first shown
+    private static final DateTimeFormatter LEGACY_TABLE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
+    private static final DateTimeFormatter LEGACY_EXPORT_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
+
+    private final ReportList reports = new ReportList();
+    private final ArrayList<SafetyReport> legacyReports; // The plain list the app used to keep
+    private final ReportAnalytics analytics = new ReportAnalytics();
+    private final ReportBitmapIndex bitmaps = new ReportBitmapIndex();
+    private final TrendWindow trends = new TrendWindow();
+    private final Map<String, Integer> legacyTrends = new HashMap<>();
+    private final SpikeDetector spikes = new SpikeDetector();
+    private LocalDateTime spikeClock = LocalDateTime.of(2024, 9, 1, 8, 0); // Moves on 20 s per report
+    private final ExecutorService formatters = BackgroundExecutor.newComputeExecutor();
+    private final Path directory;
+    private final Path snapshot;   // Columnar, read by snapshot.load
+    private final Path serialized; // Java serialization, read by snapshot.legacyLoad
+    private final Path output;     // Overwritten by the save and export workloads
+    private int next;              // Cycles through the reports for per-report workloads
+
+    public BenchmarkFixture(int count) throws IOException {
+        legacyReports = sampleReports(count, new Random(42));
+        for (SafetyReport report : legacyReports) {
+            int row = reports.append(report);
+            analytics.reportAdded(report.getCategoryCode(), report.getLocationCode(), report.getSeverityCode(),
+                report.getStatusCode());
+            bitmaps.reportAdded(row, report.getCategoryCode(), report.getLocationCode(), report.getSeverityCode(),
+                report.getStatusCode(), report.getTimestamp());
+        }
+        directory = Files.createTempDirectory("ally-bench");
+        snapshot = directory.resolve(ReportStore.DATA_FILE);
+        serialized = directory.resolve("legacy.dat");
+        output = directory.resolve("output");
+        ColumnarReportStore.write(snapshot, reports);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized.toFile()))) {
+            out.writeObject(legacyReports);
+        }
+    }
+
+    // Reports spread evenly over the year up to now, in time order, with 10-70 word descriptions
+    static ArrayList<SafetyReport> sampleReports(int count, Random random) {
+        ArrayList<SafetyReport> sample = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        long step = Math.max(1, 365L * 24 * 3600 / Math.max(1, count));
+        for (int i = 0; i < count; i++) {
+            StringBuilder description = new StringBuilder();
+            int words = 10 + random.nextInt(60);
+            for (int w = 0; w < words; w++) {
+                description.append("word").append(random.nextInt(500)).append(' ');
+            }
+            sample.add(new SafetyReport(i + 1,
+                SafetyReport.CATEGORIES[random.nextInt(SafetyReport.CATEGORIES.length)],
+                SafetyReport.LOCATIONS[random.nextInt(SafetyReport.LOCATIONS.length)],
+                SafetyReport.SEVERITIES[random.nextInt(SafetyReport.SEVERITIES.length)],
+                description.toString().trim(),
+                start.plusSeconds(i * step),
+                SafetyReport.STATUSES[random.nextInt(SafetyReport.STATUSES.length)]));
+        }
+        return sample;
+    }
+
+    @Override
+    public Workload workload(String name) {
+        switch (name) {
+            // A student submitting a report
+            case "report.create":
+                return () -> new SafetyReport("Bullying", "Hallway", "High", "Pushed near the lockers");
+
+            // saveData()/loadData(); load includes verifying the checksum, verify is that alone
+            case "snapshot.save":
+                return () -> {
+                    ColumnarReportStore.write(output, reports);
+                    return output;
+                };
+            case "snapshot.load":
+                return () -> {
+                    try (ReportStore store = new ReportStore(snapshot, directory.resolve(ReportStore.LOG_FILE),
+                             directory.resolve(ReportStore.ID_FILE))) {
+                        store.load();
+                        return store.getReports().size();
+                    }
+                };
+            case "snapshot.verify":
+                return () -> ColumnarReportStore.verify(snapshot, () -> false);
+            case "snapshot.legacySave":
+                return () -> {
+                    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(output.toFile()))) {
+                        out.writeObject(legacyReports);
+                        out.writeObject(legacyTrends);
+                    }
+                    return output;
+                };
+            case "snapshot.legacyLoad":
+                return () -> {
+                    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(serialized.toFile()))) {
+                        return in.readObject();
+                    }
+                };
+
+            // updateTrendData(), one report at a time
+            case "trend.record":
+                return () -> {
+                    SafetyReport report = nextReport();
+                    trends.record(report.getCategory(), report.getTimestamp());
+                    return trends;
+                };
+            case "trend.legacyRecord":
+                return () -> {
+                    String category = nextReport().getCategory();
+                    legacyTrends.put(category, legacyTrends.getOrDefault(category, 0) + 1);
+                    return legacyTrends;
+                };
+
+            // updateTrendData()'s spike sketches, one report at a time, reports arriving
+            // steadily so slices close into the baseline as they would in use
+            case "spikes.record":
+                return () -> {
+                    SafetyReport report = nextReport();
+                    spikeClock = spikeClock.plusSeconds(20);
+                    spikes.record(report.getCategoryCode(), report.getLocationCode(), spikeClock);
+                    return spikes;
+                };
+
+            // The analytics tab's counts
+            case "analytics.counts":
+                return () -> analytics.countAtLeast(Severity.HIGH) + analytics.countByStatus(Status.RESOLVED);
+            case "analytics.legacyCounts":
+                return () -> legacyReports.stream()
+                        .filter(r -> "High".equals(r.getSeverity()) || "Urgent".equals(r.getSeverity())).count()
+                    + legacyReports.stream().filter(r -> "Resolved".equals(r.getStatus())).count();
+            case "analytics.openSerious":
+                return () -> ReportQuery.severityAtLeast(Severity.HIGH).and(ReportQuery.open()).count(bitmaps);
+            case "analytics.legacyOpenSerious":
+                return () -> legacyReports.stream()
+                    .filter(r -> "High".equals(r.getSeverity()) || "Urgent".equals(r.getSeverity()))
+                    .filter(r -> !"Resolved".equals(r.getStatus()))
+                    .count();
+
+            // createAdminPanel()'s table, up to its first paint
+            case "table.model":
+                return () -> {
+                    ReportTableModel model = new ReportTableModel(reports, new DuplicateDetector(0));
+                    Object last = null;
+                    for (int row = 0; row < Math.min(VISIBLE_ROWS, model.getRowCount()); row++) {
+                        for (int column = 0; column < model.getColumnCount(); column++) {
+                            last = model.getValueAt(row, column);
+                        }
+                    }
+                    return last;
+                };
+            case "table.legacyModel":
+                return () -> {
+                    Object[][] data = new Object[legacyReports.size()][5];
+                    for (int i = 0; i < legacyReports.size(); i++) {
+                        SafetyReport report = legacyReports.get(i);
+                        data[i][0] = report.getTimestamp().format(LEGACY_TABLE_FORMAT);
+                        data[i][1] = report.getCategory();
+                        data[i][2] = report.getLocation();
+                        data[i][3] = report.getSeverity();
+                        data[i][4] = report.getStatus();
+                    }
+                    return new DefaultTableModel(data, new String[] {"Date/Time", "Category", "Location", "Severity", "Status"});
+                };
+
+            // exportReportsToFile()
+            case "export.text":
+                return export(ReportExporter.Format.TEXT, false);
+            case "export.csv":
+                return export(ReportExporter.Format.CSV, false);
+            case "export.csvGzip":
+                return export(ReportExporter.Format.CSV, true);
+            case "export.legacyText":
+                return () -> {
+                    try (PrintWriter writer = new PrintWriter(new FileWriter(output.toFile()))) {
+                        writer.println("Ally Safety Reports Export");
+                        writer.println("Generated: " + LocalDateTime.now().format(LEGACY_EXPORT_FORMAT));
+                        writer.println("=".repeat(50));
+                        writer.println();
+                        for (SafetyReport report : legacyReports) {
+                            writer.println("Report ID: " + report.getId());
+                            writer.println("Timestamp: " + report.getTimestamp().format(LEGACY_EXPORT_FORMAT));
+                            writer.println("Category: " + report.getCategory());
+                            writer.println("Location: " + report.getLocation());
+                            writer.println("Severity: " + report.getSeverity());
+                            writer.println("Status: " + report.getStatus());
+                            writer.println("Description: " + report.getDescription());
+                            writer.println("-".repeat(30));
+                            writer.println();
+                        }
+                    }
+                    return output;
+                };
+
+            default:
+                throw new IllegalArgumentException("No workload named " + name);
+        }
+    }
+
+    private Workload export(ReportExporter.Format format, boolean gzip) {
+        ReportExporter exporter = new ReportExporter(format, gzip, ReportExporter.Filter.all(), formatters);
+        return () -> exporter.export(reports.freeze(), output, (done, total) -> { });
+    }
+
+    private SafetyReport nextReport() {
+        SafetyReport report = legacyReports.get(next);
+        next = next + 1 < legacyReports.size() ? next + 1 : 0;
+        return report;
+    }
+
+    @Override
+    public void close() throws IOException {
+        formatters.shutdown();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
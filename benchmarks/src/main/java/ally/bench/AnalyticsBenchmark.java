@@ -0,0 +1,68 @@
+package ally.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The analytics tab's counts: running counters and bitmap queries against stream scans
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class AnalyticsBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int reports;
+
+    private Fixture fixture;
+    private Workload counts;
+    private Workload legacyCounts;
+    private Workload openSerious;
+    private Workload legacyOpenSerious;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixture.create(reports);
+        counts = fixture.workload("analytics.counts");
+        legacyCounts = fixture.workload("analytics.legacyCounts");
+        openSerious = fixture.workload("analytics.openSerious");
+        legacyOpenSerious = fixture.workload("analytics.legacyOpenSerious");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object counts() throws Exception {
+        return counts.run();
+    }
+
+    @Benchmark
+    public Object legacyCounts() throws Exception {
+        return legacyCounts.run();
+    }
+
+    @Benchmark
+    public Object openSerious() throws Exception {
+        return openSerious.run();
+    }
+
+    @Benchmark
+    public Object legacyOpenSerious() throws Exception {
+        return legacyOpenSerious.run();
+    }
+}
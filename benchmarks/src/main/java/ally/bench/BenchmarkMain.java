@@ -0,0 +1,22 @@
+package ally.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+// JMH's own command line, except results are always written as JSON
+// (jmh-result.json unless -rff says otherwise) so runs can be compared build to build.
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.addAll(List.of("-rf", "json"));
+        }
+        if (!options.contains("-rff")) {
+            options.addAll(List.of("-rff", "jmh-result.json"));
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
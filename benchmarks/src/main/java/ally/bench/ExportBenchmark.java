@@ -0,0 +1,68 @@
+package ally.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// exportReportsToFile(): the chunked exporter in each format against the old PrintWriter loop
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ExportBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int reports;
+
+    private Fixture fixture;
+    private Workload text;
+    private Workload csv;
+    private Workload csvGzip;
+    private Workload legacyText;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixture.create(reports);
+        text = fixture.workload("export.text");
+        csv = fixture.workload("export.csv");
+        csvGzip = fixture.workload("export.csvGzip");
+        legacyText = fixture.workload("export.legacyText");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object text() throws Exception {
+        return text.run();
+    }
+
+    @Benchmark
+    public Object csv() throws Exception {
+        return csv.run();
+    }
+
+    @Benchmark
+    public Object csvGzip() throws Exception {
+        return csvGzip.run();
+    }
+
+    @Benchmark
+    public Object legacyText() throws Exception {
+        return legacyText.run();
+    }
+}
@@ -0,0 +1,19 @@
+package ally.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Sample data plus the workloads that run against it; implemented on the app
+// side by BenchmarkFixture.
+public interface Fixture extends Closeable {
+    // The named operation; see BenchmarkFixture for the names
+    Workload workload(String name) throws Exception;
+
+    @Override
+    void close() throws IOException;
+
+    // A fixture holding `reports` generated reports, also written out as a snapshot
+    static Fixture create(int reports) throws Exception {
+        return (Fixture) Class.forName("BenchmarkFixture").getConstructor(int.class).newInstance(reports);
+    }
+}
@@ -0,0 +1,76 @@
+package ally.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// saveData()/loadData(): the columnar snapshot against the Java serialization it replaced,
+// and the checksum pass that bounds recovery time on its own
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SnapshotBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int reports;
+
+    private Fixture fixture;
+    private Workload save;
+    private Workload load;
+    private Workload verify;
+    private Workload legacySave;
+    private Workload legacyLoad;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixture.create(reports);
+        save = fixture.workload("snapshot.save");
+        load = fixture.workload("snapshot.load");
+        verify = fixture.workload("snapshot.verify");
+        legacySave = fixture.workload("snapshot.legacySave");
+        legacyLoad = fixture.workload("snapshot.legacyLoad");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object save() throws Exception {
+        return save.run();
+    }
+
+    @Benchmark
+    public Object load() throws Exception {
+        return load.run();
+    }
+
+    @Benchmark
+    public Object verify() throws Exception {
+        return verify.run();
+    }
+
+    @Benchmark
+    public Object legacySave() throws Exception {
+        return legacySave.run();
+    }
+
+    @Benchmark
+    public Object legacyLoad() throws Exception {
+        return legacyLoad.run();
+    }
+}
@@ -0,0 +1,54 @@
+package ally.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// createAdminPanel()'s table up to its first paint: the lazy model against copying every row
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Djava.awt.headless=true"})
+public class TableModelBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int reports;
+
+    private Fixture fixture;
+    private Workload model;
+    private Workload legacyModel;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixture.create(reports);
+        model = fixture.workload("table.model");
+        legacyModel = fixture.workload("table.legacyModel");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object model() throws Exception {
+        return model.run();
+    }
+
+    @Benchmark
+    public Object legacyModel() throws Exception {
+        return legacyModel.run();
+    }
+}
@@ -0,0 +1,60 @@
+package ally.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// updateTrendData(): one report into the hourly trend ring, against the old per-category map,
+// and into the spike detector's sketches
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrendBenchmark {
+    private static final int REPORTS = 100_000;
+
+    private Fixture fixture;
+    private Workload record;
+    private Workload legacyRecord;
+    private Workload spikeRecord;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixture.create(REPORTS);
+        record = fixture.workload("trend.record");
+        legacyRecord = fixture.workload("trend.legacyRecord");
+        spikeRecord = fixture.workload("spikes.record");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object record() throws Exception {
+        return record.run();
+    }
+
+    @Benchmark
+    public Object legacyRecord() throws Exception {
+        return legacyRecord.run();
+    }
+
+    @Benchmark
+    public Object spikeRecord() throws Exception {
+        return spikeRecord.run();
+    }
+}
@@ -0,0 +1,9 @@
+package ally.bench;
+
+// One measured operation on the app. The app's classes are package-private in
+// the default package, and JMH only accepts benchmarks in a named package, so
+// benchmarks reach the app through workloads handed out by a Fixture.
+@FunctionalInterface
+public interface Workload {
+    Object run() throws Exception;
+}
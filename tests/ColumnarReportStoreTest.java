@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnarReportStoreTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 9, 2, 8, 30, 15, 250_000_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRoundTrips() throws IOException {
+        SafetyReport followedUp = new SafetyReport(3, "Harassment", "Library", "High", "line one\nline two", WHEN,
+            "In Progress");
+        followedUp.setStatus("Needs Follow-up", WHEN.plusHours(5));
+        List<SafetyReport> reports = List.of(
+            new SafetyReport(1, "Bullying", "Bus", "Urgent", "on the bus", WHEN, "New"),
+            new SafetyReport(2, "Cyber Bullying", "Online", "Low", "", WHEN.minusDays(40), "Resolved"),
+            followedUp,
+            new SafetyReport(9, "Vandalism", "Parking Lot", "Medium", "outside the lists ✓", WHEN, "New"));
+        Path path = dir.resolve("reports.dat");
+        ColumnarReportStore.write(path, reports);
+
+        assertTrue(ColumnarReportStore.verify(path, () -> false));
+        try (ColumnarReportStore store = ColumnarReportStore.open(path)) {
+            assertEquals(reports.size(), store.size());
+            assertEquals(9, store.getMaxId());
+            for (int row = 0; row < reports.size(); row++) {
+                SafetyReport expected = reports.get(row);
+                SafetyReport actual = store.report(row);
+                ReportCodecTest.assertSameReport(expected, actual);
+                assertEquals(expected.getStatusTime(), actual.getStatusTime());
+                assertEquals(expected.getDescription(), store.description(row));
+            }
+            assertEquals(WHEN.plusHours(5), store.statusTime(2));
+            assertEquals(WHEN, store.statusTime(0)); // Never changed: the report's own time
+        }
+    }
+
+    @Test
+    void rowsOutOfIdOrderAreFoundByBinarySearch() throws IOException {
+        List<SafetyReport> reports = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            reports.add(new SafetyReport(i * 3 + 1, "Other", "Hallway", "Low", "report " + i, WHEN, "New"));
+        }
+        Collections.shuffle(reports, new Random(7));
+        Path path = dir.resolve("reports.dat");
+        ColumnarReportStore.write(path, reports);
+
+        try (ColumnarReportStore store = ColumnarReportStore.open(path)) {
+            assertTrue(store.hasIdOrder());
+            for (int row = 0; row < store.size(); row++) {
+                assertEquals(row, store.rowOf(store.id(row)));
+            }
+            assertEquals(-1, store.rowOf(0));
+            assertEquals(-1, store.rowOf(2));
+            assertEquals(-1, store.rowOf(5000 * 3 + 1));
+        }
+    }
+
+    @Test
+    void damagedSnapshotFailsVerification() throws IOException {
+        Path path = dir.resolve("reports.dat");
+        ColumnarReportStore.write(path, List.of(
+            new SafetyReport(1, "Bullying", "Gym", "High", "a description to damage", WHEN, "New")));
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            file.read(one, 40);
+            one.put(0, (byte) (one.get(0) ^ 0x55));
+            file.write(one.rewind(), 40);
+        }
+        assertFalse(ColumnarReportStore.verify(path, () -> false));
+    }
+
+    @Test
+    void truncatedSnapshotDoesNotOpen() throws IOException {
+        Path path = dir.resolve("reports.dat");
+        List<SafetyReport> reports = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            reports.add(new SafetyReport(i, "Bullying", "Gym", "High", "report " + i, WHEN, "New"));
+        }
+        ColumnarReportStore.write(path, reports);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.truncate(Files.size(path) / 2);
+        }
+        assertFalse(ColumnarReportStore.verify(path, () -> false));
+        assertThrows(IOException.class, () -> ColumnarReportStore.open(path));
+    }
+
+    @Test
+    void damagedCurrentSnapshotFallsBackToTheOneBefore() throws IOException {
+        Path path = dir.resolve("reports.dat");
+        SnapshotGenerations generations = new SnapshotGenerations(path);
+        for (int id = 1; id <= 3; id++) {
+            generations.save(List.of(new SafetyReport(id, "Bullying", "Gym", "High", "saved " + id, WHEN, "New")));
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.truncate(Files.size(path) / 2);
+        }
+
+        SnapshotGenerations.Loaded loaded = generations.openNewest();
+        try (ColumnarReportStore snapshot = loaded.snapshot) {
+            assertEquals(1, loaded.generation);
+            assertEquals(2, snapshot.id(0));
+            assertEquals(List.of(path), loaded.damaged);
+            assertTrue(Files.exists(loaded.movedTo.get(0)));
+            assertFalse(Files.exists(path));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DescriptionIndexTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 9, 2, 8, 30);
+
+    @Test
+    void inflectionsMeetAtOneStem() {
+        for (String word : List.of("push", "pushed", "pushing", "pushes")) {
+            assertEquals("push", DescriptionIndex.stem(word), word);
+        }
+        assertEquals("hit", DescriptionIndex.stem("hitting"));
+        assertEquals("stop", DescriptionIndex.stem("stopped"));
+        assertEquals("bully", DescriptionIndex.stem("bullies"));
+        assertEquals("quick", DescriptionIndex.stem("quickly"));
+        assertEquals("pass", DescriptionIndex.stem("passes"));
+        assertEquals("kid", DescriptionIndex.stem("kids"));
+    }
+
+    @Test
+    void wordsThatOnlyLookInflectedAreKept() {
+        for (String word : List.of("bus", "class", "fall", "falling", "sing", "red", "gas")) {
+            String expected = word.equals("falling") ? "fall" : word;
+            assertEquals(expected, DescriptionIndex.stem(word), word);
+        }
+    }
+
+    @Test
+    void tokensAreLowerCasedStemmedAndStopWordsDropped() {
+        assertEquals(List.of("kid", "push", "didnt", "lunch", "2"),
+            DescriptionIndex.tokenize("The KIDS pushed me -- didn't they? At lunch, 2 of them."));
+        assertEquals(List.of(), DescriptionIndex.tokenize(null));
+        assertEquals(List.of(), DescriptionIndex.tokenize("  ... the and of "));
+    }
+
+    @Test
+    void scoresFollowBm25() {
+        DescriptionIndex index = new DescriptionIndex(0);
+        index.add(0, "pushed pushing");
+        index.add(1, "other words");
+        List<DescriptionIndex.Hit> hits = index.search("push", 10);
+        assertEquals(1, hits.size());
+        assertEquals(0, hits.get(0).row);
+        // Two documents, one holding the term twice, both of average length: idf ln 2, norm k1
+        double expected = Math.log(2) * 2 * (1.2 + 1) / (2 + 1.2);
+        assertEquals(expected, hits.get(0).score, 1e-5);
+    }
+
+    @Test
+    void rarerTermsAndShorterDescriptionsRankHigher() {
+        DescriptionIndex index = new DescriptionIndex(0);
+        index.add(0, "hallway shoved");
+        index.add(1, "hallway crowded");
+        index.add(2, "hallway noisy");
+        index.add(3, "shoved twice");
+        index.add(4, "shoved near the lockers after the bell during a very long and busy passing period");
+        index.add(5, "hallway loud");
+
+        List<DescriptionIndex.Hit> hits = index.search("shoved hallway", 10);
+        assertEquals(6, hits.size());
+        assertEquals(List.of(0, 3), rows(hits).subList(0, 2)); // Both terms, then the rarer one
+        assertTrue(score(hits, 3) > score(hits, 1), "the rarer term counts for more");
+        assertTrue(score(hits, 3) > score(hits, 4), "the shorter description ranks higher");
+        assertEquals(rows(hits).subList(0, 2), rows(index.search("shoved hallway", 2)));
+        assertEquals(List.of(), index.search("the of and", 10));
+    }
+
+    @Test
+    void baseAndLiveSegmentsAreSearchedTogether() {
+        ReportList reports = new ReportList();
+        for (int id = 1; id <= 300; id++) { // More rows than one postings block
+            reports.append(new SafetyReport(id, "Bullying", "Hallway", "Low",
+                id % 100 == 0 ? "graffiti on the wall" : "report " + id, WHEN, "New"));
+        }
+        DescriptionIndex index = new DescriptionIndex(reports.size());
+        assertFalse(index.isReady());
+        index.add(301, "fresh graffiti"); // Live rows arrive while the base is being built
+        index.add(300, "more graffiti"); // A little out of order
+        index.add(42, "not indexed twice"); // Belongs to the base
+        index.buildBase(reports);
+        assertTrue(index.isReady());
+
+        assertEquals(List.of(99, 199, 299, 300, 301), rows(index.search("graffiti", 10)).stream().sorted().toList());
+        assertEquals(List.of(), index.search("twice", 10));
+    }
+
+    private static double score(List<DescriptionIndex.Hit> hits, int row) {
+        return hits.stream().filter(hit -> hit.row == row).findFirst().orElseThrow().score;
+    }
+
+    private static List<Integer> rows(List<DescriptionIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.row).toList();
+    }
+}
@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DuplicateDetectorTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 9, 2, 12, 15);
+    private static final String FIGHT = "two older boys pushed a kid into the lockers by the cafeteria doors";
+    private static final String SAME_FIGHT = "two older boys pushed a kid into the lockers near the cafeteria doors";
+
+    private final List<SafetyReport> reports = new ArrayList<>();
+
+    @Test
+    void signaturesCompareTheWordsNotTheirSpelling() {
+        assertArrayEquals(DuplicateDetector.signature(FIGHT), DuplicateDetector.signature(FIGHT.toUpperCase()));
+        assertTrue(DuplicateDetector.agreeing(DuplicateDetector.signature(FIGHT),
+            DuplicateDetector.signature(SAME_FIGHT)) >= 16);
+        assertTrue(DuplicateDetector.agreeing(DuplicateDetector.signature(FIGHT),
+            DuplicateDetector.signature("someone wrote mean comments under my photo last night")) < 16);
+        assertNull(DuplicateDetector.signature("the and of"));
+    }
+
+    @Test
+    void reportsOfOneIncidentShareACluster() {
+        DuplicateDetector detector = new DuplicateDetector(0);
+        add(detector, "Bullying", "Hallway", FIGHT, WHEN);
+        add(detector, "Bullying", "Hallway", "my phone charger was left in the library again", WHEN.plusMinutes(5));
+        add(detector, "Bullying", "Hallway", SAME_FIGHT, WHEN.plusMinutes(20));
+        add(detector, "Bullying", "Hallway", FIGHT.toUpperCase(), WHEN.plusHours(30));
+
+        assertEquals(1, detector.clusterCount());
+        assertEquals(0, detector.clusterOf(2));
+        assertEquals(0, detector.clusterOf(3));
+        assertEquals(1, detector.clusterOf(1));
+        assertEquals(3, detector.clusterSize(3));
+        assertEquals(1, detector.clusterSize(1));
+        assertArrayEquals(new int[] {0, 2, 3}, detector.members(2));
+        assertArrayEquals(new int[] {1}, detector.members(1));
+        assertArrayEquals(new int[] {3, 1}, detector.firstOfEachCluster(new int[] {3, 1, 0, 2}));
+    }
+
+    @Test
+    void otherPlacesCategoriesAndDaysAreNotTheSameIncident() {
+        DuplicateDetector detector = new DuplicateDetector(0);
+        add(detector, "Bullying", "Hallway", FIGHT, WHEN);
+        add(detector, "Bullying", "Gym", FIGHT, WHEN.plusMinutes(1));
+        add(detector, "Harassment", "Hallway", FIGHT, WHEN.plusMinutes(2));
+        add(detector, "Bullying", "Hallway", FIGHT, WHEN.plusDays(3)); // Past the window
+
+        assertEquals(0, detector.clusterCount());
+        for (int row = 0; row < reports.size(); row++) {
+            assertEquals(row, detector.clusterOf(row));
+        }
+    }
+
+    @Test
+    void rowsSubmittedBeforeTheBaseIsBuiltJoinInOrder() {
+        ReportList base = new ReportList();
+        for (int i = 0; i < 3; i++) {
+            SafetyReport report = report("Bullying", "Hallway", i == 1 ? FIGHT : "report " + i, WHEN.plusMinutes(i));
+            base.append(report);
+        }
+        DuplicateDetector detector = new DuplicateDetector(base.size());
+        assertFalse(detector.isReady());
+        detector.add(3, report("Bullying", "Hallway", SAME_FIGHT, WHEN.plusMinutes(10)));
+        detector.add(1, report("Bullying", "Hallway", "belongs to the base", WHEN));
+        assertEquals(0, detector.clusterCount()); // Nothing until the base is in
+
+        detector.buildBase(base);
+        assertTrue(detector.isReady());
+        assertArrayEquals(new int[] {1, 3}, detector.members(3));
+        assertEquals(1, detector.clusterCount());
+    }
+
+    private void add(DuplicateDetector detector, String category, String location, String description,
+            LocalDateTime when) {
+        SafetyReport report = report(category, location, description, when);
+        reports.add(report);
+        detector.add(reports.size() - 1, report);
+    }
+
+    private static SafetyReport report(String category, String location, String description, LocalDateTime when) {
+        return new SafetyReport(0, category, location, "Medium", description, when, "New");
+    }
+}
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonTest {
+    @Test
+    void readsFlatObjects() {
+        Map<String, String> object = Json.parseObject(
+            " {\"category\": \"Bullying\", \"n\": -1.5e3, \"ok\": true, \"gone\": null, \"text\": \"a\\\"b\\n\\u00e9\\/\"} ");
+        assertEquals("Bullying", object.get("category"));
+        assertEquals("-1.5e3", object.get("n"));
+        assertEquals("true", object.get("ok"));
+        assertTrue(object.containsKey("gone"));
+        assertNull(object.get("gone"));
+        assertEquals("a\"b\né/", object.get("text"));
+        assertEquals(Map.of(), Json.parseObject("{}"));
+    }
+
+    @Test
+    void readsArraysOfObjects() {
+        List<Map<String, String>> array = Json.parseArray("[{\"a\":\"1\"}, {\"b\":2}]");
+        assertEquals(List.of(Map.of("a", "1"), Map.of("b", "2")), array);
+        assertEquals(List.of(), Json.parseArray(" [ ] "));
+    }
+
+    @Test
+    void quotedTextReadsBack() {
+        String text = "quote \" backslash \\ tab \t <b>&</b> \u0001";
+        assertEquals(text, Json.parseObject("{\"t\":" + Json.quote(text) + "}").get("t"));
+        assertTrue(!Json.quote("<script>").contains("<"));
+    }
+
+    @Test
+    void malformedInputIsRejectedWithItsPosition() {
+        String[] bad = {
+            "",
+            "{",
+            "{\"a\"}",
+            "{\"a\":}",
+            "{\"a\":1,}",
+            "{\"a\":1 \"b\":2}",
+            "{\"a\":\"unterminated}",
+            "{\"a\":\"\\x\"}",
+            "{\"a\":\"\\u12\"}",
+            "{\"a\":\"\\u12G4\"}",
+            "{\"a\":\"\\u+123\"}",
+            "{\"a\":{\"nested\":1}}",
+            "{\"a\":[1]}",
+            "{\"a\":tru}",
+            "{\"a\":1} trailing",
+            "[{\"a\":1}",
+            "[{\"a\":1} {\"b\":2}]",
+            "[1]",
+            "{a:1}",
+        };
+        for (String text : bad) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> parse(text), text);
+            assertTrue(e.getMessage().contains(" at position "), text + ": " + e.getMessage());
+        }
+    }
+
+    private static Object parse(String text) {
+        return text.startsWith("[") ? Json.parseArray(text) : Json.parseObject(text);
+    }
+}
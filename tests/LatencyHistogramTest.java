@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    private static final long FAR_ABOVE = Long.MAX_VALUE / 2;
+
+    @Test
+    void smallValuesAreExact() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, bucketTop(value));
+        }
+    }
+
+    @Test
+    void bucketsHoldTheirValuesWithinThreePercent() {
+        for (long value = 64; value > 0 && value < FAR_ABOVE; value = value * 3 / 2 + 1) {
+            for (long v : new long[] {value - 1, value, value + 1}) {
+                long top = bucketTop(v);
+                assertTrue(top >= v, v + " above its bucket top " + top);
+                assertTrue(top - v <= v / 32, v + " in a bucket up to " + top);
+            }
+        }
+    }
+
+    @Test
+    void bucketsMeetWithoutGapsOrOverlap() {
+        // At each power of two one bucket ends just below and the next starts there
+        for (int exponent = 6; exponent < 62; exponent++) {
+            long power = 1L << exponent;
+            assertEquals(power - 1, bucketTop(power - 1));
+            assertTrue(bucketTop(power) > power - 1);
+        }
+    }
+
+    @Test
+    void extremesAreRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5); // Clock steps back: counted as zero
+        assertEquals(2, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+    }
+
+    @Test
+    void percentilesAndMean() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.getMean());
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(50.5, histogram.getMean());
+        assertEquals(50, histogram.percentile(50), 1);
+        assertEquals(99, histogram.percentile(99), 2);
+        assertEquals(100, histogram.percentile(100));
+    }
+
+    // The top of the bucket value falls in, read back through the median of it and a far larger value
+    private static long bucketTop(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(FAR_ABOVE);
+        return histogram.percentile(50);
+    }
+}
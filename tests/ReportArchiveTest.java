@@ -0,0 +1,156 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportArchiveTest {
+    private static final LocalDateTime LONG_AGO = LocalDateTime.now().minusDays(400).truncatedTo(ChronoUnit.MILLIS);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void segmentsReadBackWhatWasWritten() throws IOException {
+        List<SafetyReport> reports = oldResolvedReports(1, 60); // Two months or more
+        ReportArchive written = new ReportArchive(dir.resolve(ReportArchive.DIRECTORY));
+        written.open(problem -> { throw new AssertionError(problem); });
+        written.write(reports);
+
+        ReportArchive archive = new ReportArchive(dir.resolve(ReportArchive.DIRECTORY));
+        archive.open(problem -> { throw new AssertionError(problem); });
+        assertEquals(reports.size(), archive.size());
+        for (SafetyReport expected : reports) {
+            assertTrue(archive.contains(expected.getId()));
+            ReportCodecTest.assertSameReport(expected, archive.findById(expected.getId()));
+        }
+        assertFalse(archive.contains(999));
+        assertNull(archive.findById(999));
+
+        ReportAnalytics analytics = new ReportAnalytics();
+        archive.addCountsTo(analytics);
+        assertEquals(reports.size(), analytics.getTotal());
+        assertEquals(reports.size(), analytics.countByStatus(Status.RESOLVED));
+    }
+
+    @Test
+    void findReadsOnlyTheDaysAskedFor() throws IOException {
+        List<SafetyReport> reports = oldResolvedReports(1, 60);
+        ReportArchive archive = new ReportArchive(dir.resolve(ReportArchive.DIRECTORY));
+        archive.write(reports);
+
+        LocalDate first = LONG_AGO.toLocalDate().plusDays(10);
+        LocalDate last = LONG_AGO.toLocalDate().plusDays(19);
+        List<Integer> expected = new ArrayList<>();
+        for (SafetyReport report : reports) {
+            LocalDate day = report.getTimestamp().toLocalDate();
+            if (!day.isBefore(first) && !day.isAfter(last) && report.getCategory().equals("Bullying")) {
+                expected.add(report.getId());
+            }
+        }
+        assertEquals(expected, ids(archive.find(first, last, ReportArchive.matching("Bullying", null, null, null))));
+        assertEquals(reports.size(), archive.find(null, null, report -> true).size());
+        assertEquals(List.of(), archive.find(LocalDate.now().minusDays(30), null, report -> true));
+    }
+
+    @Test
+    void damagedSegmentsAreSetAsideOnOpen() throws IOException {
+        ReportArchive written = new ReportArchive(dir.resolve(ReportArchive.DIRECTORY));
+        written.write(oldResolvedReports(1, 60));
+        Path damaged;
+        try (Stream<Path> segments = Files.list(dir.resolve(ReportArchive.DIRECTORY))) {
+            damaged = segments.sorted().findFirst().orElseThrow();
+        }
+        try (FileChannel file = FileChannel.open(damaged, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            file.read(one, 12);
+            one.put(0, (byte) (one.get(0) ^ 0x55));
+            file.write(one.rewind(), 12); // Inside the header
+        }
+
+        List<String> problems = new ArrayList<>();
+        ReportArchive archive = new ReportArchive(dir.resolve(ReportArchive.DIRECTORY));
+        archive.open(problems::add);
+        assertEquals(1, problems.size());
+        assertFalse(Files.exists(damaged));
+        assertTrue(archive.size() > 0 && archive.size() < 60);
+    }
+
+    @Test
+    void storeArchivesOldResolvedReportsOnOpen() throws IOException {
+        List<SafetyReport> old = oldResolvedReports(1, ReportArchive.MIN_REPORTS_TO_ARCHIVE);
+        List<SafetyReport> snapshot = new ArrayList<>(old);
+        SafetyReport oldButOpen = new SafetyReport(500, "Harassment", "Gym", "High", "still open", LONG_AGO, "In Progress");
+        snapshot.add(oldButOpen);
+        Files.write(dir.resolve(ReportStore.DATA_FILE), ReportCodec.encodeSnapshot(snapshot));
+
+        for (int reopen = 0; reopen < 2; reopen++) {
+            try (ReportStore store = open()) {
+                assertEquals(1, store.getReports().size());
+                assertEquals(oldButOpen.getId(), store.getReports().get(0).getId());
+                assertEquals(old.size(), store.getArchivedCount());
+                assertTrue(store.isArchived(old.get(0).getId()));
+                assertEquals(old.size() + 1, store.getAnalytics().getTotal()); // Totals still count them
+                assertEquals(ids(old), ids(store.findArchived(null, null, report -> true)));
+            }
+        }
+    }
+
+    @Test
+    void replayedReportsAlreadyInTheArchiveAreSkipped() throws IOException {
+        // A crash after the archive was written but before the log was emptied
+        List<SafetyReport> archived = oldResolvedReports(1, ReportArchive.MIN_REPORTS_TO_ARCHIVE);
+        new ReportArchive(dir.resolve(ReportArchive.DIRECTORY)).write(archived);
+        SafetyReport fresh = new SafetyReport(archived.size() + 1, "Bullying", "Bus", "Low", "after the archive",
+            LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS), "New");
+        ReportLog log = new ReportLog(dir.resolve(ReportStore.LOG_FILE));
+        for (SafetyReport report : archived) {
+            log.appendCreated(report);
+        }
+        log.appendCreated(fresh);
+        log.sync();
+        log.close();
+
+        try (ReportStore store = open()) {
+            assertEquals(List.of(fresh.getId()), ids(store.getReports()));
+            assertEquals(archived.size(), store.getArchivedCount());
+            assertEquals(archived.size() + 1, store.getAnalytics().getTotal());
+            assertTrue(store.createReport("Other", "Online", "Low", "next").getId() > fresh.getId());
+        }
+    }
+
+    // Resolved reports a day apart, starting LONG_AGO, cycling through the categories
+    private static List<SafetyReport> oldResolvedReports(int firstId, int count) {
+        List<SafetyReport> reports = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            reports.add(new SafetyReport(firstId + i, SafetyReport.CATEGORIES[i % SafetyReport.CATEGORIES.length],
+                "Library", "Medium", "archived report " + i, LONG_AGO.plusDays(i), "Resolved"));
+        }
+        return reports;
+    }
+
+    private static List<Integer> ids(List<SafetyReport> reports) {
+        return reports.stream().map(SafetyReport::getId).toList();
+    }
+
+    private ReportStore open() {
+        ReportStore store = new ReportStore(dir.resolve(ReportStore.DATA_FILE), dir.resolve(ReportStore.LOG_FILE),
+            dir.resolve(ReportStore.ID_FILE), new ReportIdAllocator(), "test.");
+        store.open(Runnable::run, pending -> { });
+        return store;
+    }
+}
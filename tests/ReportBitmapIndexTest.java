@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReportBitmapIndexTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 10, 15);
+
+    private final List<SafetyReport> reports = new ArrayList<>();
+    private final ReportBitmapIndex index = new ReportBitmapIndex();
+
+    @BeforeEach
+    void indexReports() {
+        Random random = new Random(11);
+        LocalDateTime when = TODAY.minusDays(20).atTime(7, 0);
+        for (int row = 0; row < 500; row++) { // Several words of bits, and days spanning word edges
+            when = when.plusMinutes(random.nextInt(120));
+            SafetyReport report = new SafetyReport(row + 1, pick(SafetyReport.CATEGORIES, random),
+                pick(SafetyReport.LOCATIONS, random), pick(SafetyReport.SEVERITIES, random), "report", when,
+                pick(SafetyReport.STATUSES, random));
+            reports.add(report);
+            index.reportAdded(row, report.getCategoryCode(), report.getLocationCode(), report.getSeverityCode(),
+                report.getStatusCode(), when);
+        }
+    }
+
+    @Test
+    void fieldTestsMatchEveryRowHoldingTheValue() {
+        assertMatches(ReportQuery.is(ColumnarReportStore.CATEGORY, "Bullying"),
+            report -> report.getCategory().equals("Bullying"));
+        assertMatches(ReportQuery.is(ColumnarReportStore.LOCATION, "Bus", "Online"),
+            report -> report.getLocation().equals("Bus") || report.getLocation().equals("Online"));
+        assertMatches(ReportQuery.severityAtLeast(Severity.HIGH),
+            report -> report.getSeverity().equals("High") || report.getSeverity().equals("Urgent"));
+        assertMatches(ReportQuery.is(ColumnarReportStore.CATEGORY, "Not a category"), report -> false);
+    }
+
+    @Test
+    void andOrAndNotCombineLikeTheirPredicates() {
+        ReportQuery bullying = ReportQuery.is(ColumnarReportStore.CATEGORY, "Bullying");
+        ReportQuery urgent = ReportQuery.is(ColumnarReportStore.SEVERITY, "Urgent");
+        Predicate<SafetyReport> isBullying = report -> report.getCategory().equals("Bullying");
+        Predicate<SafetyReport> isUrgent = report -> report.getSeverity().equals("Urgent");
+
+        assertMatches(bullying.and(urgent), isBullying.and(isUrgent));
+        assertMatches(bullying.or(urgent), isBullying.or(isUrgent));
+        assertMatches(ReportQuery.not(bullying), isBullying.negate());
+        assertMatches(ReportQuery.not(bullying.or(urgent)).and(ReportQuery.open()),
+            isBullying.or(isUrgent).negate().and(report -> !report.getStatus().equals("Resolved")));
+        assertMatches(ReportQuery.all(), report -> true);
+        assertEquals(reports.size(), ReportQuery.not(ReportQuery.is(ColumnarReportStore.CATEGORY, "Not a category"))
+            .count(index));
+    }
+
+    @Test
+    void daySpansIncludeBothEnds() {
+        LocalDate first = TODAY.minusDays(12);
+        LocalDate last = TODAY.minusDays(9);
+        assertMatches(ReportQuery.between(first, last), report -> {
+            LocalDate day = report.getTimestamp().toLocalDate();
+            return !day.isBefore(first) && !day.isAfter(last);
+        });
+        LocalDate newest = reports.get(reports.size() - 1).getTimestamp().toLocalDate();
+        assertMatches(ReportQuery.lastDays(1, newest), report -> report.getTimestamp().toLocalDate().equals(newest));
+        assertMatches(ReportQuery.lastDays(3, TODAY.minusYears(1)), report -> false);
+    }
+
+    @Test
+    void statusChangesMoveTheRowBetweenBitmaps() {
+        int row = firstRowWithStatus("New");
+        SafetyReport report = reports.get(row);
+        int oldStatus = report.getStatusCode();
+        report.setStatus("Under Review", report.getTimestamp().plusHours(1));
+        index.statusChanged(row, oldStatus, report.getStatusCode());
+
+        assertMatches(ReportQuery.is(ColumnarReportStore.STATUS, "New"), r -> r.getStatus().equals("New"));
+        assertMatches(ReportQuery.is(ColumnarReportStore.STATUS, "Under Review"),
+            r -> r.getStatus().equals("Under Review"));
+    }
+
+    @Test
+    void adminFilterCombinesTheGivenFields() {
+        ReportQuery query = ReportQuery.matching("Bullying", null, "High", null, true, 7, TODAY);
+        assertMatches(query, report -> report.getCategory().equals("Bullying") && report.getSeverity().equals("High")
+            && !report.getStatus().equals("Resolved")
+            && !report.getTimestamp().toLocalDate().isBefore(TODAY.minusDays(6)));
+        assertNull(ReportQuery.matching(null, null, null, null, false, 0, TODAY));
+    }
+
+    private void assertMatches(ReportQuery query, Predicate<SafetyReport> expected) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < reports.size(); row++) {
+            if (expected.test(reports.get(row))) {
+                rows.add(row);
+            }
+        }
+        assertArrayEquals(rows.stream().mapToInt(Integer::intValue).toArray(), query.rows(index));
+        assertEquals(rows.size(), query.count(index));
+    }
+
+    private int firstRowWithStatus(String status) {
+        for (int row = 0; ; row++) {
+            if (reports.get(row).getStatus().equals(status)) {
+                return row;
+            }
+        }
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
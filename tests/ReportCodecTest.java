@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ReportCodecTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 3, 5, 14, 7, 9, 123_000_000);
+
+    @Test
+    void reportRoundTrips() throws IOException {
+        SafetyReport report = new SafetyReport(42, "Bullying", "Bus", "Urgent", "Pushed on the bus, \"again\" ✓",
+            WHEN, "Under Review");
+        ReportCodec.Writer out = new ReportCodec.Writer(16);
+        ReportCodec.encode(report, out);
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        assertSameReport(report, ReportCodec.decode(in));
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void valuesOutsideTheDictionariesRoundTrip() throws IOException {
+        // Hand-edited or older data keeps its own labels rather than being lost
+        SafetyReport report = new SafetyReport(7, "Vandalism", "Parking Lot", "Critical", "", WHEN, "Escalated");
+        ReportCodec.Writer out = new ReportCodec.Writer(16);
+        ReportCodec.encode(report, out);
+
+        assertSameReport(report, ReportCodec.decode(ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    void snapshotRoundTrips() throws IOException {
+        List<SafetyReport> reports = Arrays.asList(
+            new SafetyReport(1, "Harassment", "Hallway", "High", "one", WHEN, "New"),
+            new SafetyReport(300, "Other", "Online", "Low", "two", WHEN.plusDays(1), "Resolved"),
+            new SafetyReport(70_000, "Unsafe Area", "Gym", "Medium", "three", WHEN.minusYears(3), "Needs Follow-up"));
+
+        List<SafetyReport> decoded = ReportCodec.decodeSnapshot(ByteBuffer.wrap(ReportCodec.encodeSnapshot(reports)));
+
+        assertEquals(reports.size(), decoded.size());
+        for (int i = 0; i < reports.size(); i++) {
+            assertSameReport(reports.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    void emptySnapshotRoundTrips() throws IOException {
+        byte[] snapshot = ReportCodec.encodeSnapshot(List.of());
+        assertEquals(List.of(), ReportCodec.decodeSnapshot(ByteBuffer.wrap(snapshot)));
+        assertArrayEquals(snapshot, ReportCodec.encodeSnapshot(List.of()));
+    }
+
+    @Test
+    void truncatedRecordIsAnIOException() {
+        SafetyReport report = new SafetyReport(5, "Bullying", "Gym", "Low", "cut short", WHEN, "New");
+        ReportCodec.Writer out = new ReportCodec.Writer(16);
+        ReportCodec.encode(report, out);
+        byte[] whole = out.toByteArray();
+
+        for (int length = 0; length < whole.length; length++) {
+            ByteBuffer in = ByteBuffer.wrap(Arrays.copyOf(whole, length));
+            assertThrows(IOException.class, () -> ReportCodec.decode(in), "cut at " + length);
+        }
+    }
+
+    @Test
+    void otherFilesAreNotSnapshots() {
+        assertThrows(IOException.class, () -> ReportCodec.decodeSnapshot(ByteBuffer.wrap(new byte[] {1, 2, 3})));
+        byte[] snapshot = ReportCodec.encodeSnapshot(List.of());
+        snapshot[4] = 99;
+        assertThrows(IOException.class, () -> ReportCodec.decodeSnapshot(ByteBuffer.wrap(snapshot)));
+    }
+
+    static void assertSameReport(SafetyReport expected, SafetyReport actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getLocation(), actual.getLocation());
+        assertEquals(expected.getSeverity(), actual.getSeverity());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getDescription(), actual.getDescription());
+    }
+}
@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportExporterTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 9, 2, 8, 30, 15);
+    private static final String CSV_HEADER = "id,timestamp,category,location,severity,status,description\r\n";
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService formatters = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void stopFormatters() {
+        formatters.shutdownNow();
+    }
+
+    @Test
+    void csvFieldsAreQuotedOnlyWhenTheyNeedIt() throws IOException {
+        String csv = exportCsv(List.of(
+            report(1, "plain words", WHEN),
+            report(2, "a, b", WHEN),
+            report(3, "she said \"stop\"", WHEN),
+            report(4, "line one\nline two", WHEN)));
+        assertEquals(CSV_HEADER
+            + "1,2024-09-02 08:30:15,Bullying,Hallway,Medium,New,plain words\r\n"
+            + "2,2024-09-02 08:30:15,Bullying,Hallway,Medium,New,\"a, b\"\r\n"
+            + "3,2024-09-02 08:30:15,Bullying,Hallway,Medium,New,\"she said \"\"stop\"\"\"\r\n"
+            + "4,2024-09-02 08:30:15,Bullying,Hallway,Medium,New,\"line one\nline two\"\r\n", csv);
+    }
+
+    @Test
+    void csvFieldsThatLookLikeFormulasStayText() throws IOException {
+        String csv = exportCsv(List.of(
+            report(1, "=HYPERLINK(\"http://x\")", WHEN),
+            report(2, "+1", WHEN),
+            report(3, "-2,3", WHEN),
+            report(4, "@SUM(A1)", WHEN),
+            report(5, "\tindented", WHEN),
+            report(6, "a = b", WHEN)));
+        List<String> descriptions = new ArrayList<>();
+        for (String line : csv.substring(CSV_HEADER.length()).split("\r\n")) {
+            descriptions.add(line.substring(line.indexOf(",New,") + 5));
+        }
+        assertEquals(List.of("\"'=HYPERLINK(\"\"http://x\"\")\"", "'+1", "\"'-2,3\"", "'@SUM(A1)", "'\tindented",
+            "a = b"), descriptions);
+    }
+
+    @Test
+    void gzipOutputIsOneMemberPerChunkAndReadsBackWhole() throws IOException, DataFormatException {
+        List<SafetyReport> reports = new ArrayList<>();
+        for (int id = 1; id <= 10_000; id++) { // Three chunks
+            reports.add(report(id, "report " + id, WHEN.plusMinutes(id)));
+        }
+        Path plain = dir.resolve("plain.csv");
+        Path gzipped = dir.resolve("export.csv.gz");
+        exporter(ReportExporter.Format.CSV, false, ReportExporter.Filter.all()).export(reports, plain, (done, total) -> { });
+        int written = exporter(ReportExporter.Format.CSV, true, ReportExporter.Filter.all())
+            .export(reports, gzipped, (done, total) -> { });
+
+        assertEquals(reports.size(), written);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzipped))) {
+            assertArrayEquals(Files.readAllBytes(plain), in.readAllBytes());
+        }
+        assertEquals(4, gzipMembers(Files.readAllBytes(gzipped))); // The header, then each chunk
+    }
+
+    @Test
+    void onlyReportsPassingTheFilterAreWritten() throws IOException {
+        SafetyReport resolved = report(2, "second", WHEN.plusDays(1));
+        resolved.setStatus("Resolved", WHEN.plusDays(2));
+        List<SafetyReport> reports = List.of(
+            report(1, "first", WHEN),
+            resolved,
+            report(3, "third", WHEN.plusDays(1).plusHours(3)),
+            report(4, "fourth", WHEN.plusDays(2)));
+        // From the start of the day after WHEN, up to but not including the day after that
+        ReportExporter.Filter filter = new ReportExporter.Filter(WHEN.toLocalDate().plusDays(1).atStartOfDay(),
+            WHEN.toLocalDate().plusDays(2).atStartOfDay(), "Bullying", "New");
+        Path file = dir.resolve("export.jsonl");
+        int written = exporter(ReportExporter.Format.JSON_LINES, false, filter).export(reports, file, (d, t) -> { });
+
+        assertEquals(1, written);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        Map<String, String> row = Json.parseObject(lines.get(0));
+        assertEquals("3", row.get("id"));
+        assertEquals("third", row.get("description"));
+        assertEquals(WHEN.toLocalDate().plusDays(1), filter.firstDay());
+        assertEquals(WHEN.toLocalDate().plusDays(1), filter.lastDay());
+    }
+
+    @Test
+    void concatenatedListsExportInOrder() throws IOException {
+        List<SafetyReport> archived = List.of(report(1, "archived", WHEN.minusYears(1)));
+        List<SafetyReport> live = List.of(report(7, "live", WHEN));
+        String csv = exportCsv(ReportExporter.concat(archived, live));
+        assertTrue(csv.indexOf("\r\n1,") < csv.indexOf("\r\n7,"), csv);
+        assertEquals(live, ReportExporter.concat(List.of(), live));
+    }
+
+    private String exportCsv(List<SafetyReport> reports) throws IOException {
+        Path file = dir.resolve("export.csv");
+        exporter(ReportExporter.Format.CSV, false, ReportExporter.Filter.all()).export(reports, file, (done, total) -> { });
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+
+    private ReportExporter exporter(ReportExporter.Format format, boolean gzip, ReportExporter.Filter filter) {
+        return new ReportExporter(format, gzip, filter, formatters);
+    }
+
+    // Walks the members one by one: a 10-byte header as GZIPOutputStream writes it,
+    // the deflated data, then an 8-byte trailer
+    private static int gzipMembers(byte[] bytes) throws DataFormatException {
+        int members = 0;
+        int at = 0;
+        while (at < bytes.length) {
+            Inflater inflater = new Inflater(true);
+            inflater.setInput(bytes, at + 10, bytes.length - at - 10);
+            byte[] scratch = new byte[1 << 16];
+            while (!inflater.finished()) {
+                inflater.inflate(scratch);
+            }
+            at = bytes.length - inflater.getRemaining() + 8;
+            inflater.end();
+            members++;
+        }
+        return members;
+    }
+
+    private static SafetyReport report(int id, String description, LocalDateTime when) {
+        return new SafetyReport(id, "Bullying", "Hallway", "Medium", description, when, "New");
+    }
+}
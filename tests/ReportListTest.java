@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportListTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 2, 1, 10, 0);
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 5000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentAppendsEachGetTheirOwnRow() throws InterruptedException {
+        ReportList list = new ReportList();
+        SafetyReport[][] added = new SafetyReport[THREADS][PER_THREAD];
+        int[][] rows = new int[THREADS][PER_THREAD];
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                SafetyReport report = report(thread * PER_THREAD + i + 1);
+                added[thread][i] = report;
+                rows[thread][i] = list.append(report);
+                // Usable by index as soon as append() returns, published or not
+                assertSame(report, list.get(rows[thread][i]));
+            }
+        });
+
+        assertEquals(THREADS * PER_THREAD, list.size());
+        Set<Integer> seen = new HashSet<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < PER_THREAD; i++) {
+                assertTrue(seen.add(rows[thread][i]), "row handed out twice");
+                assertSame(added[thread][i], list.findById(added[thread][i].getId()));
+            }
+        }
+        assertEquals(THREADS * PER_THREAD, list.getMaxId());
+    }
+
+    @Test
+    void freezeHoldsEveryAppendThatReturned() throws InterruptedException {
+        ReportList list = new ReportList();
+        AtomicIntegerArray lastRow = new AtomicIntegerArray(THREADS); // Row + 1 of each thread's latest append
+        Thread freezer = new Thread(() -> {
+            for (int round = 0; round < 2000; round++) {
+                int[] returned = new int[THREADS];
+                for (int thread = 0; thread < THREADS; thread++) {
+                    returned[thread] = lastRow.get(thread);
+                }
+                List<SafetyReport> frozen = list.freeze();
+                for (int thread = 0; thread < THREADS; thread++) {
+                    assertTrue(returned[thread] <= frozen.size(), "a returned append is missing from the view");
+                }
+                for (SafetyReport report : frozen) {
+                    assertTrue(report != null);
+                }
+            }
+        });
+        List<Throwable> failures = new ArrayList<>();
+        freezer.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+        freezer.start();
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                lastRow.set(thread, list.append(report(thread * PER_THREAD + i + 1)) + 1);
+            }
+        });
+        freezer.join();
+        assertEquals(List.of(), failures);
+    }
+
+    @Test
+    void rebaseKeepsReportsAndRowsInPlace() throws IOException {
+        ReportList list = new ReportList();
+        for (int id = 1; id <= 10; id++) {
+            list.append(report(id));
+        }
+        SafetyReport third = list.get(2);
+        List<SafetyReport> frozen = list.freeze();
+        list.append(report(11)); // Added while the snapshot is written
+        Path path = dir.resolve("reports.dat");
+        ColumnarReportStore.write(path, frozen);
+
+        list.rebase(ColumnarReportStore.open(path));
+        assertEquals(11, list.size());
+        assertSame(third, list.get(2));
+        assertEquals("report 3", third.getDescription()); // Now read from the snapshot
+        for (int row = 0; row < 11; row++) {
+            assertEquals(row + 1, list.get(row).getId());
+            assertEquals(row, list.indexOfId(row + 1));
+        }
+        list.close();
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private static void runConcurrently(Worker worker) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int index = thread;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run(index);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.setUncaughtExceptionHandler((th, e) -> {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(List.of(), failures);
+    }
+
+    private static SafetyReport report(int id) {
+        return new SafetyReport(id, "Bullying", "Hallway", "Low", "report " + id, WHEN, "New");
+    }
+}
@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportLogTest {
+    private static final LocalDateTime WHEN = LocalDateTime.of(2024, 11, 20, 12, 0, 1, 500_000_000);
+
+    @TempDir
+    Path dir;
+
+    // Records replayed, as "created <id>" or "status <id> <status> <at>"
+    private static final class Recorder implements ReportLog.Handler {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void reportCreated(SafetyReport report) {
+            records.add("created " + report.getId());
+        }
+
+        @Override
+        public void statusChanged(int reportId, String status, LocalDateTime at) {
+            records.add("status " + reportId + " " + status + " " + at);
+        }
+    }
+
+    @Test
+    void replaysRecordsInOrder() throws IOException {
+        Path path = dir.resolve("reports.log");
+        try (ReportLog log = new ReportLog(path)) {
+            log.appendCreated(report(1));
+            log.appendCreated(report(2));
+            log.appendStatusChanged(1, "Under Review", WHEN.plusMinutes(3));
+        }
+
+        Recorder recorder = new Recorder();
+        assertEquals(3, ReportLog.replay(path, recorder));
+        assertEquals(List.of("created 1", "created 2", "status 1 Under Review " + WHEN.plusMinutes(3)),
+            recorder.records);
+    }
+
+    @Test
+    void missingLogReplaysNothing() throws IOException {
+        assertEquals(0, ReportLog.replay(dir.resolve("none.log"), new Recorder()));
+    }
+
+    @Test
+    void tornTailIsCutOffAndKeptAside() throws IOException {
+        Path path = dir.resolve("reports.log");
+        try (ReportLog log = new ReportLog(path)) {
+            log.appendCreated(report(1));
+            log.appendCreated(report(2));
+        }
+        long intact = Files.size(path);
+        try (ReportLog log = new ReportLog(path)) {
+            log.appendCreated(report(3));
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.truncate(Files.size(path) - 5); // A crash part way through the last write
+        }
+
+        Recorder recorder = new Recorder();
+        assertEquals(2, ReportLog.replay(path, recorder));
+        assertEquals(List.of("created 1", "created 2"), recorder.records);
+        assertEquals(intact, Files.size(path));
+        assertEquals(1, corruptFilesBeside(path));
+
+        // Later appends follow on from the last good record
+        try (ReportLog log = new ReportLog(path)) {
+            log.appendCreated(report(4));
+        }
+        Recorder again = new Recorder();
+        assertEquals(3, ReportLog.replay(path, again));
+        assertEquals(List.of("created 1", "created 2", "created 4"), again.records);
+    }
+
+    @Test
+    void corruptRecordEndsReplayThere() throws IOException {
+        Path path = dir.resolve("reports.log");
+        try (ReportLog log = new ReportLog(path)) {
+            log.appendCreated(report(1));
+        }
+        long firstEnd = Files.size(path);
+        try (ReportLog log = new ReportLog(path)) {
+            log.appendCreated(report(2));
+            log.appendCreated(report(3));
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long inSecondPayload = firstEnd + 12;
+            file.read(one, inSecondPayload);
+            one.put(0, (byte) (one.get(0) ^ 0x01));
+            file.write(one.rewind(), inSecondPayload);
+        }
+
+        Recorder recorder = new Recorder();
+        assertEquals(1, ReportLog.replay(path, recorder));
+        assertEquals(List.of("created 1"), recorder.records);
+        assertEquals(firstEnd, Files.size(path));
+    }
+
+    @Test
+    void olderStatusRecordsHaveNoTime() throws IOException {
+        // A type 2 record as written before status changes were timed
+        ReportCodec.Writer record = new ReportCodec.Writer(16);
+        record.writeByte(ReportLog.STATUS_CHANGED);
+        record.writeVarLong(12);
+        ReportCodec.writeCode(record, SafetyReport.STATUSES, "Resolved");
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.size());
+        ByteBuffer bytes = ByteBuffer.allocate(8 + record.size());
+        bytes.putInt(record.size()).putInt((int) crc.getValue()).put(record.array(), 0, record.size());
+        Path path = dir.resolve("reports.log");
+        Files.write(path, bytes.array());
+
+        Recorder recorder = new Recorder();
+        assertEquals(1, ReportLog.replay(path, recorder));
+        assertEquals(List.of("status 12 Resolved null"), recorder.records);
+    }
+
+    private static SafetyReport report(int id) {
+        return new SafetyReport(id, "Bullying", "Cafeteria", "High", "report " + id, WHEN, "New");
+    }
+
+    private static long corruptFilesBeside(Path path) throws IOException {
+        try (Stream<Path> files = Files.list(path.getParent())) {
+            return files.filter(p -> p.getFileName().toString().startsWith(path.getFileName() + ".corrupt-")).count();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportServerTest {
+    private static final String TOKEN = "test-staff-token";
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    @TempDir
+    Path dir;
+
+    private DistrictStore district;
+    private ReportServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        district = new DistrictStore(dir, Runnable::run, pending -> { });
+        district.open();
+        server = new ReportServer(district, new InetSocketAddress("127.0.0.1", 0), TOKEN);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+        district.close();
+    }
+
+    @Test
+    void anyoneMayFileAReport() throws Exception {
+        HttpResponse<String> filed = post("/api/reports", report("Bullying", "Bus", "High", "on the way home"), null);
+        assertEquals(201, filed.statusCode());
+        Map<String, String> report = Json.parseObject(filed.body());
+        assertEquals("New", report.get("status"));
+        assertEquals("on the way home", report.get("description"));
+        assertEquals(report.get("id"), String.valueOf(district.school(DistrictStore.DEFAULT_SCHOOL).getReports()
+            .get(0).getId()));
+    }
+
+    @Test
+    void readingReportsTakesTheStaffToken() throws Exception {
+        post("/api/reports", report("Bullying", "Bus", "High", "one"), null);
+        for (String token : new String[] {null, "wrong", TOKEN + "x", ""}) {
+            HttpResponse<String> denied = get("/api/reports", token);
+            assertEquals(401, denied.statusCode(), String.valueOf(token));
+            assertTrue(denied.headers().firstValue("WWW-Authenticate").orElse("").startsWith("Bearer"));
+        }
+        assertEquals(401, get("/api/reports?token=" + TOKEN, null).statusCode()); // Only the events stream
+        assertEquals(401, get("/api/stats", null).statusCode());
+        assertEquals(401, send(HttpRequest.newBuilder(uri("/api/reports/1/status"))
+            .PUT(HttpRequest.BodyPublishers.ofString("{\"status\":\"Under Review\"}")).build()).statusCode());
+        assertEquals(200, get("/api/reports", TOKEN).statusCode());
+        assertEquals(200, get("/api/trends", null).statusCode()); // Counts only, no reports
+    }
+
+    @Test
+    void invalidReportsAreRejected() throws Exception {
+        String longDescription = "x".repeat(5001);
+        String[] bad = {
+            report("Not a category", "Bus", "High", "text"),
+            report("Bullying", "Moon", "High", "text"),
+            report("Bullying", "Bus", "Apocalyptic", "text"),
+            report("Bullying", "Bus", "High", "   "),
+            report("Bullying", "Bus", "High", longDescription),
+            "{\"category\":\"Bullying\",\"location\":\"Bus\",\"severity\":\"High\"}",
+            "{\"category\":\"Bullying\"",
+            "not json",
+            "{\"description\":\"" + "y".repeat(70_000) + "\"}", // Over the body limit
+        };
+        for (String body : bad) {
+            HttpResponse<String> rejected = post("/api/reports", body, null);
+            assertEquals(400, rejected.statusCode(), body.length() > 100 ? body.substring(0, 100) : body);
+            assertTrue(Json.parseObject(rejected.body()).get("error") != null);
+        }
+        assertEquals(0, district.school(DistrictStore.DEFAULT_SCHOOL).getReports().size());
+        assertEquals(201, post("/api/reports", report("Bullying", "Bus", "High", "x".repeat(5000)), null).statusCode());
+    }
+
+    @Test
+    void listingsPageNewestFirstAndFilter() throws Exception {
+        List<String> filed = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String category = i % 2 == 0 ? "Bullying" : "Harassment";
+            HttpResponse<String> response = post("/api/reports", report(category, "Gym", "Low", "report " + i), null);
+            assertEquals(201, response.statusCode());
+            filed.add(Json.parseObject(response.body()).get("id"));
+        }
+        HttpResponse<String> page = get("/api/reports?offset=1&limit=2", TOKEN);
+        assertEquals(200, page.statusCode());
+        assertTrue(page.body().startsWith("{\"total\":6,"), page.body());
+        assertEquals(List.of(filed.get(4), filed.get(3)), ids(page.body()));
+
+        HttpResponse<String> bullying = get("/api/reports?category=Bullying&days=1", TOKEN);
+        assertTrue(bullying.body().startsWith("{\"total\":3,"), bullying.body());
+        assertEquals(List.of(filed.get(4), filed.get(2), filed.get(0)), ids(bullying.body()));
+        assertEquals(6, ids(get("/api/reports?limit=100000", TOKEN).body()).size());
+        assertEquals(1, ids(get("/api/reports?limit=0", TOKEN).body()).size()); // At least one
+        assertEquals(List.of(), ids(get("/api/reports?offset=99", TOKEN).body()));
+        assertEquals(400, get("/api/reports?limit=many", TOKEN).statusCode());
+    }
+
+    @Test
+    void statusChangesOffTheWorkflowAreAConflict() throws Exception {
+        String id = Json.parseObject(post("/api/reports", report("Bullying", "Bus", "High", "text"), null).body())
+            .get("id");
+        HttpResponse<String> skipped = putStatus(id, "Resolved");
+        assertEquals(409, skipped.statusCode());
+        assertTrue(Json.parseObject(skipped.body()).get("error").contains("cannot go from New to Resolved"));
+        assertEquals(400, putStatus(id, "Closed").statusCode());
+
+        HttpResponse<String> reviewed = putStatus(id, "Under Review");
+        assertEquals(200, reviewed.statusCode());
+        assertEquals("Under Review", Json.parseObject(reviewed.body()).get("status"));
+        assertEquals(409, putStatus(id, "Under Review").statusCode());
+    }
+
+    @Test
+    void retriedUploadsFileNothingTwiceAndBadItemsFailAlone() throws Exception {
+        String batch = "[" + syncItem("key-aaaaaaaa", "first") + "," + syncItem("short", "bad key") + ","
+            + "{\"key\":\"key-cccccccc\",\"category\":\"Bullying\"}," + syncItem("key-bbbbbbbb", "second") + "]";
+        HttpResponse<String> uploaded = post("/api/sync/reports", batch, null);
+        assertEquals(200, uploaded.statusCode());
+        assertEquals(2, ids(uploaded.body()).size());
+        assertEquals(2, count(uploaded.body(), "\"error\":"));
+
+        // The reply was lost: the client sends it again, gzipped this time
+        HttpResponse<String> retried = send(HttpRequest.newBuilder(uri("/api/sync/reports"))
+            .header("Content-Encoding", "gzip")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(gzip(batch))).build());
+        assertEquals(ids(uploaded.body()), ids(retried.body()));
+        assertEquals(2, district.school(DistrictStore.DEFAULT_SCHOOL).getReports().size());
+    }
+
+    @Test
+    void uploadsPastTheLimitsAreRejected() throws Exception {
+        StringBuilder tooMany = new StringBuilder("[");
+        for (int i = 0; i <= 100; i++) {
+            tooMany.append(i == 0 ? "" : ",").append(syncItem(String.format("key-%08d", i), "item " + i));
+        }
+        assertEquals(400, post("/api/sync/reports", tooMany.append(']').toString(), null).statusCode());
+        assertEquals(400, send(HttpRequest.newBuilder(uri("/api/sync/reports"))
+            .header("Content-Encoding", "gzip")
+            .POST(HttpRequest.BodyPublishers.ofString("[not gzip]")).build()).statusCode());
+        assertEquals(400, send(HttpRequest.newBuilder(uri("/api/sync/reports"))
+            .header("Content-Encoding", "br")
+            .POST(HttpRequest.BodyPublishers.ofString("[]")).build()).statusCode());
+        assertEquals(0, district.school(DistrictStore.DEFAULT_SCHOOL).getReports().size());
+    }
+
+    @Test
+    void changesFeedSendsOnlyWhatMovedSinceTheCursor() throws Exception {
+        String first = Json.parseObject(post("/api/reports", report("Bullying", "Bus", "High", "one"), null).body())
+            .get("id");
+        assertEquals(401, get("/api/sync/changes", null).statusCode());
+
+        HttpResponse<String> reset = get("/api/sync/changes?since=unknown.5", TOKEN);
+        assertTrue(reset.body().startsWith("{\"reset\":true,"), reset.body());
+        assertEquals(List.of(first), ids(reset.body()));
+        String cursor = cursor(reset.body());
+        assertEquals("\"" + cursor + "\"", reset.headers().firstValue("ETag").orElse(null));
+
+        assertEquals(304, send(HttpRequest.newBuilder(uri("/api/sync/changes?since=" + cursor))
+            .header("Authorization", "Bearer " + TOKEN).header("If-None-Match", "\"" + cursor + "\"").build())
+            .statusCode());
+
+        String second = Json.parseObject(post("/api/reports", report("Harassment", "Gym", "Low", "two"), null).body())
+            .get("id");
+        assertEquals(200, putStatus(first, "Under Review").statusCode());
+        HttpResponse<String> delta = get("/api/sync/changes?since=" + cursor, TOKEN);
+        assertTrue(delta.body().startsWith("{\"reset\":false,"), delta.body());
+        assertEquals(List.of(second, first), ids(delta.body()));
+
+        HttpResponse<String> limited = get("/api/sync/changes?limit=1&since=" + cursor, TOKEN);
+        assertTrue(limited.body().contains("\"more\":true"), limited.body());
+        assertEquals(List.of(second), ids(limited.body()));
+        assertEquals(List.of(first), ids(get("/api/sync/changes?since=" + cursor(limited.body()), TOKEN).body()));
+    }
+
+    @Test
+    void unknownSchoolsAndPathsAreNotFound() throws Exception {
+        assertEquals(404, post("/api/reports?school=nowhere", report("Bullying", "Bus", "High", "text"), null)
+            .statusCode());
+        assertEquals(404, get("/api/reports/12/notes", TOKEN).statusCode());
+        assertEquals(404, send(HttpRequest.newBuilder(uri("/api/reports/999/status"))
+            .header("Authorization", "Bearer " + TOKEN)
+            .PUT(HttpRequest.BodyPublishers.ofString("{\"status\":\"Under Review\"}")).build()).statusCode());
+        assertEquals(405, send(HttpRequest.newBuilder(uri("/api/reports")).DELETE().build()).statusCode());
+    }
+
+    static String report(String category, String location, String severity, String description) {
+        return "{\"category\":" + Json.quote(category) + ",\"location\":" + Json.quote(location)
+            + ",\"severity\":" + Json.quote(severity) + ",\"description\":" + Json.quote(description) + "}";
+    }
+
+    private static String syncItem(String key, String description) {
+        return "{\"key\":" + Json.quote(key) + "," + report("Bullying", "Library", "Medium", description).substring(1);
+    }
+
+    private static String cursor(String json) {
+        Matcher matcher = Pattern.compile("\"cursor\":\"([^\"]+)\"").matcher(json);
+        assertTrue(matcher.find(), json);
+        return matcher.group(1);
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int at = text.indexOf(part); at >= 0; at = text.indexOf(part, at + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<String> ids(String json) {
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = ID.matcher(json);
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+    private HttpResponse<String> get(String path, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).GET();
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return send(request.build());
+    }
+
+    private HttpResponse<String> post(String path, String body, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return send(request.build());
+    }
+
+    private HttpResponse<String> putStatus(String id, String status) throws Exception {
+        return send(HttpRequest.newBuilder(uri("/api/reports/" + id + "/status"))
+            .header("Authorization", "Bearer " + TOKEN)
+            .PUT(HttpRequest.BodyPublishers.ofString("{\"status\":" + Json.quote(status) + "}")).build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+}
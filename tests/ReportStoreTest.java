@@ -0,0 +1,162 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportStoreTest {
+    // Recent enough that nothing is archived on open
+    private static final LocalDateTime WHEN = LocalDateTime.now().minusDays(2).truncatedTo(ChronoUnit.MILLIS);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void javaSerializedSnapshotIsMigrated() throws IOException {
+        List<SafetyReport> reports = sampleReports();
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(dir.resolve(ReportStore.DATA_FILE)))) {
+            out.writeObject(new ArrayList<>(reports));
+        }
+        assertMigrated(reports);
+    }
+
+    @Test
+    void codecSnapshotIsMigrated() throws IOException {
+        List<SafetyReport> reports = sampleReports();
+        Files.write(dir.resolve(ReportStore.DATA_FILE), ReportCodec.encodeSnapshot(reports));
+        assertMigrated(reports);
+    }
+
+    @Test
+    void retriedBatchFilesNothingTwice() {
+        List<String> keys = List.of("key-aaaaaaaa", "key-bbbbbbbb");
+        int[] first;
+        try (ReportStore store = open()) {
+            first = store.submitBatch(keys, batch(store, 2));
+            int[] retried = store.submitBatch(keys, batch(store, 2));
+            assertArrayEquals(first, retried);
+            assertNotEquals(first[0], first[1]);
+            assertEquals(2, store.getReports().size());
+
+            // A new key alongside a retried one files only the new report
+            int[] mixed = store.submitBatch(List.of("key-bbbbbbbb", "key-cccccccc"), batch(store, 2));
+            assertEquals(first[1], mixed[0]);
+            assertEquals(3, store.getReports().size());
+        }
+
+        // The keys outlive a restart
+        try (ReportStore store = open()) {
+            assertArrayEquals(first, store.submitBatch(keys, batch(store, 2)));
+            assertEquals(3, store.getReports().size());
+        }
+    }
+
+    @Test
+    void statusTimeSurvivesReplay() {
+        LocalDateTime sentBack;
+        try (ReportStore store = open()) {
+            SafetyReport report = store.createReport("Harassment", "Hallway", "High", "needs another look");
+            store.submit(report);
+            for (String status : List.of("Under Review", "In Progress", "Needs Follow-up")) {
+                store.changeStatus(report, status);
+            }
+            sentBack = report.getStatusTime().truncatedTo(ChronoUnit.MILLIS);
+        }
+
+        try (ReportStore store = open()) {
+            SafetyReport report = store.getReports().get(0);
+            assertEquals("Needs Follow-up", report.getStatus());
+            assertEquals(sentBack, report.getStatusTime());
+            LocalDateTime due = TriageQueue.deadline(Severity.HIGH, report.getStatusCode(), report.getTimestamp(),
+                report.getStatusTime());
+            assertEquals(1, store.getTriage().overdueCount(due.plusMinutes(1)));
+            assertEquals(0, store.getTriage().overdueCount(due.minusMinutes(1)));
+        }
+    }
+
+    @Test
+    void reportsSubmittedDuringCompactionsSurviveARestart() throws InterruptedException {
+        int threads = 4;
+        int perThread = 1500; // Several compactions' worth
+        Set<Integer> submitted = ConcurrentHashMap.newKeySet();
+        try (ReportStore store = open()) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread writer = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        SafetyReport report = store.createReport("Other", "Library", "Low", "during compaction");
+                        store.submit(report);
+                        submitted.add(report.getId());
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        try (ReportStore store = open()) {
+            assertEquals(threads * perThread, store.getReports().size());
+            for (int id : submitted) {
+                assertTrue(store.findById(id) != null, "report " + id + " lost");
+            }
+        }
+    }
+
+    private void assertMigrated(List<SafetyReport> reports) throws IOException {
+        try (ReportStore store = open()) {
+            assertEquals(reports.size(), store.getReports().size());
+        }
+        // Rewritten in the columnar format on open, and read back from it
+        try (InputStream in = Files.newInputStream(dir.resolve(ReportStore.DATA_FILE))) {
+            assertTrue(ColumnarReportStore.isColumnarSnapshot(in.readNBytes(5)));
+        }
+        try (ReportStore store = open()) {
+            assertEquals(reports.size(), store.getReports().size());
+            for (SafetyReport expected : reports) {
+                ReportCodecTest.assertSameReport(expected, store.findById(expected.getId()));
+            }
+            SafetyReport created = store.createReport("Other", "Online", "Low", "after migrating");
+            assertTrue(created.getId() > 30, "IDs carry on past the migrated ones");
+        }
+    }
+
+    private ReportStore open() {
+        ReportStore store = new ReportStore(dir.resolve(ReportStore.DATA_FILE), dir.resolve(ReportStore.LOG_FILE),
+            dir.resolve(ReportStore.ID_FILE), new ReportIdAllocator(), "test.");
+        store.open(Runnable::run, pending -> { });
+        return store;
+    }
+
+    private static List<SafetyReport> sampleReports() {
+        return List.of(
+            new SafetyReport(3, "Bullying", "Bus", "Urgent", "on the way home", WHEN, "New"),
+            new SafetyReport(10, "Unsafe Area", "Playground", "Medium", "broken fence", WHEN.plusHours(1),
+                "In Progress"),
+            new SafetyReport(30, "Vandalism", "Parking Lot", "Low", "a label from an older version", WHEN,
+                "Resolved"));
+    }
+
+    private static List<SafetyReport> batch(ReportStore store, int size) {
+        List<SafetyReport> batch = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            batch.add(store.createReport("Bullying", "Cafeteria", "Medium", "uploaded " + i));
+        }
+        return batch;
+    }
+}
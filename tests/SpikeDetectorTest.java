@@ -0,0 +1,112 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpikeDetectorTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 10, 15, 13, 0);
+
+    @Test
+    void aSuddenJumpIsASpikeOnceWarmedUp() {
+        SpikeDetector detector = new SpikeDetector();
+        background(detector);
+        burst(detector, "Harassment", "Bathroom", 6);
+
+        List<SpikeDetector.Hotspot> spikes = detector.getSpikes(NOW);
+        assertEquals(1, spikes.size());
+        SpikeDetector.Hotspot spike = spikes.get(0);
+        assertEquals("Harassment", spike.category);
+        assertEquals("Bathroom", spike.location);
+        assertEquals(6, spike.count);
+        assertTrue(spike.expected < 1);
+        assertEquals(NOW.minusMinutes(15), spike.since); // The fifth, which crossed the line
+    }
+
+    @Test
+    void theUsualLevelIsNotASpike() {
+        SpikeDetector detector = new SpikeDetector();
+        LocalDateTime start = NOW.minusDays(2);
+        for (LocalDateTime when = start; when.isBefore(NOW); when = when.plusMinutes(SpikeDetector.SLICE_MINUTES)) {
+            for (int i = 0; i < 2; i++) {
+                record(detector, "Bullying", "Hallway", when); // Two a slice, every slice
+            }
+        }
+        assertEquals(List.of(), detector.getSpikes(NOW));
+        assertEquals(10, detector.getBusiest(NOW).get(0).count); // NOW's own slice is still empty
+    }
+
+    @Test
+    void nothingSpikesBeforeADayOfBaseline() {
+        SpikeDetector detector = new SpikeDetector();
+        burst(detector, "Harassment", "Bathroom", 9);
+        assertEquals(List.of(), detector.getSpikes(NOW));
+        assertEquals(9, detector.getBusiest(NOW).get(0).count);
+    }
+
+    @Test
+    void spikesEndWhenTheHourQuietsDown() {
+        SpikeDetector detector = new SpikeDetector();
+        background(detector);
+        burst(detector, "Harassment", "Bathroom", 6);
+        assertEquals(1, detector.getSpikes(NOW).size());
+
+        assertEquals(List.of(), detector.getSpikes(NOW.plusHours(2)));
+        assertEquals(List.of(), detector.getBusiest(NOW.plusHours(2)));
+    }
+
+    @Test
+    void busiestPairsComeMostFirst() {
+        SpikeDetector detector = new SpikeDetector();
+        burst(detector, "Bullying", "Bus", 2);
+        burst(detector, "Harassment", "Bathroom", 5);
+        burst(detector, "Other", "Online", 3);
+
+        List<SpikeDetector.Hotspot> busiest = detector.getBusiest(NOW);
+        assertEquals(List.of("Harassment", "Other", "Bullying"), busiest.stream().map(h -> h.category).toList());
+        assertEquals(List.of(5, 3, 2), busiest.stream().map(h -> h.count).toList());
+        assertNull(busiest.get(0).since);
+    }
+
+    @Test
+    void seededDetectorSkipsOldReportsButCountsTheirTime() {
+        SpikeDetector seeded = new SpikeDetector(NOW);
+        record(seeded, "Bullying", "Bus", NOW.minusYears(1));
+        assertEquals(List.of(), seeded.getBusiest(NOW.minusYears(1))); // Never counted
+
+        SpikeDetector unseeded = new SpikeDetector();
+        record(unseeded, "Bullying", "Bus", NOW.minusYears(1));
+        assertEquals(1, unseeded.getBusiest(NOW.minusYears(1)).get(0).count);
+
+        // The year before still warms it up, so a burst now is a spike at once
+        burst(seeded, "Harassment", "Bathroom", 6);
+        SpikeDetector.Hotspot spike = seeded.getSpikes(NOW).get(0);
+        assertEquals("Harassment", spike.category);
+        assertNotNull(spike.since);
+
+        SpikeDetector fresh = new SpikeDetector(NOW);
+        burst(fresh, "Harassment", "Bathroom", 6);
+        assertEquals(List.of(), fresh.getSpikes(NOW));
+    }
+
+    // Two days of a report every two hours elsewhere, enough for the warm-up
+    private static void background(SpikeDetector detector) {
+        for (LocalDateTime when = NOW.minusDays(2); when.isBefore(NOW.minusHours(1)); when = when.plusHours(2)) {
+            record(detector, "Bullying", "Hallway", when);
+        }
+    }
+
+    // Reports five minutes apart, ending ten minutes before NOW; up to nine fit in the hour
+    private static void burst(SpikeDetector detector, String category, String location, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            record(detector, category, location, NOW.minusMinutes(10 + 5 * i));
+        }
+    }
+
+    private static void record(SpikeDetector detector, String category, String location, LocalDateTime when) {
+        detector.record(FieldDictionary.CATEGORY.code(category), FieldDictionary.LOCATION.code(location), when);
+    }
+}
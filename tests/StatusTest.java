@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatusTest {
+    // Every move the workflow allows; any other pair is refused
+    private static final Map<Status, Set<Status>> ALLOWED = Map.of(
+        Status.NEW, EnumSet.of(Status.UNDER_REVIEW),
+        Status.UNDER_REVIEW, EnumSet.of(Status.IN_PROGRESS),
+        Status.IN_PROGRESS, EnumSet.of(Status.RESOLVED, Status.NEEDS_FOLLOW_UP),
+        Status.NEEDS_FOLLOW_UP, EnumSet.of(Status.IN_PROGRESS, Status.RESOLVED),
+        Status.RESOLVED, EnumSet.of(Status.NEEDS_FOLLOW_UP));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void transitionTableIsTheWorkflow() {
+        for (Status from : Status.values()) {
+            for (Status to : Status.values()) {
+                assertEquals(ALLOWED.get(from).contains(to), from.canMoveTo(to), from + " -> " + to);
+            }
+        }
+        assertEquals(EnumSet.of(Status.RESOLVED), EnumSet.complementOf(openStatuses()));
+    }
+
+    @Test
+    void labelsMapToTheirStatus() {
+        for (Status status : Status.values()) {
+            assertEquals(status, Status.fromLabel(status.label));
+            assertEquals(status.label, status.toString());
+        }
+        assertNull(Status.fromLabel("Closed"));
+        assertNull(Status.fromLabel(null));
+    }
+
+    @Test
+    void storeRefusesMovesOffTheTableAndKeepsNoRecordOfThem() {
+        int id;
+        try (ReportStore store = open()) {
+            SafetyReport report = store.createReport("Bullying", "Bus", "Medium", "on the bus");
+            store.submit(report);
+            id = report.getId();
+            assertThrows(IllegalStateException.class, () -> store.changeStatus(report, "Resolved"));
+            assertThrows(IllegalArgumentException.class, () -> store.changeStatus(report, "Closed"));
+            assertEquals("New", report.getStatus());
+
+            store.changeStatus(report, "Under Review");
+            assertThrows(IllegalStateException.class, () -> store.changeStatus(report, "New"));
+            assertThrows(IllegalStateException.class, () -> store.changeStatus(report, "Under Review"));
+            assertEquals("Under Review", report.getStatus());
+        }
+        try (ReportStore store = open()) {
+            assertEquals("Under Review", store.findById(id).getStatus());
+        }
+    }
+
+    @Test
+    void batchChangesSkipReportsThatCannotMove() {
+        try (ReportStore store = open()) {
+            List<SafetyReport> batch = List.of(
+                store.createReport("Bullying", "Bus", "Low", "one"),
+                store.createReport("Bullying", "Bus", "Low", "two"),
+                store.createReport("Bullying", "Bus", "Low", "three"));
+            batch.forEach(store::submit);
+            store.changeStatus(batch.get(1), "Under Review");
+
+            assertEquals(2, store.changeStatus(batch, "Under Review"));
+            assertEquals(List.of("Under Review", "Under Review", "Under Review"),
+                batch.stream().map(SafetyReport::getStatus).toList());
+        }
+    }
+
+    @Test
+    void unlistedStatusesMayMoveAnywhereButNew() {
+        try (ReportStore store = open()) {
+            SafetyReport report = new SafetyReport(store.createReport("Other", "Gym", "Low", "imported").getId(),
+                "Other", "Gym", "Low", "imported", LocalDateTime.now(), "Escalated");
+            store.submit(report);
+            assertThrows(IllegalStateException.class, () -> store.changeStatus(report, "New"));
+            store.changeStatus(report, "Resolved");
+            assertEquals("Resolved", report.getStatus());
+        }
+    }
+
+    private static EnumSet<Status> openStatuses() {
+        EnumSet<Status> open = EnumSet.noneOf(Status.class);
+        for (Status status : Status.values()) {
+            if (status.isOpen()) {
+                open.add(status);
+            }
+        }
+        return open;
+    }
+
+    private ReportStore open() {
+        ReportStore store = new ReportStore(dir.resolve(ReportStore.DATA_FILE), dir.resolve(ReportStore.LOG_FILE),
+            dir.resolve(ReportStore.ID_FILE), new ReportIdAllocator(), "test.");
+        store.open(Runnable::run, pending -> { });
+        return store;
+    }
+}
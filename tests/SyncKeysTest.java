@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SyncKeysTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void writtenKeysLoadBack() throws IOException {
+        Path path = dir.resolve("keys");
+        SyncKeys keys = new SyncKeys(path);
+        keys.load(); // No file yet
+        keys.write(List.of("key-aaaaaaaa", "key-bbbbbbbb"), new int[] {4, 9});
+
+        SyncKeys loaded = new SyncKeys(path);
+        loaded.load();
+        assertEquals(4, loaded.idFor("key-aaaaaaaa"));
+        assertEquals(9, loaded.idFor("key-bbbbbbbb"));
+        assertNull(loaded.idFor("key-cccccccc"));
+    }
+
+    @Test
+    void tornAndMalformedLinesAreSkipped() throws IOException {
+        Path path = dir.resolve("keys");
+        Files.writeString(path, "key-aaaaaaaa 4\nshort 5\nkey-bbbbbbbb x\nkey-dddddddd 12\nkey-cccccccc 1",
+            StandardCharsets.UTF_8);
+
+        SyncKeys keys = new SyncKeys(path);
+        keys.load();
+        assertEquals(4, keys.idFor("key-aaaaaaaa"));
+        assertEquals(12, keys.idFor("key-dddddddd"));
+        assertEquals(1, keys.idFor("key-cccccccc"));
+        assertNull(keys.idFor("short"));
+        assertNull(keys.idFor("key-bbbbbbbb"));
+    }
+}
@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TrendWindowTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 10, 15, 12, 30);
+    private static final int RING_DAYS = 60; // Two of the longest window
+
+    @Test
+    void windowIsComparedWithTheOneBeforeIt() {
+        TrendWindow window = new TrendWindow();
+        for (int i = 0; i < 3; i++) {
+            window.record("Bullying", NOW.minusHours(i));
+        }
+        window.record("Bullying", NOW.minusHours(30));
+        window.record("Vandalism", NOW.minusHours(2));
+        window.record("Vandalism", NOW.minusHours(25));
+        window.record("Vandalism", NOW.minusHours(26));
+
+        List<TrendWindow.Trend> trends = window.getTrends(TrendWindow.Window.DAY, false, NOW);
+        assertEquals(List.of("Bullying", "Vandalism"), categories(trends));
+        assertEquals(3, trends.get(0).count);
+        assertEquals(1, trends.get(0).baseline);
+        assertEquals(1, trends.get(1).count);
+        assertEquals(2, trends.get(1).baseline);
+    }
+
+    @Test
+    void categoriesWithNothingInTheWindowAreLeftOut() {
+        TrendWindow window = new TrendWindow();
+        window.record("Bullying", NOW.minusDays(3));
+        assertEquals(List.of(), window.getTrends(TrendWindow.Window.DAY, false, NOW));
+        assertEquals(List.of("Bullying"), categories(window.getTrends(TrendWindow.Window.WEEK, false, NOW)));
+    }
+
+    @Test
+    void hoursThatWrapAroundTheRingStartEmpty() {
+        TrendWindow window = new TrendWindow();
+        window.record("Vandalism", NOW);
+        // The same ring slot, a full ring later
+        LocalDateTime later = NOW.plusDays(RING_DAYS);
+        window.record("Other", later);
+        assertEquals(List.of("Other"), categories(window.getTrends(TrendWindow.Window.DAY, false, later)));
+    }
+
+    @Test
+    void reportsOlderThanTheRingAreDropped() {
+        TrendWindow window = new TrendWindow();
+        window.record("Bullying", NOW);
+        window.record("Bullying", NOW.minusDays(RING_DAYS));
+        window.record("Bullying", NOW.minusDays(RING_DAYS - 1));
+
+        TrendWindow.Trend bullying = window.getTrends(TrendWindow.Window.MONTH, false, NOW).get(0);
+        assertEquals(1, bullying.count);
+        assertEquals(1, bullying.baseline); // Only the one still inside the ring
+    }
+
+    @Test
+    void decayHalvesAReportsWeightEveryQuarterWindow() {
+        TrendWindow window = new TrendWindow();
+        window.record("Bullying", NOW);
+        window.record("Bullying", NOW.minusHours(6));
+        window.record("Bullying", NOW.minusHours(12));
+        window.record("Bullying", NOW.minusHours(24)); // Baseline hour 0: full weight there
+
+        TrendWindow.Trend trend = window.getTrends(TrendWindow.Window.DAY, true, NOW).get(0);
+        assertEquals(1 + 0.5 + 0.25, trend.count, 1e-9);
+        assertEquals(1, trend.baseline, 1e-9);
+        assertEquals(3, window.getTrends(TrendWindow.Window.DAY, false, NOW).get(0).count);
+    }
+
+    @Test
+    void addAllSumsHourForHour() {
+        TrendWindow district = new TrendWindow();
+        TrendWindow north = new TrendWindow();
+        TrendWindow south = new TrendWindow();
+        north.record("Bullying", NOW.minusHours(1));
+        north.record("Bullying", NOW.minusHours(30));
+        south.record("Bullying", NOW);
+        south.record("Other", NOW.minusDays(RING_DAYS + 1)); // Before south's ring starts: nothing
+        district.addAll(north);
+        district.addAll(south);
+
+        List<TrendWindow.Trend> trends = district.getTrends(TrendWindow.Window.DAY, false, NOW);
+        assertEquals(List.of("Bullying"), categories(trends));
+        assertEquals(2, trends.get(0).count);
+        assertEquals(1, trends.get(0).baseline);
+    }
+
+    private static List<String> categories(List<TrendWindow.Trend> trends) {
+        return trends.stream().map(t -> t.category).toList();
+    }
+}
@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+class TriageQueueTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 6, 9, 0);
+    private static final int NEW = Status.NEW.ordinal();
+    private static final int IN_PROGRESS = Status.IN_PROGRESS.ordinal();
+    private static final int RESOLVED = Status.RESOLVED.ordinal();
+    private static final int FOLLOW_UP = Status.NEEDS_FOLLOW_UP.ordinal();
+
+    @Test
+    void mostSevereFirstThenNearestDeadline() {
+        TriageQueue queue = new TriageQueue();
+        add(queue, 0, Severity.LOW, NOW.minusDays(30));
+        add(queue, 1, Severity.URGENT, NOW);
+        add(queue, 2, Severity.HIGH, NOW.minusHours(1));
+        add(queue, 3, Severity.URGENT, NOW.minusMinutes(10));
+        add(queue, 4, Severity.HIGH, NOW.minusHours(3));
+
+        assertArrayEquals(new int[] {3, 1, 4, 2, 0}, queue.peek(10, NOW));
+        assertArrayEquals(new int[] {3, 1}, queue.peek(2, NOW));
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    void onlyWaitingReportsAreQueued() {
+        TriageQueue queue = new TriageQueue();
+        queue.reportAdded(0, Severity.URGENT.ordinal(), IN_PROGRESS, NOW, NOW);
+        queue.reportAdded(1, Severity.URGENT.ordinal(), RESOLVED, NOW, NOW);
+        add(queue, 2, Severity.LOW, NOW);
+
+        assertArrayEquals(new int[] {2}, queue.peek(10, NOW));
+
+        queue.statusChanged(2, Severity.LOW.ordinal(), NEW, Status.UNDER_REVIEW.ordinal(), NOW, NOW);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void followUpCountsFromWhenItWasSentBack() {
+        TriageQueue queue = new TriageQueue();
+        add(queue, 0, Severity.HIGH, NOW.minusHours(4));
+        // Reported long ago, but only just sent back for follow-up
+        queue.statusChanged(1, Severity.HIGH.ordinal(), IN_PROGRESS, FOLLOW_UP, NOW.minusDays(20), NOW);
+
+        assertArrayEquals(new int[] {0, 1}, queue.peek(10, NOW));
+        assertEquals(0, queue.overdueCount(NOW));
+        assertEquals(1, queue.overdueCount(NOW.plusHours(5)));
+
+        // A reload restores the same place from the saved status time
+        TriageQueue reloaded = new TriageQueue();
+        add(reloaded, 0, Severity.HIGH, NOW.minusHours(4));
+        reloaded.reportAdded(1, Severity.HIGH.ordinal(), FOLLOW_UP, NOW.minusDays(20), NOW);
+        assertArrayEquals(queue.peek(10, NOW), reloaded.peek(10, NOW));
+        assertEquals(queue.overdueCount(NOW.plusHours(5)), reloaded.overdueCount(NOW.plusHours(5)));
+    }
+
+    @Test
+    void deadlineIsTheSlaFromTheRightStart() {
+        LocalDateTime reported = NOW.minusDays(3);
+        assertEquals(reported.plusHours(1), TriageQueue.deadline(Severity.URGENT, NEW, reported, NOW));
+        assertEquals(NOW.plusHours(8), TriageQueue.deadline(Severity.HIGH, FOLLOW_UP, reported, NOW));
+    }
+
+    @Test
+    void claimTakesEachReportOnce() {
+        TriageQueue queue = new TriageQueue();
+        add(queue, 0, Severity.LOW, NOW);
+        add(queue, 1, Severity.URGENT, NOW);
+
+        assertEquals(1, queue.claim("ana", NOW));
+        assertEquals(0, queue.claim("ben", NOW));
+        assertEquals(-1, queue.claim("cy", NOW));
+        assertEquals("ana", queue.claimedBy(1, NOW));
+        assertEquals(2, queue.claimedCount());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void releasePutsTheReportBackOnlyForItsCounselor() {
+        TriageQueue queue = new TriageQueue();
+        add(queue, 0, Severity.URGENT, NOW);
+        add(queue, 1, Severity.LOW, NOW);
+        int row = queue.claim("ana", NOW);
+
+        queue.release(row, "ben");
+        assertEquals("ana", queue.claimedBy(row, NOW));
+
+        queue.release(row, "ana");
+        assertNull(queue.claimedBy(row, NOW));
+        assertArrayEquals(new int[] {0, 1}, queue.peek(10, NOW)); // Back in its old place
+    }
+
+    @Test
+    void claimsExpire() {
+        TriageQueue queue = new TriageQueue();
+        add(queue, 0, Severity.MEDIUM, NOW);
+        queue.claim("ana", NOW);
+
+        LocalDateTime later = NOW.plusMinutes(TriageQueue.CLAIM_MINUTES + 1);
+        assertNull(queue.claimedBy(0, later));
+        assertEquals(0, queue.claim("ben", later));
+    }
+
+    @Test
+    void movingOnEndsTheClaim() {
+        TriageQueue queue = new TriageQueue();
+        add(queue, 0, Severity.MEDIUM, NOW);
+        queue.claim("ana", NOW);
+
+        queue.statusChanged(0, Severity.MEDIUM.ordinal(), NEW, Status.UNDER_REVIEW.ordinal(), NOW, NOW);
+        assertNull(queue.claimedBy(0, NOW));
+        assertEquals(0, queue.claimedCount());
+        assertEquals(-1, queue.claim("ben", NOW));
+    }
+
+    @Test
+    void manyRowsComeOutInOrder() {
+        TriageQueue queue = new TriageQueue();
+        for (int row = 0; row < 1000; row++) {
+            add(queue, row, Severity.values()[row % 4], NOW.minusMinutes(row));
+        }
+        int previousRank = -1;
+        LocalDateTime previousDeadline = null;
+        for (int i = 0; i < 1000; i++) {
+            int row = queue.claim("ana", NOW);
+            Severity severity = Severity.values()[row % 4];
+            int rank = Severity.URGENT.ordinal() - severity.ordinal();
+            LocalDateTime deadline = TriageQueue.deadline(severity, NEW, NOW.minusMinutes(row), NOW);
+            assertTrue(rank > previousRank || rank == previousRank && !deadline.isBefore(previousDeadline),
+                "row " + row);
+            previousRank = rank;
+            previousDeadline = deadline;
+        }
+        assertEquals(-1, queue.claim("ana", NOW));
+    }
+
+    private static void add(TriageQueue queue, int row, Severity severity, LocalDateTime reported) {
+        queue.reportAdded(row, severity.ordinal(), NEW, reported, reported);
+    }
+}